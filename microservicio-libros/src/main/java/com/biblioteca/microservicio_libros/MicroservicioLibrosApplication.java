@@ -3,8 +3,10 @@ package com.biblioteca.microservicio_libros;
 import io.github.cdimascio.dotenv.Dotenv;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class MicroservicioLibrosApplication {
 
 	public static void main(String[] args) {
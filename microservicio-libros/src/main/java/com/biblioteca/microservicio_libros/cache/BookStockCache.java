@@ -0,0 +1,60 @@
+package com.biblioteca.microservicio_libros.cache;
+
+import com.biblioteca.microservicio_libros.dto.BookStockDTO;
+import com.biblioteca.microservicio_libros.dto.CacheStatsDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+// Caché acotada de stock por id (desalojo W-TinyLFU de Caffeine con expiración por tiempo)
+@Component
+public class BookStockCache {
+    private final Cache<Long, BookStockDTO> cache;
+
+    public BookStockCache(@Value("${libros.stock-cache.maximum-size:10000}") long maximumSize,
+                          @Value("${libros.stock-cache.ttl:30s}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    public BookStockDTO get(Long id, Function<Long, BookStockDTO> loader) {
+        return cache.get(id, loader);
+    }
+
+    // Se invalida en el momento y otra vez al terminar la transacción, para que una lectura
+    // concurrente no vuelva a cargar el valor anterior al commit
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(id);
+                }
+            });
+        }
+    }
+
+    public CacheStatsDTO stats() {
+        // Aplica desalojos pendientes para que el tamaño y los contadores estén al día
+        cache.cleanUp();
+        CacheStats stats = cache.stats();
+        return new CacheStatsDTO(
+                cache.estimatedSize(),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.evictionCount(),
+                stats.hitRate()
+        );
+    }
+}
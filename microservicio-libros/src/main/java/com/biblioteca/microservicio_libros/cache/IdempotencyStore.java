@@ -0,0 +1,91 @@
+package com.biblioteca.microservicio_libros.cache;
+
+import com.biblioteca.microservicio_libros.exception.BookNotFoundException;
+import com.biblioteca.microservicio_libros.exception.IdempotencyConflictException;
+import com.biblioteca.microservicio_libros.exception.InsufficientStockException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Claves de idempotencia recientes con el resultado de su operación (desalojo por tamaño y expiración de Caffeine).
+// Claves distintas no comparten ningún bloqueo; un duplicado que llega mientras el original corre espera su resultado.
+// Las claves viven sólo en la memoria de esta instancia: la garantía vale si todas las mutaciones de stock llegan
+// a una única instancia de escritura. Detrás de un balanceador sin afinidad, un reintento que cae en otra réplica
+// (o llega después de un reinicio) vuelve a aplicar la operación.
+@Component
+public class IdempotencyStore {
+    private static final Outcome SUCCESS = new Outcome(null);
+
+    private final ConcurrentMap<String, CompletableFuture<Outcome>> outcomes;
+    private final long waitTimeoutMillis;
+
+    private record Outcome(RuntimeException failure) {
+    }
+
+    // wait-timeout debe superar el readTimeout de los clientes (5s en prestamos): un reintento que llega
+    // mientras el intento original sigue corriendo tiene que poder esperar su resultado en lugar de recibir 409
+    public IdempotencyStore(@Value("${libros.idempotency.max-keys:100000}") long maximumKeys,
+                            @Value("${libros.idempotency.ttl:10m}") Duration ttl,
+                            @Value("${libros.idempotency.wait-timeout:15s}") Duration waitTimeout) {
+        Cache<String, CompletableFuture<Outcome>> cache = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterWrite(ttl)
+                .build();
+        this.outcomes = cache.asMap();
+        this.waitTimeoutMillis = waitTimeout.toMillis();
+    }
+
+    // Devuelve true cuando la respuesta repite el resultado de una ejecución anterior con la misma clave.
+    // La clave se asocia a la operación y al libro, así no puede reutilizarse para otra mutación.
+    public boolean execute(String operation, Long id, String key, Runnable action) {
+        if (key == null || key.isBlank()) {
+            action.run();
+            return false;
+        }
+
+        String scopedKey = operation + ':' + id + ':' + key;
+        CompletableFuture<Outcome> pending = new CompletableFuture<>();
+        CompletableFuture<Outcome> previous = outcomes.putIfAbsent(scopedKey, pending);
+        if (previous != null) {
+            Outcome outcome = await(previous, key);
+            if (outcome.failure() != null) {
+                throw outcome.failure();
+            }
+            return true;
+        }
+
+        try {
+            action.run();
+            pending.complete(SUCCESS);
+            return false;
+        } catch (BookNotFoundException | InsufficientStockException ex) {
+            // Rechazos de negocio: un reintento recibe la misma respuesta sin volver a ejecutar
+            pending.complete(new Outcome(ex));
+            throw ex;
+        } catch (RuntimeException ex) {
+            // Falla inesperada: se libera la clave para que un reintento vuelva a intentar la operación
+            outcomes.remove(scopedKey, pending);
+            pending.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    private Outcome await(CompletableFuture<Outcome> previous, String key) {
+        try {
+            return previous.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException(key);
+        } catch (ExecutionException | TimeoutException ex) {
+            throw new IdempotencyConflictException(key);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.biblioteca.microservicio_libros.cache;
+
+import com.biblioteca.microservicio_libros.repository.BookRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.stream.Stream;
+
+// Evita la consulta existsByIsbn para ISBNs que con seguridad no están cargados;
+// la restricción única de books.isbn sigue siendo la validación definitiva
+@Component
+@RequiredArgsConstructor
+public class IsbnFilter {
+    private final BookRepository bookRepository;
+
+    @Value("${libros.isbn-filter.expected-insertions:1000000}")
+    private long expectedInsertions;
+
+    @Value("${libros.isbn-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private volatile BloomFilter filter;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        BloomFilter loaded = new BloomFilter(expectedInsertions, falsePositiveRate);
+        try (Stream<String> isbns = bookRepository.streamAllIsbns()) {
+            isbns.forEach(loaded::put);
+        }
+        filter = loaded;
+    }
+
+    public boolean mightContain(String isbn) {
+        BloomFilter current = filter;
+        // Mientras no se haya cargado se consulta siempre la base de datos
+        return current == null || current.mightContain(isbn);
+    }
+
+    public void put(String isbn) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(isbn);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.biblioteca.microservicio_libros.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// ddl-auto crea books_seq empezando en 1 aunque la tabla ya tenga libros de cuando el id era IDENTITY.
+// Con allocationSize 50 Hibernate usa el bloque (valor - 49 .. valor), así que basta con llevar la
+// secuencia al id máximo: el siguiente nextval entrega un bloque entero por encima de los ids existentes.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookSequenceInitializer {
+    // Sólo avanza la secuencia: nunca la retrocede si ya está por delante de los datos
+    private static final String ALIGN_SEQUENCE = """
+            SELECT setval('books_seq', m.max_id)
+            FROM (SELECT MAX(id) AS max_id FROM books) m
+            WHERE m.max_id > (SELECT last_value FROM books_seq)""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        if ("PostgreSQL".equals(database)) {
+            List<Long> aligned = jdbcTemplate.queryForList(ALIGN_SEQUENCE, Long.class);
+            if (!aligned.isEmpty()) {
+                log.info("Secuencia books_seq alineada con el id máximo {}", aligned.get(0));
+            }
+        }
+    }
+}
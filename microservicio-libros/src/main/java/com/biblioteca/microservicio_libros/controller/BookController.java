@@ -1,18 +1,43 @@
 package com.biblioteca.microservicio_libros.controller;
 
+import com.biblioteca.microservicio_libros.cache.IdempotencyStore;
+import com.biblioteca.microservicio_libros.dto.AuthorFacetDTO;
+import com.biblioteca.microservicio_libros.dto.BookImportResultDTO;
+import com.biblioteca.microservicio_libros.dto.BookPageDTO;
 import com.biblioteca.microservicio_libros.dto.BookRequestDTO;
 import com.biblioteca.microservicio_libros.dto.BookResponseDTO;
+import com.biblioteca.microservicio_libros.dto.BookSearchResultDTO;
+import com.biblioteca.microservicio_libros.dto.BookStockBatchDTO;
 import com.biblioteca.microservicio_libros.dto.BookStockDTO;
+import com.biblioteca.microservicio_libros.dto.BookSuggestionDTO;
+import com.biblioteca.microservicio_libros.dto.CacheStatsDTO;
+import com.biblioteca.microservicio_libros.dto.ReservationRequestDTO;
+import com.biblioteca.microservicio_libros.dto.ReservationResponseDTO;
+import com.biblioteca.microservicio_libros.events.StockEventPublisher;
+import com.biblioteca.microservicio_libros.service.BookImportService;
 import com.biblioteca.microservicio_libros.service.BookService;
+import com.biblioteca.microservicio_libros.service.ReservationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 
 import java.util.List;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/libros")
@@ -20,7 +45,15 @@ import java.util.List;
 @Tag(name = "Libros", description = "API de gestion de libros")
 public class BookController {
 
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
     private final BookService bookService;
+    private final BookImportService bookImportService;
+    private final ReservationService reservationService;
+    private final StockEventPublisher stockEventPublisher;
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @Operation(summary = "Crear un libro")
@@ -29,11 +62,68 @@ public class BookController {
         return new ResponseEntity<>(response, HttpStatus.CREATED);
     }
 
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Importar libros en lote", description = "Acepta CSV (title,author,isbn,availableCopies) o NDJSON; las filas inválidas se informan sin cancelar la carga")
+    public ResponseEntity<BookImportResultDTO> importBooks(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType, InputStream body){
+        BookImportService.Format format = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+                ? BookImportService.Format.NDJSON
+                : BookImportService.Format.CSV;
+        BookImportResultDTO result = bookImportService.importBooks(body, format);
+        return ResponseEntity.ok(result);
+    }
+
     @GetMapping
-    @Operation(summary = "Obtener todos los libros")
-    public ResponseEntity<List<BookResponseDTO>> getAllBooks(){
-        List<BookResponseDTO> books = bookService.getAllBooks();
-        return ResponseEntity.ok(books);
+    @Operation(summary = "Obtener libros paginados", description = "Paginación por cursor: usar nextCursor como parámetro after para pedir la página siguiente")
+    public ResponseEntity<BookPageDTO> getAllBooks(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String author,
+            @RequestParam(defaultValue = "false") boolean available){
+        BookPageDTO page = bookService.getAllBooks(after, limit, author, available);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Buscar libros por título o autor", description = "Búsqueda por palabras, sin distinguir acentos ni mayúsculas, ordenada por relevancia")
+    public ResponseEntity<List<BookSearchResultDTO>> searchBooks(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limit){
+        List<BookSearchResultDTO> results = bookService.searchBooks(q, limit);
+        return ResponseEntity.ok(results);
+    }
+
+    @GetMapping("/suggest")
+    @Operation(summary = "Autocompletar títulos y autores", description = "Devuelve los títulos y autores que comienzan con el prefijo, priorizando los de mayor disponibilidad")
+    public ResponseEntity<List<BookSuggestionDTO>> suggestBooks(
+            @RequestParam String prefix,
+            @RequestParam(required = false) Integer limit){
+        List<BookSuggestionDTO> suggestions = bookService.suggestBooks(prefix, limit);
+        return ResponseEntity.ok(suggestions);
+    }
+
+    @GetMapping("/facets/authors")
+    @Operation(summary = "Conteo de libros por autor", description = "Títulos totales, títulos disponibles y ejemplares disponibles por autor, servidos desde memoria")
+    public ResponseEntity<List<AuthorFacetDTO>> getAuthorFacets(@RequestParam(required = false) Integer limit){
+        return ResponseEntity.ok(bookService.getAuthorFacets(limit));
+    }
+
+    @GetMapping("/facets/authors/{author}")
+    @Operation(summary = "Conteo de libros de un autor")
+    public ResponseEntity<AuthorFacetDTO> getAuthorFacet(@PathVariable String author){
+        return ResponseEntity.ok(bookService.getAuthorFacet(author));
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Exportar el catálogo completo", description = "Devuelve un libro por línea (NDJSON) leyendo la tabla con un cursor, sin cargarla en memoria")
+    public ResponseEntity<StreamingResponseBody> exportBooks(){
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream);
+            bookService.exportBooks(book -> writeLine(out, book));
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -43,6 +133,13 @@ public class BookController {
         return ResponseEntity.ok(book);
     }
 
+    @GetMapping("/isbn/{isbn}")
+    @Operation(summary = "Obtener un libro por ISBN")
+    public ResponseEntity<BookResponseDTO> getBookByIsbn(@PathVariable String isbn){
+        BookResponseDTO book = bookService.getBookByIsbn(isbn);
+        return ResponseEntity.ok(book);
+    }
+
     @GetMapping("/{id}/stock")
     @Operation(summary = "Consultar disponibilidad de un libro")
     public ResponseEntity<BookStockDTO> getBookStock(@PathVariable Long id){
@@ -50,6 +147,34 @@ public class BookController {
         return ResponseEntity.ok(stock);
     }
 
+    @GetMapping("/stock")
+    @Operation(summary = "Consultar disponibilidad de varios libros")
+    public ResponseEntity<BookStockBatchDTO> getBooksStock(@RequestParam List<Long> ids){
+        BookStockBatchDTO stock = bookService.getBooksStock(ids);
+        return ResponseEntity.ok(stock);
+    }
+
+    @GetMapping("/stock/cache-stats")
+    @Operation(summary = "Estadísticas de la caché de stock (uso interno)")
+    public ResponseEntity<CacheStatsDTO> getStockCacheStats(){
+        return ResponseEntity.ok(bookService.getStockCacheStats());
+    }
+
+    @GetMapping(value = "/stock/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Suscribirse a los cambios de stock (SSE)", description = "Cada evento lleva una versión creciente; con Last-Event-ID o since se reanuda desde la última versión vista. Un evento reset indica que hay que volver a leer el stock completo")
+    public SseEmitter streamStockEvents(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+            @RequestParam(required = false) Long since){
+        return stockEventPublisher.subscribe(lastEventId != null ? lastEventId : since);
+    }
+
+    @PostMapping("/stock")
+    @Operation(summary = "Consultar disponibilidad de varios libros (lista de ids en el cuerpo)")
+    public ResponseEntity<BookStockBatchDTO> getBooksStockByBody(@RequestBody List<Long> ids){
+        BookStockBatchDTO stock = bookService.getBooksStock(ids);
+        return ResponseEntity.ok(stock);
+    }
+
     @PutMapping("/{id}")
     @Operation(summary = "Actualizar un libro existente")
     public ResponseEntity<BookResponseDTO> updateBook(@PathVariable Long id, @Valid @RequestBody BookRequestDTO requestDTO){
@@ -65,17 +190,59 @@ public class BookController {
     }
 
     @PatchMapping("/{id}/decrease-stock")
-    @Operation(summary = "Disminuir stock de un libro (uso interno)")
-    public ResponseEntity<Void> decreaseStock(@PathVariable Long id){
-        bookService.decreaseStock(id);
-        return ResponseEntity.ok().build();
+    @Operation(summary = "Disminuir stock de un libro (uso interno)", description = "Con Idempotency-Key un reintento devuelve el resultado original sin volver a descontar")
+    public ResponseEntity<Void> decreaseStock(@PathVariable Long id,
+                                              @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey){
+        boolean replayed = idempotencyStore.execute("decrease-stock", id, idempotencyKey, () -> bookService.decreaseStock(id));
+        return stockMutationResponse(replayed);
     }
 
     @PatchMapping("/{id}/increase-stock")
-    @Operation(summary = "Aumentar stock de un libro (uso interno)")
-    public ResponseEntity<Void> increaseStock(@PathVariable Long id){
-        bookService.increaseStock(id);
-        return ResponseEntity.ok().build();
+    @Operation(summary = "Aumentar stock de un libro (uso interno)", description = "Con Idempotency-Key un reintento devuelve el resultado original sin volver a sumar")
+    public ResponseEntity<Void> increaseStock(@PathVariable Long id,
+                                              @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey){
+        boolean replayed = idempotencyStore.execute("increase-stock", id, idempotencyKey, () -> bookService.increaseStock(id));
+        return stockMutationResponse(replayed);
     }
 
+    private static ResponseEntity<Void> stockMutationResponse(boolean replayed) {
+        return replayed
+                ? ResponseEntity.ok().header(IDEMPOTENT_REPLAYED, "true").build()
+                : ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/{id}/reservations")
+    @Operation(summary = "Reservar un ejemplar", description = "Descuenta el stock y lo retiene hasta confirmar, cancelar o vencer (ttlSeconds opcional)")
+    public ResponseEntity<ReservationResponseDTO> reserve(@PathVariable Long id,
+                                                          @Valid @RequestBody(required = false) ReservationRequestDTO requestDTO){
+        ReservationResponseDTO response = reservationService.reserve(id, requestDTO == null ? null : requestDTO.getTtlSeconds());
+        return new ResponseEntity<>(response, HttpStatus.CREATED);
+    }
+
+    @GetMapping("/reservations/{reservationId}")
+    @Operation(summary = "Consultar una reserva")
+    public ResponseEntity<ReservationResponseDTO> getReservation(@PathVariable UUID reservationId){
+        return ResponseEntity.ok(reservationService.getReservation(reservationId));
+    }
+
+    @PostMapping("/reservations/{reservationId}/confirm")
+    @Operation(summary = "Confirmar una reserva vigente")
+    public ResponseEntity<ReservationResponseDTO> confirmReservation(@PathVariable UUID reservationId){
+        return ResponseEntity.ok(reservationService.confirm(reservationId));
+    }
+
+    @PostMapping("/reservations/{reservationId}/cancel")
+    @Operation(summary = "Cancelar una reserva y devolver el ejemplar al stock")
+    public ResponseEntity<ReservationResponseDTO> cancelReservation(@PathVariable UUID reservationId){
+        return ResponseEntity.ok(reservationService.cancel(reservationId));
+    }
+
+    private void writeLine(OutputStream out, BookResponseDTO book) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(book));
+            out.write('\n');
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
 }
@@ -0,0 +1,15 @@
+package com.biblioteca.microservicio_libros.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthorFacetDTO {
+    private String author;
+    private int totalTitles;
+    private int availableTitles;
+    private long availableCopies;
+}
@@ -0,0 +1,16 @@
+package com.biblioteca.microservicio_libros.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookImportResultDTO {
+    private long imported;
+    private long failed;
+    private List<BookImportErrorDTO> errors;
+}
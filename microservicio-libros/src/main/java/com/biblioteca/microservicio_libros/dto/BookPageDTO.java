@@ -0,0 +1,15 @@
+package com.biblioteca.microservicio_libros.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookPageDTO {
+    private List<BookResponseDTO> items;
+    private String nextCursor;
+}
@@ -0,0 +1,15 @@
+package com.biblioteca.microservicio_libros.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSearchResultDTO {
+    private Long id;
+    private String title;
+    private String author;
+    private double score;
+}
@@ -0,0 +1,16 @@
+package com.biblioteca.microservicio_libros.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookStockBatchDTO {
+    private Map<Long, BookStockDTO> stocks;
+    private List<Long> notFound;
+}
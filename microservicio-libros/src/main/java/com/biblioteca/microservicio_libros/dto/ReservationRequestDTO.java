@@ -0,0 +1,15 @@
+package com.biblioteca.microservicio_libros.dto;
+
+import jakarta.validation.constraints.Min;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationRequestDTO {
+    // Opcional: si no se informa se usa la duración por defecto
+    @Min(value = 1, message = "La duración de la reserva debe ser de al menos 1 segundo")
+    private Integer ttlSeconds;
+}
@@ -0,0 +1,19 @@
+package com.biblioteca.microservicio_libros.dto;
+
+import com.biblioteca.microservicio_libros.model.StockReservation;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationResponseDTO {
+    private UUID id;
+    private Long bookId;
+    private StockReservation.Status status;
+    private Instant expiresAt;
+}
@@ -0,0 +1,26 @@
+package com.biblioteca.microservicio_libros.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockEventDTO {
+    private long version;
+    private Long bookId;
+    private Type type;
+    private Integer availableCopies;
+    private boolean available;
+    private Instant timestamp;
+
+    public enum Type {
+        DECREASED,
+        INCREASED,
+        UPDATED,
+        DELETED
+    }
+}
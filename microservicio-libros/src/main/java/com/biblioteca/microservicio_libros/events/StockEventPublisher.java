@@ -0,0 +1,198 @@
+package com.biblioteca.microservicio_libros.events;
+
+import com.biblioteca.microservicio_libros.dto.StockEventDTO;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntSupplier;
+
+// Publica cada cambio de stock con una versión creciente y lo reparte a los suscriptores SSE.
+// Guarda los últimos eventos en memoria para que un suscriptor pueda reanudar desde la última versión vista.
+@Component
+public class StockEventPublisher {
+    private static final Logger log = LoggerFactory.getLogger(StockEventPublisher.class);
+    public static final String EVENT_NAME = "stock";
+    public static final String RESET_EVENT_NAME = "reset";
+
+    private final int bufferSize;
+    private final long emitterTimeoutMillis;
+    private final ArrayDeque<StockEventDTO> buffer;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    // Un único hilo asigna versiones, lee el stock y envía: mantiene el orden de versiones para todos los suscriptores
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stock-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long version;
+
+    public StockEventPublisher(@Value("${libros.stock-events.buffer-size:10000}") int bufferSize,
+                               @Value("${libros.stock-events.timeout:30m}") Duration emitterTimeout) {
+        this.bufferSize = bufferSize;
+        this.emitterTimeoutMillis = emitterTimeout.toMillis();
+        this.buffer = new ArrayDeque<>(bufferSize);
+    }
+
+    // El evento se publica recién después del commit, así nunca se anuncia un cambio revertido.
+    // availableCopies se evalúa en el hilo de envío, después del commit y junto con la asignación de la versión:
+    // leído dentro de la transacción, dos préstamos concurrentes sobre fragmentos distintos anunciarían el mismo valor
+    // y el orden de versiones podría no coincidir con el de los commits. Así el último evento de un libro siempre
+    // lleva el stock vigente en la base de datos.
+    public void publish(StockEventDTO.Type type, Long bookId, IntSupplier availableCopies) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(type, bookId, availableCopies);
+                }
+            });
+        } else {
+            dispatch(type, bookId, availableCopies);
+        }
+    }
+
+    public SseEmitter subscribe(Long lastVersion) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(ex -> subscribers.remove(subscriber));
+
+        synchronized (subscriber) {
+            List<StockEventDTO> replay;
+            boolean reset;
+            synchronized (this) {
+                reset = lastVersion != null && !canResumeFrom(lastVersion);
+                replay = lastVersion == null || reset ? List.of() : eventsSince(lastVersion);
+                subscriber.lastVersion = reset || lastVersion == null ? version : lastVersion;
+                subscribers.add(subscriber);
+            }
+            if (reset) {
+                // La versión pedida ya no está en memoria: el cliente debe volver a leer el stock completo
+                subscriber.sendReset();
+            }
+            replay.forEach(subscriber::send);
+        }
+        return emitter;
+    }
+
+    public synchronized long currentVersion() {
+        return version;
+    }
+
+    public synchronized List<StockEventDTO> eventsSince(long lastVersion) {
+        return buffer.stream()
+                .filter(event -> event.getVersion() > lastVersion)
+                .toList();
+    }
+
+    // Comentario periódico para que los proxies no corten la conexión y para detectar clientes caídos
+    @Scheduled(fixedDelayString = "${libros.stock-events.heartbeat:15s}")
+    public void heartbeat() {
+        dispatcher.execute(() -> subscribers.forEach(Subscriber::sendHeartbeat));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    private void dispatch(StockEventDTO.Type type, Long bookId, IntSupplier availableCopies) {
+        dispatcher.execute(() -> {
+            int copies;
+            try {
+                copies = availableCopies.getAsInt();
+            } catch (RuntimeException ex) {
+                log.warn("No se pudo leer el stock del libro {} para el evento {}: {}", bookId, type, ex.getMessage());
+                return;
+            }
+            append(type, bookId, copies);
+        });
+    }
+
+    // Solo se llama desde el hilo de envío
+    private void append(StockEventDTO.Type type, Long bookId, int availableCopies) {
+        StockEventDTO event;
+        synchronized (this) {
+            event = new StockEventDTO(++version, bookId, type, availableCopies, availableCopies > 0, Instant.now());
+            if (buffer.size() == bufferSize) {
+                buffer.removeFirst();
+            }
+            buffer.addLast(event);
+        }
+        subscribers.forEach(subscriber -> subscriber.send(event));
+    }
+
+    private boolean canResumeFrom(long lastVersion) {
+        if (lastVersion > version) {
+            // Versión de una ejecución anterior del servicio
+            return false;
+        }
+        long oldest = buffer.isEmpty() ? version + 1 : buffer.peekFirst().getVersion();
+        return lastVersion >= oldest - 1;
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private long lastVersion;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private synchronized void send(StockEventDTO event) {
+            if (event.getVersion() <= lastVersion) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(event.getVersion()))
+                        .name(EVENT_NAME)
+                        .data(event));
+                lastVersion = event.getVersion();
+            } catch (IOException | IllegalStateException ex) {
+                drop();
+            }
+        }
+
+        private synchronized void sendReset() {
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(lastVersion))
+                        .name(RESET_EVENT_NAME)
+                        .data(lastVersion));
+            } catch (IOException | IllegalStateException ex) {
+                drop();
+            }
+        }
+
+        private synchronized void sendHeartbeat() {
+            try {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException ex) {
+                drop();
+            }
+        }
+
+        private void drop() {
+            subscribers.remove(this);
+            emitter.completeWithError(new IllegalStateException("Suscriptor de eventos de stock desconectado"));
+        }
+    }
+}
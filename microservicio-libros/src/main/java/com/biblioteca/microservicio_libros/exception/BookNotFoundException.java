@@ -4,4 +4,8 @@ public class BookNotFoundException extends RuntimeException{
     public BookNotFoundException(Long id){
         super("No se encontró el libro con id: "+ id);
     }
+
+    public BookNotFoundException(String isbn){
+        super("No se encontró el libro con ISBN: "+ isbn);
+    }
 }
@@ -0,0 +1,7 @@
+package com.biblioteca.microservicio_libros.exception;
+
+public class ConcurrentUpdateException extends RuntimeException {
+    public ConcurrentUpdateException(String resource, Long id) {
+        super("El " + resource + " con id " + id + " fue modificado por otra operación, intente nuevamente");
+    }
+}
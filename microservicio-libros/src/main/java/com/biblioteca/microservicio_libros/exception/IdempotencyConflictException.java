@@ -0,0 +1,7 @@
+package com.biblioteca.microservicio_libros.exception;
+
+public class IdempotencyConflictException extends RuntimeException {
+    public IdempotencyConflictException(String key) {
+        super("La operación con Idempotency-Key " + key + " sigue en curso o falló, intente nuevamente");
+    }
+}
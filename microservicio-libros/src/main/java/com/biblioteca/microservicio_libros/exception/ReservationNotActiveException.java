@@ -0,0 +1,11 @@
+package com.biblioteca.microservicio_libros.exception;
+
+import com.biblioteca.microservicio_libros.model.StockReservation;
+
+import java.util.UUID;
+
+public class ReservationNotActiveException extends RuntimeException {
+    public ReservationNotActiveException(UUID id, StockReservation.Status status) {
+        super("La reserva " + id + " ya no está vigente (estado: " + status + ")");
+    }
+}
@@ -0,0 +1,9 @@
+package com.biblioteca.microservicio_libros.exception;
+
+import java.util.UUID;
+
+public class ReservationNotFoundException extends RuntimeException {
+    public ReservationNotFoundException(UUID id) {
+        super("No se encontró la reserva con id: " + id);
+    }
+}
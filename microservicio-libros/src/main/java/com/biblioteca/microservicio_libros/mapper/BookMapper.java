@@ -20,12 +20,17 @@ public class BookMapper {
     }
 
     public BookResponseDTO toResponseDTO(Book book){
+        return toResponseDTO(book, book.getAvailableCopies());
+    }
+
+    // Para libros con stock fragmentado, donde las copias disponibles no están en la fila del libro
+    public BookResponseDTO toResponseDTO(Book book, int availableCopies){
         return new BookResponseDTO(
                 book.getId(),
                 book.getTitle(),
                 book.getAuthor(),
                 book.getIsbn(),
-                book.getAvailableCopies()
+                availableCopies
         );
     }
 
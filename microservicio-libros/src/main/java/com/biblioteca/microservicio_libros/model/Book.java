@@ -6,15 +6,20 @@ import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
-@Table(name = "books")
+@Table(name = "books", indexes = {
+        @Index(name = "idx_books_author_id", columnList = "author, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Book {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Secuencia con asignación por bloques: permite que Hibernate agrupe los INSERT en lotes JDBC
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "books_seq")
+    @SequenceGenerator(name = "books_seq", sequenceName = "books_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank(message = "El título es obligatorio")
@@ -32,4 +37,10 @@ public class Book {
     @Min(value = 0, message = "Los ejemplares no pueden ser negativos")
     @Column(name = "available_copies", nullable = false)
     private Integer availableCopies;
+
+    // Bloqueo optimista: una edición concurrente sobre la misma fila falla en lugar de pisarse
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
 }
@@ -0,0 +1,28 @@
+package com.biblioteca.microservicio_libros.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "book_stock_shards", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_book_stock_shards_book_shard", columnNames = {"book_id", "shard"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookStockShard {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+
+    @Column(nullable = false)
+    private Integer shard;
+
+    @Column(name = "available_copies", nullable = false)
+    private Integer availableCopies;
+}
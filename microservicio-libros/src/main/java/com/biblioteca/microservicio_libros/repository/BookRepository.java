@@ -1,14 +1,141 @@
 package com.biblioteca.microservicio_libros.repository;
 
+import com.biblioteca.microservicio_libros.dto.BookResponseDTO;
+import com.biblioteca.microservicio_libros.dto.BookStockDTO;
 import com.biblioteca.microservicio_libros.model.Book;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
+    // Ejemplares reales de un libro: en los fragmentados la fila queda en 0 y el stock está en book_stock_shards.
+    // Se resuelve en la consulta para no depender de qué libros cree fragmentados cada instancia
+    String TOTAL_COPIES = "CAST(b.availableCopies + " +
+            "COALESCE((SELECT SUM(s.availableCopies) FROM BookStockShard s WHERE s.bookId = b.id), 0) AS Integer)";
 
     Optional<Book> findByIsbn(String isbn);
     boolean existsByIsbn(String isbn);
+
+    // Paginación por keyset sobre el id: cada página cuesta lo mismo sin importar su profundidad
+    @Query("SELECT new com.biblioteca.microservicio_libros.dto.BookResponseDTO(b.id, b.title, b.author, b.isbn, " + TOTAL_COPIES + ") " +
+            "FROM Book b WHERE b.id > :id ORDER BY b.id")
+    List<BookResponseDTO> findByIdGreaterThanOrderByIdAsc(@Param("id") Long id, Limit limit);
+
+    @Query("SELECT new com.biblioteca.microservicio_libros.dto.BookResponseDTO(b.id, b.title, b.author, b.isbn, " + TOTAL_COPIES + ") " +
+            "FROM Book b WHERE b.author = :author AND b.id > :id ORDER BY b.id")
+    List<BookResponseDTO> findByAuthorAndIdGreaterThanOrderByIdAsc(@Param("author") String author, @Param("id") Long id, Limit limit);
+
+    @Query("SELECT new com.biblioteca.microservicio_libros.dto.BookResponseDTO(b.id, b.title, b.author, b.isbn, " + TOTAL_COPIES + ") " +
+            "FROM Book b WHERE " + TOTAL_COPIES + " > :copies AND b.id > :id ORDER BY b.id")
+    List<BookResponseDTO> findByAvailableCopiesGreaterThanAndIdGreaterThanOrderByIdAsc(@Param("copies") Integer copies, @Param("id") Long id, Limit limit);
+
+    @Query("SELECT new com.biblioteca.microservicio_libros.dto.BookResponseDTO(b.id, b.title, b.author, b.isbn, " + TOTAL_COPIES + ") " +
+            "FROM Book b WHERE b.author = :author AND " + TOTAL_COPIES + " > :copies AND b.id > :id ORDER BY b.id")
+    List<BookResponseDTO> findByAuthorAndAvailableCopiesGreaterThanAndIdGreaterThanOrderByIdAsc(@Param("author") String author, @Param("copies") Integer copies, @Param("id") Long id, Limit limit);
+
+    // Proyecciones para lecturas: igual que la paginación, arman el DTO en la consulta sin cargar entidades administradas
+    @Query("SELECT new com.biblioteca.microservicio_libros.dto.BookResponseDTO(b.id, b.title, b.author, b.isbn, " + TOTAL_COPIES + ") " +
+            "FROM Book b WHERE b.id = :id")
+    Optional<BookResponseDTO> findResponseById(@Param("id") Long id);
+
+    @Query("SELECT new com.biblioteca.microservicio_libros.dto.BookResponseDTO(b.id, b.title, b.author, b.isbn, " + TOTAL_COPIES + ") " +
+            "FROM Book b WHERE b.isbn = :isbn")
+    Optional<BookResponseDTO> findResponseByIsbn(@Param("isbn") String isbn);
+
+    @Query("SELECT new com.biblioteca.microservicio_libros.dto.BookStockDTO(b.id, b.title, " + TOTAL_COPIES + ", " +
+            "CASE WHEN " + TOTAL_COPIES + " > 0 THEN true ELSE false END) FROM Book b WHERE b.id = :id")
+    Optional<BookStockDTO> findStockById(@Param("id") Long id);
+
+    @Query("SELECT new com.biblioteca.microservicio_libros.dto.BookStockDTO(b.id, b.title, " + TOTAL_COPIES + ", " +
+            "CASE WHEN " + TOTAL_COPIES + " > 0 THEN true ELSE false END) FROM Book b WHERE b.id IN :ids")
+    List<BookStockDTO> findStockByIdIn(@Param("ids") Collection<Long> ids);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.biblioteca.microservicio_libros.dto.BookResponseDTO(b.id, b.title, b.author, b.isbn, " + TOTAL_COPIES + ") " +
+            "FROM Book b ORDER BY b.id")
+    Stream<BookResponseDTO> streamAllResponses();
+
+    // Decremento condicional en una sola sentencia: devuelve 0 si no hay stock o no existe el libro
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Book b SET b.availableCopies = b.availableCopies - 1, b.version = b.version + 1 WHERE b.id = :id AND b.availableCopies > 0")
+    int decrementAvailableCopies(@Param("id") Long id);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Book b SET b.availableCopies = b.availableCopies + 1, b.version = b.version + 1 WHERE b.id = :id")
+    int incrementAvailableCopies(@Param("id") Long id);
+
+    // Cursor JDBC de solo avance: debe consumirse dentro de una transacción de lectura
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT b FROM Book b ORDER BY b.id")
+    Stream<Book> streamAllByOrderByIdAsc();
+
+    // Sólo las columnas que indexa la búsqueda: sin entidades administradas ni contexto de persistencia que vaciar
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT b.id AS id, b.title AS title, b.author AS author FROM Book b ORDER BY b.id")
+    Stream<TitleAuthor> streamTitleAuthors();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT b.isbn FROM Book b")
+    Stream<String> streamAllIsbns();
+
+    // Ejemplares reales por libro: en los libros fragmentados la fila queda en 0 y el stock está en los fragmentos
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT b.id AS id, b.author AS author, b.availableCopies + " +
+            "COALESCE((SELECT SUM(s.availableCopies) FROM BookStockShard s WHERE s.bookId = b.id), 0) AS copies " +
+            "FROM Book b")
+    Stream<AuthorCopies> streamAuthorCopies();
+
+    // Igual que streamAuthorCopies, con el título: el autocompletado pondera por el stock total, fragmentos incluidos
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT b.id AS id, b.title AS title, b.author AS author, b.availableCopies + " +
+            "COALESCE((SELECT SUM(s.availableCopies) FROM BookStockShard s WHERE s.bookId = b.id), 0) AS copies " +
+            "FROM Book b ORDER BY b.id")
+    Stream<TitleAuthorCopies> streamTitleAuthorCopies();
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Book b WHERE b.id = :id")
+    Optional<Book> findByIdForUpdate(@Param("id") Long id);
+
+    @Query("SELECT " + TOTAL_COPIES + " FROM Book b WHERE b.id = :id")
+    Optional<Integer> findTotalCopiesById(@Param("id") Long id);
+
+    interface AuthorCopies {
+        Long getId();
+        String getAuthor();
+        Long getCopies();
+    }
+
+    interface TitleAuthor {
+        Long getId();
+        String getTitle();
+        String getAuthor();
+    }
+
+    interface TitleAuthorCopies {
+        Long getId();
+        String getTitle();
+        String getAuthor();
+        Long getCopies();
+    }
 }
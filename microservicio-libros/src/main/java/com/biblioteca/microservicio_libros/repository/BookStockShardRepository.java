@@ -0,0 +1,42 @@
+package com.biblioteca.microservicio_libros.repository;
+
+import com.biblioteca.microservicio_libros.model.BookStockShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BookStockShardRepository extends JpaRepository<BookStockShard, Long> {
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE BookStockShard s SET s.availableCopies = s.availableCopies - 1 " +
+            "WHERE s.bookId = :bookId AND s.shard = :shard AND s.availableCopies > 0")
+    int decrementAvailableCopies(@Param("bookId") Long bookId, @Param("shard") int shard);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE BookStockShard s SET s.availableCopies = s.availableCopies + 1 " +
+            "WHERE s.bookId = :bookId AND s.shard = :shard")
+    int incrementAvailableCopies(@Param("bookId") Long bookId, @Param("shard") int shard);
+
+    @Query("SELECT COALESCE(SUM(s.availableCopies), 0) FROM BookStockShard s WHERE s.bookId = :bookId")
+    long sumAvailableCopies(@Param("bookId") Long bookId);
+
+    @Query("SELECT DISTINCT s.bookId FROM BookStockShard s")
+    List<Long> findShardedBookIds();
+
+    boolean existsByBookId(Long bookId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM BookStockShard s WHERE s.bookId = :bookId ORDER BY s.shard")
+    List<BookStockShard> findByBookIdForUpdate(@Param("bookId") Long bookId);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("DELETE FROM BookStockShard s WHERE s.bookId = :bookId")
+    int deleteByBookId(@Param("bookId") Long bookId);
+}
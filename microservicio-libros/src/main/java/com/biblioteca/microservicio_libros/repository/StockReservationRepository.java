@@ -0,0 +1,45 @@
+package com.biblioteca.microservicio_libros.repository;
+
+import com.biblioteca.microservicio_libros.model.StockReservation;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, UUID> {
+
+    // Transición condicional: solo una de las operaciones concurrentes (confirmar, cancelar, expirar) gana
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE StockReservation r SET r.status = :to WHERE r.id = :id AND r.status = :from")
+    int updateStatus(@Param("id") UUID id,
+                     @Param("from") StockReservation.Status from,
+                     @Param("to") StockReservation.Status to);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE StockReservation r SET r.status = :to " +
+            "WHERE r.id = :id AND r.status = :from AND r.expiresAt > :now")
+    int updateStatusIfNotExpired(@Param("id") UUID id,
+                                 @Param("from") StockReservation.Status from,
+                                 @Param("to") StockReservation.Status to,
+                                 @Param("now") Instant now);
+
+    @Query("SELECT r.bookId FROM StockReservation r WHERE r.id = :id")
+    Long findBookIdById(@Param("id") UUID id);
+
+    // Recorre el índice (status, expires_at): solo toca las reservas vencidas, nunca la tabla completa
+    @Query("SELECT r.id FROM StockReservation r WHERE r.status = :status AND r.expiresAt <= :now ORDER BY r.expiresAt")
+    List<UUID> findIdsByStatusExpiredAt(@Param("status") StockReservation.Status status,
+                                        @Param("now") Instant now,
+                                        Limit limit);
+
+    @Query("SELECT r FROM StockReservation r WHERE r.status = :status")
+    Stream<StockReservation> streamByStatus(@Param("status") StockReservation.Status status);
+}
@@ -0,0 +1,181 @@
+package com.biblioteca.microservicio_libros.search;
+
+import com.biblioteca.microservicio_libros.dto.AuthorFacetDTO;
+import com.biblioteca.microservicio_libros.repository.BookRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+// Conteos por autor mantenidos en memoria a medida que cambian los libros y su stock:
+// títulos totales, títulos con ejemplares disponibles y ejemplares disponibles.
+// Se reconcilian periódicamente contra la base para corregir cualquier desvío.
+@Component
+@RequiredArgsConstructor
+public class AuthorFacetIndex {
+    private static final Comparator<AuthorFacet> RANKING = Comparator.comparingInt(AuthorFacet::totalTitles)
+            .thenComparing(AuthorFacet::author, Comparator.reverseOrder());
+
+    private final BookRepository bookRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<Long, IndexedBook> books = new HashMap<>();
+    private Map<String, AuthorFacet> facets = new HashMap<>();
+    // Libros modificados mientras corre una reconciliación; null cuando no hay ninguna en curso
+    private Set<Long> changedDuringRebuild;
+
+    private record IndexedBook(String author, long copies) {
+    }
+
+    private record AuthorFacet(String author, int totalTitles, int availableTitles, long availableCopies) {
+        AuthorFacet plus(long copies, int sign) {
+            return new AuthorFacet(author, totalTitles + sign, availableTitles + (copies > 0 ? sign : 0),
+                    availableCopies + sign * copies);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${libros.author-facets.reconcile-interval:10m}",
+            fixedDelayString = "${libros.author-facets.reconcile-interval:10m}")
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // Se lee sin bloquear: las escrituras siguen aplicándose sobre los conteos vigentes
+        Map<Long, IndexedBook> rebuiltBooks = new HashMap<>();
+        Map<String, AuthorFacet> rebuiltFacets = new HashMap<>();
+        try (Stream<BookRepository.AuthorCopies> rows = bookRepository.streamAuthorCopies()) {
+            rows.forEach(row -> add(rebuiltBooks, rebuiltFacets, row.getId(), new IndexedBook(row.getAuthor(), row.getCopies())));
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Lo que cambió durante la lectura ya está bien reflejado en los conteos vigentes
+            for (Long id : changedDuringRebuild) {
+                remove(rebuiltBooks, rebuiltFacets, id);
+                IndexedBook current = books.get(id);
+                if (current != null) {
+                    add(rebuiltBooks, rebuiltFacets, id, current);
+                }
+            }
+            books = rebuiltBooks;
+            facets = rebuiltFacets;
+        } finally {
+            changedDuringRebuild = null;
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void index(Long id, String author, int copies) {
+        lock.writeLock().lock();
+        try {
+            remove(books, facets, id);
+            add(books, facets, id, new IndexedBook(author, copies));
+            markChanged(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            remove(books, facets, id);
+            markChanged(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void adjustCopies(Long id, int delta) {
+        lock.writeLock().lock();
+        try {
+            IndexedBook book = books.get(id);
+            if (book == null) {
+                return;
+            }
+            remove(books, facets, id);
+            add(books, facets, id, new IndexedBook(book.author(), Math.max(0, book.copies() + delta)));
+            markChanged(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<AuthorFacetDTO> topAuthors(int limit) {
+        lock.readLock().lock();
+        try {
+            // Top-k con un heap acotado en lugar de ordenar todos los autores
+            PriorityQueue<AuthorFacet> top = new PriorityQueue<>(RANKING);
+            for (AuthorFacet facet : facets.values()) {
+                top.offer(facet);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            return top.stream()
+                    .sorted(RANKING.reversed())
+                    .map(AuthorFacetIndex::toDTO)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public AuthorFacetDTO getAuthor(String author) {
+        lock.readLock().lock();
+        try {
+            AuthorFacet facet = facets.get(author);
+            return facet == null ? new AuthorFacetDTO(author, 0, 0, 0) : toDTO(facet);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void markChanged(Long id) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(id);
+        }
+    }
+
+    private static void add(Map<Long, IndexedBook> books, Map<String, AuthorFacet> facets, Long id, IndexedBook book) {
+        books.put(id, book);
+        facets.merge(book.author(), new AuthorFacet(book.author(), 0, 0, 0).plus(book.copies(), 1),
+                (current, ignored) -> current.plus(book.copies(), 1));
+    }
+
+    private static void remove(Map<Long, IndexedBook> books, Map<String, AuthorFacet> facets, Long id) {
+        IndexedBook book = books.remove(id);
+        if (book == null) {
+            return;
+        }
+        AuthorFacet facet = facets.get(book.author()).plus(book.copies(), -1);
+        if (facet.totalTitles() == 0) {
+            facets.remove(book.author());
+        } else {
+            facets.put(book.author(), facet);
+        }
+    }
+
+    private static AuthorFacetDTO toDTO(AuthorFacet facet) {
+        return new AuthorFacetDTO(facet.author(), facet.totalTitles(), facet.availableTitles(), facet.availableCopies());
+    }
+}
@@ -0,0 +1,323 @@
+package com.biblioteca.microservicio_libros.search;
+
+import com.biblioteca.microservicio_libros.dto.BookSearchResultDTO;
+import com.biblioteca.microservicio_libros.model.Book;
+import com.biblioteca.microservicio_libros.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Índice invertido en memoria sobre título y autor, sin acentos ni mayúsculas
+@Component
+public class BookSearchIndex {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int TITLE_WEIGHT = 2;
+    private static final int AUTHOR_WEIGHT = 1;
+
+    private final BookRepository bookRepository;
+    // Un término con más postings que esto ("de", "el") no aporta candidatos nuevos si otro término ya los dio
+    private final int commonTermPostings;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Index current = new Index();
+    // Cambios recibidos mientras se reconstruye: se repiten sobre el índice nuevo antes de publicarlo
+    private List<Consumer<Index>> pendingChanges;
+
+    private record IndexedBook(String title, String author, Map<String, Integer> terms) {
+    }
+
+    private record QueryTerm(String term, Posting posting) {
+    }
+
+    private record ScoredBook(long id, double score) {
+    }
+
+    public BookSearchIndex(BookRepository bookRepository,
+                           @Value("${libros.search.common-term-postings:5000}") int commonTermPostings) {
+        this.bookRepository = bookRepository;
+        this.commonTermPostings = commonTermPostings;
+    }
+
+    public static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    public static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        return Arrays.stream(SEPARATORS.split(normalize(text)))
+                .filter(token -> !token.isEmpty())
+                .toList();
+    }
+
+    // El índice nuevo se arma sin bloqueo y se publica de una vez: las búsquedas siguen usando el anterior
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Index rebuilt = new Index();
+        boolean completed = false;
+        try {
+            try (Stream<BookRepository.TitleAuthor> rows = bookRepository.streamTitleAuthors()) {
+                rows.forEach(row -> rebuilt.add(row.getId(), row.getTitle(), row.getAuthor()));
+            }
+            completed = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (completed) {
+                    pendingChanges.forEach(change -> change.accept(rebuilt));
+                    current = rebuilt;
+                }
+                pendingChanges = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public void index(Book book) {
+        Long id = book.getId();
+        String title = book.getTitle();
+        String author = book.getAuthor();
+        apply(index -> {
+            index.remove(id);
+            index.add(id, title, author);
+        });
+    }
+
+    public void remove(Long id) {
+        apply(index -> index.remove(id));
+    }
+
+    public List<BookSearchResultDTO> search(String query, int limit) {
+        List<String> queryTerms = tokenize(query).stream().distinct().toList();
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Index index = current;
+            // Los términos raros primero: acotan los candidatos antes de tocar las listas largas
+            List<QueryTerm> terms = queryTerms.stream()
+                    .filter(index.postings::containsKey)
+                    .map(term -> new QueryTerm(term, index.postings.get(term)))
+                    .sorted(Comparator.comparingInt(term -> term.posting().size))
+                    .toList();
+            if (terms.isEmpty()) {
+                return List.of();
+            }
+
+            int totalDocuments = index.documents.size();
+            ScoreAccumulator scores = new ScoreAccumulator(terms.get(0).posting().size);
+            for (QueryTerm term : terms) {
+                Posting posting = term.posting();
+                double idf = Math.log(1 + (double) totalDocuments / posting.size);
+                if (scores.size == 0 || posting.size <= commonTermPostings) {
+                    for (int i = 0; i < posting.size; i++) {
+                        scores.add(posting.ids[i], posting.weights[i] * idf);
+                    }
+                } else {
+                    scores.addToCandidates(term.term(), idf, index);
+                }
+            }
+
+            return topResults(scores, limit, index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<BookSearchResultDTO> topResults(ScoreAccumulator scores, int limit, Index index) {
+        // Top-k con un heap acotado: sólo se crea un objeto por candidato que entra en el heap
+        Comparator<ScoredBook> ranking = Comparator.comparingDouble(ScoredBook::score)
+                .thenComparing(Comparator.comparingLong(ScoredBook::id).reversed());
+        PriorityQueue<ScoredBook> top = new PriorityQueue<>(ranking);
+        for (int slot = 0; slot < scores.keys.length; slot++) {
+            if (!scores.used[slot]) {
+                continue;
+            }
+            long id = scores.keys[slot];
+            double score = scores.values[slot];
+            ScoredBook worst = top.peek();
+            if (top.size() < limit) {
+                top.offer(new ScoredBook(id, score));
+            } else if (worst != null && (score > worst.score() || (score == worst.score() && id < worst.id()))) {
+                top.poll();
+                top.offer(new ScoredBook(id, score));
+            }
+        }
+
+        return top.stream()
+                .sorted(ranking.reversed())
+                .map(scored -> {
+                    IndexedBook book = index.documents.get(scored.id());
+                    return new BookSearchResultDTO(scored.id(), book.title(), book.author(), scored.score());
+                })
+                .toList();
+    }
+
+    private void apply(Consumer<Index> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(current);
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static final class Index {
+        private final Map<String, Posting> postings = new HashMap<>();
+        private final Map<Long, IndexedBook> documents = new HashMap<>();
+
+        private void add(Long id, String title, String author) {
+            Map<String, Integer> terms = new HashMap<>();
+            tokenize(title).forEach(term -> terms.merge(term, TITLE_WEIGHT, Integer::sum));
+            tokenize(author).forEach(term -> terms.merge(term, AUTHOR_WEIGHT, Integer::sum));
+
+            terms.forEach((term, weight) -> postings.computeIfAbsent(term, key -> new Posting()).add(id, weight));
+            documents.put(id, new IndexedBook(title, author, terms));
+        }
+
+        private void remove(Long id) {
+            IndexedBook previous = documents.remove(id);
+            if (previous == null) {
+                return;
+            }
+            previous.terms().keySet().forEach(term -> {
+                Posting posting = postings.get(term);
+                posting.remove(id);
+                if (posting.size == 0) {
+                    postings.remove(term);
+                }
+            });
+        }
+    }
+
+    // Lista de postings en arreglos primitivos, sin orden: borrar recorre la lista, agregar es O(1)
+    private static final class Posting {
+        private long[] ids = new long[4];
+        private int[] weights = new int[4];
+        private int size;
+
+        private void add(long id, int weight) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            ids[size] = id;
+            weights[size] = weight;
+            size++;
+        }
+
+        private void remove(long id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    size--;
+                    ids[i] = ids[size];
+                    weights[i] = weights[size];
+                    return;
+                }
+            }
+        }
+    }
+
+    // Tabla hash de direccionamiento abierto id -> puntuación, sin Long ni Double por candidato
+    private static final class ScoreAccumulator {
+        private long[] keys;
+        private double[] values;
+        private boolean[] used;
+        private int size;
+
+        private ScoreAccumulator(int expected) {
+            int capacity = 16;
+            while (capacity < expected * 2) {
+                capacity <<= 1;
+            }
+            allocate(capacity);
+        }
+
+        private void add(long id, double delta) {
+            int slot = slot(id);
+            if (!used[slot]) {
+                if ((size + 1) * 2 > keys.length) {
+                    grow();
+                    slot = slot(id);
+                }
+                used[slot] = true;
+                keys[slot] = id;
+                size++;
+            }
+            values[slot] += delta;
+        }
+
+        // Suma un término frecuente sólo a los candidatos existentes, con el peso guardado en cada documento
+        private void addToCandidates(String term, double idf, Index index) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (used[slot]) {
+                    values[slot] += index.documents.get(keys[slot]).terms().getOrDefault(term, 0) * idf;
+                }
+            }
+        }
+
+        private int slot(long id) {
+            int mask = keys.length - 1;
+            int slot = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+            while (used[slot] && keys[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            double[] oldValues = values;
+            boolean[] oldUsed = used;
+            allocate(oldKeys.length * 2);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = slot(oldKeys[i]);
+                    used[slot] = true;
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            values = new double[capacity];
+            used = new boolean[capacity];
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.biblioteca.microservicio_libros.search;
+
+import com.biblioteca.microservicio_libros.dto.BookSuggestionDTO;
+import com.biblioteca.microservicio_libros.model.Book;
+import com.biblioteca.microservicio_libros.repository.BookRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+// Autocompletado de títulos y autores ponderado por ejemplares disponibles
+@Component
+@RequiredArgsConstructor
+public class BookSuggester {
+    public static final String TITLE = "title";
+    public static final String AUTHOR = "author";
+
+    private final BookRepository bookRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RadixTrie titles = new RadixTrie();
+    private final RadixTrie authors = new RadixTrie();
+    private final Map<Long, SuggestedBook> books = new HashMap<>();
+
+    private record SuggestedBook(String titleKey, String authorKey, int copies) {
+    }
+
+    public static String toKey(String text) {
+        return String.join(" ", BookSearchIndex.tokenize(text));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            titles.clear();
+            authors.clear();
+            books.clear();
+            // En los libros fragmentados la fila queda en 0: la consulta suma el stock de los fragmentos
+            try (Stream<BookRepository.TitleAuthorCopies> rows = bookRepository.streamTitleAuthorCopies()) {
+                rows.forEach(row -> addBook(row.getId(), row.getTitle(), row.getAuthor(), Math.toIntExact(row.getCopies())));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Sólo para libros sin fragmentar, cuyo stock está completo en la fila
+    public void index(Book book) {
+        index(book.getId(), book.getTitle(), book.getAuthor(), book.getAvailableCopies());
+    }
+
+    // copies es el stock total del libro, sumando los fragmentos si los tiene
+    public void index(Long id, String title, String author, int copies) {
+        lock.writeLock().lock();
+        try {
+            removeBook(id);
+            addBook(id, title, author, copies);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeBook(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void adjustCopies(Long id, int delta) {
+        lock.writeLock().lock();
+        try {
+            SuggestedBook book = books.get(id);
+            if (book == null) {
+                return;
+            }
+            titles.adjustWeight(book.titleKey(), delta);
+            authors.adjustWeight(book.authorKey(), delta);
+            books.put(id, new SuggestedBook(book.titleKey(), book.authorKey(), book.copies() + delta));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<BookSuggestionDTO> suggest(String prefix, int limit) {
+        String key = toKey(prefix);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<BookSuggestionDTO> suggestions = new ArrayList<>();
+            titles.topCompletions(key, limit)
+                    .forEach(completion -> suggestions.add(new BookSuggestionDTO(completion.text(), TITLE, completion.weight())));
+            authors.topCompletions(key, limit)
+                    .forEach(completion -> suggestions.add(new BookSuggestionDTO(completion.text(), AUTHOR, completion.weight())));
+            return suggestions.stream()
+                    .sorted(Comparator.comparingLong(BookSuggestionDTO::getAvailableCopies).reversed()
+                            .thenComparing(BookSuggestionDTO::getText))
+                    .limit(limit)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addBook(Long id, String title, String author, int copies) {
+        SuggestedBook entry = new SuggestedBook(toKey(title), toKey(author), copies);
+        if (!entry.titleKey().isEmpty()) {
+            titles.add(entry.titleKey(), title, entry.copies());
+        }
+        if (!entry.authorKey().isEmpty()) {
+            authors.add(entry.authorKey(), author, entry.copies());
+        }
+        books.put(id, entry);
+    }
+
+    private void removeBook(Long id) {
+        SuggestedBook previous = books.remove(id);
+        if (previous == null) {
+            return;
+        }
+        titles.remove(previous.titleKey(), previous.copies());
+        authors.remove(previous.authorKey(), previous.copies());
+    }
+}
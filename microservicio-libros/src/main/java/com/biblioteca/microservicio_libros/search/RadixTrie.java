@@ -0,0 +1,266 @@
+package com.biblioteca.microservicio_libros.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Trie comprimido (radix): cada arista guarda una cadena y cada nodo el peso máximo de su subárbol,
+// lo que permite obtener los k mejores completados sin recorrer todo el subárbol del prefijo
+class RadixTrie {
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root = new Node("");
+    private int size;
+
+    record Completion(String text, long weight) {
+    }
+
+    private static final class Node {
+        private String label;
+        private Node[] children = NO_CHILDREN;
+        private String text;
+        private long weight;
+        private int references;
+        private long maxWeight = Long.MIN_VALUE;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        private boolean isTerminal() {
+            return references > 0;
+        }
+
+        private int indexOf(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char current = children[mid].label.charAt(0);
+                if (current < first) {
+                    low = mid + 1;
+                } else if (current > first) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        private void addChild(Node child) {
+            int position = -(indexOf(child.label.charAt(0)) + 1);
+            Node[] updated = new Node[children.length + 1];
+            System.arraycopy(children, 0, updated, 0, position);
+            updated[position] = child;
+            System.arraycopy(children, position, updated, position + 1, children.length - position);
+            children = updated;
+        }
+
+        private void removeChild(int position) {
+            Node[] updated = new Node[children.length - 1];
+            System.arraycopy(children, 0, updated, 0, position);
+            System.arraycopy(children, position + 1, updated, position, children.length - position - 1);
+            children = updated;
+        }
+
+        private void refreshMaxWeight() {
+            long max = isTerminal() ? weight : Long.MIN_VALUE;
+            for (Node child : children) {
+                max = Math.max(max, child.maxWeight);
+            }
+            maxWeight = max;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Agrega una referencia a la clave sumando su peso; el texto mostrado es el de la primera referencia
+    void add(String key, String text, long weight) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int offset = 0;
+        while (offset < key.length()) {
+            int index = node.indexOf(key.charAt(offset));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(offset));
+                node.addChild(leaf);
+                node = leaf;
+                path.add(node);
+                break;
+            }
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, key, offset);
+            if (common < child.label.length()) {
+                Node split = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.children = new Node[]{child};
+                split.refreshMaxWeight();
+                node.children[index] = split;
+                child = split;
+            }
+            node = child;
+            path.add(node);
+            offset += common;
+        }
+
+        if (!node.isTerminal()) {
+            node.text = text;
+            node.weight = 0;
+            size++;
+        }
+        node.references++;
+        node.weight += weight;
+        refresh(path);
+    }
+
+    // Quita una referencia a la clave restando su peso; al llegar a cero se elimina y se compactan los nodos
+    void remove(String key, long weight) {
+        List<Node> path = findPath(key);
+        if (path == null) {
+            return;
+        }
+        Node node = path.get(path.size() - 1);
+        node.references--;
+        node.weight -= weight;
+        if (!node.isTerminal()) {
+            node.text = null;
+            node.weight = 0;
+            size--;
+            compact(path);
+        }
+        refresh(path);
+    }
+
+    void adjustWeight(String key, long delta) {
+        List<Node> path = findPath(key);
+        if (path == null) {
+            return;
+        }
+        path.get(path.size() - 1).weight += delta;
+        refresh(path);
+    }
+
+    List<Completion> topCompletions(String prefix, int limit) {
+        Node start = root;
+        int offset = 0;
+        while (offset < prefix.length()) {
+            int index = start.indexOf(prefix.charAt(offset));
+            if (index < 0) {
+                return List.of();
+            }
+            Node child = start.children[index];
+            int common = commonPrefix(child.label, prefix, offset);
+            if (common < child.label.length() && offset + common < prefix.length()) {
+                return List.of();
+            }
+            start = child;
+            offset += common;
+        }
+
+        // Búsqueda best-first: un nodo nunca supera el maxWeight de su subárbol
+        List<Completion> result = new ArrayList<>();
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        if (start.maxWeight != Long.MIN_VALUE) {
+            queue.add(new Candidate(start, false, start.maxWeight));
+        }
+        while (!queue.isEmpty() && result.size() < limit) {
+            Candidate candidate = queue.poll();
+            Node node = candidate.node();
+            if (candidate.completion()) {
+                result.add(new Completion(node.text, node.weight));
+                continue;
+            }
+            if (node.isTerminal()) {
+                queue.add(new Candidate(node, true, node.weight));
+            }
+            for (Node child : node.children) {
+                queue.add(new Candidate(child, false, child.maxWeight));
+            }
+        }
+        return result;
+    }
+
+    void clear() {
+        root.children = NO_CHILDREN;
+        root.maxWeight = Long.MIN_VALUE;
+        size = 0;
+    }
+
+    private record Candidate(Node node, boolean completion, long priority) implements Comparable<Candidate> {
+        @Override
+        public int compareTo(Candidate other) {
+            int byPriority = Long.compare(other.priority, priority);
+            if (byPriority != 0) {
+                return byPriority;
+            }
+            // A igual peso, se entrega primero el completado antes que seguir expandiendo
+            return Boolean.compare(other.completion, completion);
+        }
+    }
+
+    private List<Node> findPath(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int offset = 0;
+        while (offset < key.length()) {
+            int index = node.indexOf(key.charAt(offset));
+            if (index < 0) {
+                return null;
+            }
+            Node child = node.children[index];
+            if (!key.startsWith(child.label, offset)) {
+                return null;
+            }
+            node = child;
+            path.add(node);
+            offset += child.label.length();
+        }
+        return node.isTerminal() ? path : null;
+    }
+
+    private void compact(List<Node> path) {
+        Node node = path.get(path.size() - 1);
+        if (node == root) {
+            return;
+        }
+        Node parent = path.get(path.size() - 2);
+        if (node.children.length == 0) {
+            parent.removeChild(parent.indexOf(node.label.charAt(0)));
+            path.remove(path.size() - 1);
+            if (parent != root && !parent.isTerminal() && parent.children.length == 1) {
+                mergeWithOnlyChild(parent);
+            }
+        } else if (node.children.length == 1) {
+            mergeWithOnlyChild(node);
+        }
+    }
+
+    private static void mergeWithOnlyChild(Node node) {
+        Node child = node.children[0];
+        node.label = node.label + child.label;
+        node.children = child.children;
+        node.text = child.text;
+        node.weight = child.weight;
+        node.references = child.references;
+    }
+
+    private static void refresh(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            path.get(i).refreshMaxWeight();
+        }
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,230 @@
+package com.biblioteca.microservicio_libros.service;
+
+import com.biblioteca.microservicio_libros.cache.IsbnFilter;
+import com.biblioteca.microservicio_libros.dto.BookImportErrorDTO;
+import com.biblioteca.microservicio_libros.dto.BookImportResultDTO;
+import com.biblioteca.microservicio_libros.dto.BookRequestDTO;
+import com.biblioteca.microservicio_libros.exception.DuplicateIsbnException;
+import com.biblioteca.microservicio_libros.mapper.BookMapper;
+import com.biblioteca.microservicio_libros.model.Book;
+import com.biblioteca.microservicio_libros.repository.BookRepository;
+import com.biblioteca.microservicio_libros.search.AuthorFacetIndex;
+import com.biblioteca.microservicio_libros.search.BookSearchIndex;
+import com.biblioteca.microservicio_libros.search.BookSuggester;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class BookImportService {
+    public static final int MAX_REPORTED_ERRORS = 1000;
+    private static final String CSV_HEADER = "title,author,isbn,availablecopies";
+
+    private final BookRepository bookRepository;
+    private final BookMapper bookMapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final IsbnFilter isbnFilter;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSuggester bookSuggester;
+    private final AuthorFacetIndex authorFacetIndex;
+    private final IsbnConflictChecker isbnConflictChecker;
+
+    @Value("${libros.import.batch-size:500}")
+    private int batchSize = 500;
+
+    public enum Format { CSV, NDJSON }
+
+    private record PendingRow(long line, BookRequestDTO dto) {
+    }
+
+    private static final class ImportState {
+        private long imported;
+        private long failed;
+        private final List<BookImportErrorDTO> errors = new ArrayList<>();
+        private final Set<String> seenIsbns = new HashSet<>();
+
+        private void fail(long line, String isbn, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new BookImportErrorDTO(line, isbn, message));
+            }
+        }
+    }
+
+    public BookImportResultDTO importBooks(InputStream input, Format format) {
+        ImportState state = new ImportState();
+        List<PendingRow> chunk = new ArrayList<>(batchSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (format == Format.CSV && lineNumber == 1 && isCsvHeader(line))) {
+                    continue;
+                }
+                BookRequestDTO dto = parseRow(line, lineNumber, format, state);
+                if (dto != null && isValid(dto, lineNumber, state)) {
+                    chunk.add(new PendingRow(lineNumber, dto));
+                }
+                if (chunk.size() >= batchSize) {
+                    insertChunk(chunk, state);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        if (!chunk.isEmpty()) {
+            insertChunk(chunk, state);
+        }
+        return new BookImportResultDTO(state.imported, state.failed, state.errors);
+    }
+
+    private BookRequestDTO parseRow(String line, long lineNumber, Format format, ImportState state) {
+        if (format == Format.NDJSON) {
+            try {
+                return objectMapper.readValue(line, BookRequestDTO.class);
+            } catch (JacksonException ex) {
+                state.fail(lineNumber, null, "JSON inválido: " + ex.getOriginalMessage());
+                return null;
+            }
+        }
+
+        List<String> fields = parseCsvLine(line);
+        if (fields.size() != 4) {
+            state.fail(lineNumber, null, "Se esperaban 4 columnas (title,author,isbn,availableCopies)");
+            return null;
+        }
+        Integer copies = null;
+        if (!fields.get(3).isBlank()) {
+            try {
+                copies = Integer.valueOf(fields.get(3).trim());
+            } catch (NumberFormatException ex) {
+                state.fail(lineNumber, fields.get(2), "La cantidad de ejemplares debe ser un número entero");
+                return null;
+            }
+        }
+        return new BookRequestDTO(fields.get(0), fields.get(1), fields.get(2), copies);
+    }
+
+    private boolean isValid(BookRequestDTO dto, long lineNumber, ImportState state) {
+        Set<ConstraintViolation<BookRequestDTO>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            String message = violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+            state.fail(lineNumber, dto.getIsbn(), message);
+            return false;
+        }
+        if (dto.getAvailableCopies() == null) {
+            state.fail(lineNumber, dto.getIsbn(), "La cantidad de ejemplares es obligatoria");
+            return false;
+        }
+        if (!state.seenIsbns.add(dto.getIsbn())
+                || (isbnFilter.mightContain(dto.getIsbn()) && bookRepository.existsByIsbn(dto.getIsbn()))) {
+            state.fail(lineNumber, dto.getIsbn(), new DuplicateIsbnException(dto.getIsbn()).getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    private void insertChunk(List<PendingRow> chunk, ImportState state) {
+        try {
+            List<Book> saved = transactionTemplate.execute(status -> {
+                List<Book> books = bookRepository.saveAll(chunk.stream()
+                        .map(row -> bookMapper.toEntity(row.dto()))
+                        .toList());
+                bookRepository.flush();
+                // Se vacía el contexto de persistencia para que la memoria no crezca con el archivo
+                entityManager.clear();
+                return books;
+            });
+            saved.forEach(this::afterInsert);
+            state.imported += saved.size();
+        } catch (DataIntegrityViolationException ex) {
+            // Un fallo dentro del lote invalida la transacción completa: se reintenta fila por fila
+            chunk.forEach(row -> insertRow(row, state));
+        }
+    }
+
+    private void insertRow(PendingRow row, ImportState state) {
+        try {
+            Book saved = transactionTemplate.execute(status ->
+                    bookRepository.saveAndFlush(bookMapper.toEntity(row.dto())));
+            afterInsert(saved);
+            state.imported++;
+        } catch (DataIntegrityViolationException ex) {
+            String isbn = row.dto().getIsbn();
+            // Sólo la clave única del ISBN es un duplicado; otra restricción se informa con su propio mensaje
+            String message = isbnConflictChecker.isTakenByAnother(isbn, null)
+                    ? new DuplicateIsbnException(isbn).getMessage()
+                    : "Restricción de la base de datos violada: " + ex.getMostSpecificCause().getMessage();
+            state.fail(row.line(), isbn, message);
+        }
+    }
+
+    private void afterInsert(Book book) {
+        isbnFilter.put(book.getIsbn());
+        bookSearchIndex.index(book);
+        bookSuggester.index(book);
+        authorFacetIndex.index(book.getId(), book.getAuthor(), book.getAvailableCopies());
+    }
+
+    private static boolean isCsvHeader(String line) {
+        return line.replace(" ", "").replace("\"", "").equalsIgnoreCase(CSV_HEADER);
+    }
+
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+}
@@ -1,78 +1,229 @@
 package com.biblioteca.microservicio_libros.service;
 
+import com.biblioteca.microservicio_libros.cache.BookStockCache;
+import com.biblioteca.microservicio_libros.cache.IsbnFilter;
+import com.biblioteca.microservicio_libros.dto.AuthorFacetDTO;
+import com.biblioteca.microservicio_libros.dto.BookPageDTO;
 import com.biblioteca.microservicio_libros.dto.BookRequestDTO;
 import com.biblioteca.microservicio_libros.dto.BookResponseDTO;
+import com.biblioteca.microservicio_libros.dto.BookSearchResultDTO;
+import com.biblioteca.microservicio_libros.dto.BookStockBatchDTO;
 import com.biblioteca.microservicio_libros.dto.BookStockDTO;
+import com.biblioteca.microservicio_libros.dto.BookSuggestionDTO;
+import com.biblioteca.microservicio_libros.dto.CacheStatsDTO;
+import com.biblioteca.microservicio_libros.dto.StockEventDTO;
+import com.biblioteca.microservicio_libros.events.StockEventPublisher;
+import com.biblioteca.microservicio_libros.exception.BatchTooLargeException;
 import com.biblioteca.microservicio_libros.exception.BookNotFoundException;
+import com.biblioteca.microservicio_libros.exception.ConcurrentUpdateException;
 import com.biblioteca.microservicio_libros.exception.DuplicateIsbnException;
 import com.biblioteca.microservicio_libros.exception.InsufficientStockException;
+import com.biblioteca.microservicio_libros.exception.InvalidCursorException;
 import com.biblioteca.microservicio_libros.mapper.BookMapper;
 import com.biblioteca.microservicio_libros.model.Book;
 import com.biblioteca.microservicio_libros.repository.BookRepository;
+import com.biblioteca.microservicio_libros.search.AuthorFacetIndex;
+import com.biblioteca.microservicio_libros.search.BookSearchIndex;
+import com.biblioteca.microservicio_libros.search.BookSuggester;
+import com.biblioteca.microservicio_libros.snapshot.CatalogSnapshotStore;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class BookService {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int DEFAULT_SUGGESTIONS = 10;
+    // Tope de ids por consulta en lote: una sola sentencia IN, lejos del límite de parámetros de PostgreSQL
+    public static final int MAX_STOCK_BATCH = 5000;
+
     private final BookRepository bookRepository;
     private final BookMapper bookMapper;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSuggester bookSuggester;
+    private final AuthorFacetIndex authorFacetIndex;
+    private final IsbnFilter isbnFilter;
+    private final BookStockCache bookStockCache;
+    private final StockShardService stockShardService;
+    private final StockEventPublisher stockEventPublisher;
+    private final OptimisticLockRetry optimisticLockRetry;
+    private final CatalogSnapshotStore catalogSnapshotStore;
+    private final IsbnConflictChecker isbnConflictChecker;
 
 
     @Transactional
     public BookResponseDTO createBook(BookRequestDTO requestDTO){
-        if (bookRepository.existsByIsbn(requestDTO.getIsbn())){
+        if (isIsbnTaken(requestDTO.getIsbn())){
             throw new DuplicateIsbnException(requestDTO.getIsbn());
         }
 
         Book book = bookMapper.toEntity(requestDTO);
-        Book savedBook = bookRepository.save(book);
+        Book savedBook = saveWithUniqueIsbn(book);
+        afterCommit(() -> bookSearchIndex.index(savedBook));
+        afterCommit(() -> bookSuggester.index(savedBook));
+        afterCommit(() -> authorFacetIndex.index(savedBook.getId(), savedBook.getAuthor(), savedBook.getAvailableCopies()));
         return bookMapper.toResponseDTO(savedBook);
     }
 
     @Transactional(readOnly = true)
-    public List<BookResponseDTO> getAllBooks() {
-        return bookRepository.findAll()
-                .stream()
-                .map(bookMapper::toResponseDTO)
+    public BookPageDTO getAllBooks(String after, Integer limit, String author, boolean onlyAvailable) {
+        long afterId = decodeCursor(after);
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        // Se pide un registro extra para saber si existe una página siguiente
+        Limit fetchLimit = Limit.of(pageSize + 1);
+
+        List<BookResponseDTO> books;
+        if (author != null && onlyAvailable) {
+            books = bookRepository.findByAuthorAndAvailableCopiesGreaterThanAndIdGreaterThanOrderByIdAsc(author, 0, afterId, fetchLimit);
+        } else if (author != null) {
+            books = bookRepository.findByAuthorAndIdGreaterThanOrderByIdAsc(author, afterId, fetchLimit);
+        } else if (onlyAvailable) {
+            books = bookRepository.findByAvailableCopiesGreaterThanAndIdGreaterThanOrderByIdAsc(0, afterId, fetchLimit);
+        } else {
+            books = bookRepository.findByIdGreaterThanOrderByIdAsc(afterId, fetchLimit);
+        }
+
+        boolean hasNext = books.size() > pageSize;
+        List<BookResponseDTO> items = books.stream()
+                .limit(pageSize)
                 .toList();
+        String nextCursor = hasNext ? encodeCursor(items.get(items.size() - 1).getId()) : null;
+        return new BookPageDTO(items, nextCursor);
     }
 
     @Transactional(readOnly = true)
+    public void exportBooks(Consumer<BookResponseDTO> consumer) {
+        // La proyección no deja entidades en el contexto de persistencia, así la memoria se mantiene constante
+        try (Stream<BookResponseDTO> books = bookRepository.streamAllResponses()) {
+            books.forEach(consumer);
+        }
+    }
+
+    public List<BookSearchResultDTO> searchBooks(String query, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        return bookSearchIndex.search(query, pageSize);
+    }
+
+    public List<BookSuggestionDTO> suggestBooks(String prefix, Integer limit) {
+        int size = limit == null ? DEFAULT_SUGGESTIONS : Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        return bookSuggester.suggest(prefix, size);
+    }
+
+    public List<AuthorFacetDTO> getAuthorFacets(Integer limit) {
+        int size = limit == null ? DEFAULT_PAGE_SIZE : Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        return authorFacetIndex.topAuthors(size);
+    }
+
+    public AuthorFacetDTO getAuthorFacet(String author) {
+        return authorFacetIndex.getAuthor(author);
+    }
+
+    // Sin transacción propia: en las réplicas de solo lectura los datos del libro salen del snapshot mapeado
     public BookResponseDTO getBookById(Long id) {
-        Book book = bookRepository.findById(id)
+        return catalogSnapshotStore.findById(id)
+                .flatMap(this::withLiveStock)
+                .or(() -> bookRepository.findResponseById(id))
                 .orElseThrow(() -> new BookNotFoundException(id));
-        return bookMapper.toResponseDTO(book);
     }
 
-    @Transactional(readOnly = true)
+    public BookResponseDTO getBookByIsbn(String isbn) {
+        return catalogSnapshotStore.findByIsbn(isbn)
+                .flatMap(this::withLiveStock)
+                .or(() -> bookRepository.findResponseByIsbn(isbn))
+                .orElseThrow(() -> new BookNotFoundException(isbn));
+    }
+
+    // Sin transacción propia: los aciertos de caché no tocan la base de datos
     public BookStockDTO getBookStock(Long id) {
-        Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new BookNotFoundException(id));
-        return bookMapper.toStockDTO(book);
+        // Nunca desde el snapshot: sus ejemplares pueden tener un intervalo de escritura de atraso y el stock cambia con cada préstamo
+        return bookStockCache.get(id, key -> bookRepository.findStockById(key)
+                .orElseThrow(() -> new BookNotFoundException(key)));
+    }
+
+    // El snapshot puede atrasarse un intervalo de escritura más uno de recarga: el stock se toma de la caché de stock,
+    // que lee la base de datos, y si el libro ya no existe se descarta el acierto del snapshot
+    private Optional<BookResponseDTO> withLiveStock(BookResponseDTO book) {
+        try {
+            book.setAvailableCopies(getBookStock(book.getId()).getAvailableCopies());
+            return Optional.of(book);
+        } catch (BookNotFoundException ex) {
+            return Optional.empty();
+        }
+    }
+
+    public CacheStatsDTO getStockCacheStats() {
+        return bookStockCache.stats();
+    }
+
+    @Transactional(readOnly = true)
+    public BookStockBatchDTO getBooksStock(Collection<Long> ids) {
+        Set<Long> requestedIds = new LinkedHashSet<>(ids);
+        if (requestedIds.size() > MAX_STOCK_BATCH) {
+            throw new BatchTooLargeException(requestedIds.size(), MAX_STOCK_BATCH);
+        }
+
+        Map<Long, BookStockDTO> stocks = new LinkedHashMap<>();
+        bookRepository.findStockByIdIn(requestedIds)
+                .forEach(stock -> stocks.put(stock.getId(), stock));
+
+        List<Long> notFound = requestedIds.stream()
+                .filter(id -> !stocks.containsKey(id))
+                .toList();
+        return new BookStockBatchDTO(stocks, notFound);
     }
 
-    @Transactional
     public BookResponseDTO updateBook(Long id, BookRequestDTO requestDTO) {
-        Book book = bookRepository.findById(id)
+        // Cada intento relee el libro, así que ante un conflicto de versión los cambios se reaplican sobre el estado vigente
+        return optimisticLockRetry.execute(() -> applyUpdate(id, requestDTO),
+                () -> new ConcurrentUpdateException("libro", id));
+    }
+
+    private BookResponseDTO applyUpdate(Long id, BookRequestDTO requestDTO) {
+        // Con la fila bloqueada, promote y demote no pueden cambiar el modo del libro hasta el commit
+        Book book = bookRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> new BookNotFoundException(id));
 
         // Verificar si el ISBN cambió y si ya existe
         if (!book.getIsbn().equals(requestDTO.getIsbn()) &&
-                bookRepository.existsByIsbn(requestDTO.getIsbn())) {
+                isIsbnTaken(requestDTO.getIsbn())) {
             throw new DuplicateIsbnException(requestDTO.getIsbn());
         }
 
         book.setTitle(requestDTO.getTitle());
         book.setAuthor(requestDTO.getAuthor());
         book.setIsbn(requestDTO.getIsbn());
-        book.setAvailableCopies(requestDTO.getAvailableCopies());
+        // En un libro fragmentado el nuevo stock se reparte entre los fragmentos y la fila queda en 0.
+        // Los fragmentos se buscan en la base de datos: el conjunto en memoria de otra instancia puede estar atrasado
+        boolean sharded = stockShardService.resetShards(id, requestDTO.getAvailableCopies());
+        book.setAvailableCopies(sharded ? 0 : requestDTO.getAvailableCopies());
 
-        Book updatedBook = bookRepository.save(book);
-        return bookMapper.toResponseDTO(updatedBook);
+        Book updatedBook = saveWithUniqueIsbn(book);
+        bookStockCache.invalidate(id);
+        afterCommit(() -> bookSearchIndex.index(updatedBook));
+        afterCommit(() -> bookSuggester.index(id, updatedBook.getTitle(), updatedBook.getAuthor(), requestDTO.getAvailableCopies()));
+        afterCommit(() -> authorFacetIndex.index(id, updatedBook.getAuthor(), requestDTO.getAvailableCopies()));
+        stockEventPublisher.publish(StockEventDTO.Type.UPDATED, id, () -> currentCopies(id));
+        return sharded
+                ? bookMapper.toResponseDTO(updatedBook, requestDTO.getAvailableCopies())
+                : bookMapper.toResponseDTO(updatedBook);
     }
 
     @Transactional
@@ -81,27 +232,117 @@ public class BookService {
             throw new BookNotFoundException(id);
         }
         bookRepository.deleteById(id);
+        stockShardService.deleteShards(id);
+        bookStockCache.invalidate(id);
+        afterCommit(() -> bookSearchIndex.remove(id));
+        afterCommit(() -> bookSuggester.remove(id));
+        afterCommit(() -> authorFacetIndex.remove(id));
+        stockEventPublisher.publish(StockEventDTO.Type.DELETED, id, () -> 0);
     }
 
     @Transactional
     public void decreaseStock(Long id) {
-        Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new BookNotFoundException(id));
-
-        if (book.getAvailableCopies() <= 0) {
-            throw new InsufficientStockException(id);
+        bookStockCache.invalidate(id);
+        stockShardService.beginStockUpdate(id);
+        try {
+            boolean hot = stockShardService.isHot(id);
+            boolean decremented = hot ? stockShardService.tryDecrement(id) : bookRepository.decrementAvailableCopies(id) == 1;
+            if (!decremented) {
+                if (!bookRepository.existsById(id)) {
+                    throw new BookNotFoundException(id);
+                }
+                // El libro pudo promoverse o degradarse mientras tanto: se reintenta una vez con el modo vigente
+                boolean sharded = stockShardService.hasShards(id);
+                if (sharded != hot) {
+                    decremented = sharded ? stockShardService.tryDecrement(id) : bookRepository.decrementAvailableCopies(id) == 1;
+                }
+                if (!decremented) {
+                    throw new InsufficientStockException(id);
+                }
+            }
+        } finally {
+            stockShardService.endStockUpdate(id);
         }
-
-        book.setAvailableCopies(book.getAvailableCopies() - 1);
-        bookRepository.save(book);
+        afterCommit(() -> bookSuggester.adjustCopies(id, -1));
+        afterCommit(() -> authorFacetIndex.adjustCopies(id, -1));
+        stockEventPublisher.publish(StockEventDTO.Type.DECREASED, id, () -> currentCopies(id));
     }
 
     @Transactional
     public void increaseStock(Long id) {
-        Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new BookNotFoundException(id));
+        bookStockCache.invalidate(id);
+        stockShardService.beginStockUpdate(id);
+        try {
+            boolean hot = stockShardService.isHot(id);
+            boolean incremented = hot ? stockShardService.tryIncrement(id) : bookRepository.incrementAvailableCopies(id) == 1;
+            if (!incremented) {
+                boolean sharded = stockShardService.hasShards(id);
+                if (sharded != hot) {
+                    incremented = sharded ? stockShardService.tryIncrement(id) : bookRepository.incrementAvailableCopies(id) == 1;
+                }
+                if (!incremented) {
+                    throw new BookNotFoundException(id);
+                }
+            }
+        } finally {
+            stockShardService.endStockUpdate(id);
+        }
+        afterCommit(() -> bookSuggester.adjustCopies(id, 1));
+        afterCommit(() -> authorFacetIndex.adjustCopies(id, 1));
+        stockEventPublisher.publish(StockEventDTO.Type.INCREASED, id, () -> currentCopies(id));
+    }
 
-        book.setAvailableCopies(book.getAvailableCopies() + 1);
-        bookRepository.save(book);
+    // El publicador la evalúa después del commit; un libro ya borrado cuenta como 0
+    private int currentCopies(Long id) {
+        return bookRepository.findTotalCopiesById(id).orElse(0);
+    }
+
+    private boolean isIsbnTaken(String isbn) {
+        // Si el filtro descarta el ISBN no hace falta consultar la base de datos
+        return isbnFilter.mightContain(isbn) && bookRepository.existsByIsbn(isbn);
+    }
+
+    private Book saveWithUniqueIsbn(Book book) {
+        try {
+            Book savedBook = bookRepository.saveAndFlush(book);
+            isbnFilter.put(savedBook.getIsbn());
+            return savedBook;
+        } catch (DataIntegrityViolationException ex) {
+            // Solo la clave única del ISBN se traduce a 409; cualquier otra restricción se propaga tal cual
+            if (isbnConflictChecker.isTakenByAnother(book.getIsbn(), book.getId())) {
+                throw new DuplicateIsbnException(book.getIsbn());
+            }
+            throw ex;
+        }
+    }
+
+    // Los índices en memoria sólo reflejan cambios confirmados: un rollback no debe dejarles libros fantasma
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidCursorException(cursor);
+        }
     }
 }
@@ -0,0 +1,33 @@
+package com.biblioteca.microservicio_libros.service;
+
+import com.biblioteca.microservicio_libros.model.Book;
+import com.biblioteca.microservicio_libros.repository.BookRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Objects;
+
+// Decide si una violación de integridad se debe a la clave única del ISBN y no a otra restricción.
+// Se consulta en una transacción nueva: en PostgreSQL la transacción cuyo flush falló queda abortada.
+@Component
+public class IsbnConflictChecker {
+    private final BookRepository bookRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public IsbnConflictChecker(BookRepository bookRepository, PlatformTransactionManager transactionManager) {
+        this.bookRepository = bookRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    // bookId es el libro que se intentaba guardar (null en un alta): su propio ISBN no cuenta como conflicto
+    public boolean isTakenByAnother(String isbn, Long bookId) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> bookRepository.findByIsbn(isbn)
+                .map(Book::getId)
+                .filter(id -> !Objects.equals(id, bookId))
+                .isPresent()));
+    }
+}
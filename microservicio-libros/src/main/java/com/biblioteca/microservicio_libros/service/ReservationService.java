@@ -0,0 +1,215 @@
+package com.biblioteca.microservicio_libros.service;
+
+import com.biblioteca.microservicio_libros.dto.ReservationResponseDTO;
+import com.biblioteca.microservicio_libros.exception.ReservationNotActiveException;
+import com.biblioteca.microservicio_libros.exception.ReservationNotFoundException;
+import com.biblioteca.microservicio_libros.model.StockReservation;
+import com.biblioteca.microservicio_libros.repository.BookRepository;
+import com.biblioteca.microservicio_libros.repository.StockReservationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Reservas en dos fases: la reserva descuenta el stock en el momento (deja de poder prestarse)
+// y queda retenida hasta que se confirma, se cancela o vence. Al cancelar o vencer el ejemplar vuelve al stock.
+// Los vencimientos se programan en una DelayQueue (montículo ordenado por fecha de vencimiento):
+// el barrido solo toca las reservas vencidas, sin recorrer las pendientes.
+@Service
+public class ReservationService {
+    private static final Logger log = LoggerFactory.getLogger(ReservationService.class);
+
+    private final StockReservationRepository reservationRepository;
+    private final BookRepository bookRepository;
+    private final BookService bookService;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration defaultTtl;
+    private final Duration maxTtl;
+    private final int sweepBatchSize;
+
+    private final DelayQueue<Hold> timers = new DelayQueue<>();
+
+    public ReservationService(StockReservationRepository reservationRepository,
+                              BookRepository bookRepository,
+                              BookService bookService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${libros.reservations.default-ttl:5m}") Duration defaultTtl,
+                              @Value("${libros.reservations.max-ttl:30m}") Duration maxTtl,
+                              @Value("${libros.reservations.sweep-batch-size:1000}") int sweepBatchSize) {
+        this.reservationRepository = reservationRepository;
+        this.bookRepository = bookRepository;
+        this.bookService = bookService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.defaultTtl = defaultTtl;
+        this.maxTtl = maxTtl;
+        this.sweepBatchSize = sweepBatchSize;
+    }
+
+    // Reprograma las reservas pendientes que dejó una ejecución anterior
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPendingHolds() {
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<StockReservation> held = reservationRepository.streamByStatus(StockReservation.Status.HELD)) {
+                held.forEach(reservation -> timers.add(new Hold(reservation.getId(), reservation.getExpiresAt())));
+            }
+        });
+    }
+
+    @Transactional
+    public ReservationResponseDTO reserve(Long bookId, Integer ttlSeconds) {
+        Duration ttl = ttlSeconds == null ? defaultTtl : Duration.ofSeconds(ttlSeconds);
+        if (ttl.compareTo(maxTtl) > 0) {
+            ttl = maxTtl;
+        }
+
+        // El descuento es el mismo UPDATE condicional de un préstamo: si no hay stock no se crea la reserva
+        bookService.decreaseStock(bookId);
+
+        Instant now = Instant.now();
+        StockReservation reservation = reservationRepository.save(
+                new StockReservation(null, bookId, StockReservation.Status.HELD, now.plus(ttl), now));
+        Hold hold = new Hold(reservation.getId(), reservation.getExpiresAt());
+        // Se programa después del commit para no vencer una reserva que nunca llegó a existir
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    timers.add(hold);
+                }
+            });
+        } else {
+            timers.add(hold);
+        }
+        return toResponseDTO(reservation);
+    }
+
+    @Transactional(readOnly = true)
+    public ReservationResponseDTO getReservation(UUID id) {
+        return reservationRepository.findById(id)
+                .map(this::toResponseDTO)
+                .orElseThrow(() -> new ReservationNotFoundException(id));
+    }
+
+    @Transactional
+    public ReservationResponseDTO confirm(UUID id) {
+        int confirmed = reservationRepository.updateStatusIfNotExpired(
+                id, StockReservation.Status.HELD, StockReservation.Status.CONFIRMED, Instant.now());
+        if (confirmed == 0) {
+            throw notActive(id);
+        }
+        return getReservation(id);
+    }
+
+    @Transactional
+    public ReservationResponseDTO cancel(UUID id) {
+        if (!release(id, StockReservation.Status.CANCELLED)) {
+            throw notActive(id);
+        }
+        return getReservation(id);
+    }
+
+    @Scheduled(fixedDelayString = "${libros.reservations.sweep-interval:1s}")
+    public int expireDueHolds() {
+        int expired = 0;
+        // Lote acotado por pasada para no monopolizar el planificador; lo que quede sale en la siguiente
+        for (int i = 0; i < sweepBatchSize; i++) {
+            Hold hold = timers.poll();
+            if (hold == null) {
+                break;
+            }
+            if (expire(hold.id())) {
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    // Red de seguridad para reservas creadas por otra instancia o cuyo vencimiento falló
+    @Scheduled(fixedDelayString = "${libros.reservations.recovery-interval:1m}")
+    public int expireOverdueHolds() {
+        List<UUID> overdue = reservationRepository.findIdsByStatusExpiredAt(
+                StockReservation.Status.HELD, Instant.now(), Limit.of(sweepBatchSize));
+        int expired = 0;
+        for (UUID id : overdue) {
+            if (expire(id)) {
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    public int pendingTimers() {
+        return timers.size();
+    }
+
+    private boolean expire(UUID id) {
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> release(id, StockReservation.Status.EXPIRED)));
+        } catch (RuntimeException ex) {
+            log.warn("No se pudo vencer la reserva {}: {}", id, ex.getMessage());
+            return false;
+        }
+    }
+
+    // Solo la operación que saca la reserva de HELD devuelve el ejemplar, así nunca se libera dos veces
+    private boolean release(UUID id, StockReservation.Status target) {
+        if (reservationRepository.updateStatus(id, StockReservation.Status.HELD, target) == 0) {
+            return false;
+        }
+        Long bookId = reservationRepository.findBookIdById(id);
+        // Si el libro se eliminó mientras tanto no hay stock al que devolver el ejemplar
+        if (bookRepository.existsById(bookId)) {
+            bookService.increaseStock(bookId);
+        }
+        return true;
+    }
+
+    private RuntimeException notActive(UUID id) {
+        StockReservation reservation = reservationRepository.findById(id)
+                .orElseThrow(() -> new ReservationNotFoundException(id));
+        // Una reserva vencida que el barrido todavía no procesó sigue en HELD
+        StockReservation.Status status = reservation.getStatus() == StockReservation.Status.HELD
+                ? StockReservation.Status.EXPIRED
+                : reservation.getStatus();
+        return new ReservationNotActiveException(id, status);
+    }
+
+    private ReservationResponseDTO toResponseDTO(StockReservation reservation) {
+        return new ReservationResponseDTO(
+                reservation.getId(),
+                reservation.getBookId(),
+                reservation.getStatus(),
+                reservation.getExpiresAt()
+        );
+    }
+
+    private record Hold(UUID id, Instant expiresAt) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Duration.between(Instant.now(), expiresAt));
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return expiresAt.compareTo(((Hold) other).expiresAt);
+        }
+    }
+}
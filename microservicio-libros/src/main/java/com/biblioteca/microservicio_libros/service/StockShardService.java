@@ -0,0 +1,239 @@
+package com.biblioteca.microservicio_libros.service;
+
+import com.biblioteca.microservicio_libros.model.Book;
+import com.biblioteca.microservicio_libros.model.BookStockShard;
+import com.biblioteca.microservicio_libros.repository.BookRepository;
+import com.biblioteca.microservicio_libros.repository.BookStockShardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Modo "libro caliente": el stock de un título muy disputado se reparte en varias filas
+// de book_stock_shards para que los préstamos concurrentes no se serialicen sobre la misma fila.
+// Mientras un libro está fragmentado, books.available_copies queda en 0 y el stock real es la suma de los fragmentos.
+@Service
+public class StockShardService {
+    private static final Logger log = LoggerFactory.getLogger(StockShardService.class);
+
+    private final BookRepository bookRepository;
+    private final BookStockShardRepository shardRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int shardCount;
+    private final int promoteConcurrency;
+    private final int demoteConcurrency;
+    private final int demoteAfterQuietWindows;
+
+    private final Set<Long> hotBooks = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Contention> contention = new ConcurrentHashMap<>();
+
+    public StockShardService(BookRepository bookRepository,
+                             BookStockShardRepository shardRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${libros.hot-books.enabled:false}") boolean enabled,
+                             @Value("${libros.hot-books.shards:8}") int shardCount,
+                             @Value("${libros.hot-books.promote-concurrency:16}") int promoteConcurrency,
+                             @Value("${libros.hot-books.demote-concurrency:2}") int demoteConcurrency,
+                             @Value("${libros.hot-books.demote-after-quiet-windows:6}") int demoteAfterQuietWindows) {
+        if (shardCount < 2) {
+            throw new IllegalArgumentException("libros.hot-books.shards debe ser al menos 2");
+        }
+        this.bookRepository = bookRepository;
+        this.shardRepository = shardRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.shardCount = shardCount;
+        this.promoteConcurrency = promoteConcurrency;
+        this.demoteConcurrency = demoteConcurrency;
+        this.demoteAfterQuietWindows = demoteAfterQuietWindows;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadHotBooks() {
+        hotBooks.addAll(shardRepository.findShardedBookIds());
+    }
+
+    public boolean isHot(Long bookId) {
+        return hotBooks.contains(bookId);
+    }
+
+    // Consulta la base de datos: cubre libros promovidos o degradados por otra instancia
+    public boolean hasShards(Long bookId) {
+        boolean sharded = shardRepository.existsByBookId(bookId);
+        if (sharded) {
+            hotBooks.add(bookId);
+        } else {
+            hotBooks.remove(bookId);
+        }
+        return sharded;
+    }
+
+    // Empieza en un fragmento al azar y recorre el resto hasta encontrar uno con stock
+    public boolean tryDecrement(Long bookId) {
+        int start = ThreadLocalRandom.current().nextInt(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            if (shardRepository.decrementAvailableCopies(bookId, (start + i) % shardCount) == 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean tryIncrement(Long bookId) {
+        int shard = ThreadLocalRandom.current().nextInt(shardCount);
+        if (shardRepository.incrementAvailableCopies(bookId, shard) == 1) {
+            return true;
+        }
+        // El libro pudo haberse fragmentado con otra cantidad de fragmentos
+        return shardRepository.incrementAvailableCopies(bookId, 0) == 1;
+    }
+
+    // Reparte un stock nuevo entre los fragmentos existentes; debe llamarse dentro de la transacción del cambio
+    public boolean resetShards(Long bookId, int copies) {
+        List<BookStockShard> shards = shardRepository.findByBookIdForUpdate(bookId);
+        if (shards.isEmpty()) {
+            hotBooks.remove(bookId);
+            return false;
+        }
+        hotBooks.add(bookId);
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).setAvailableCopies(shareOf(copies, shards.size(), i));
+        }
+        return true;
+    }
+
+    public void deleteShards(Long bookId) {
+        shardRepository.deleteByBookId(bookId);
+        afterCommit(() -> hotBooks.remove(bookId));
+    }
+
+    public boolean promote(Long bookId) {
+        Boolean promoted = transactionTemplate.execute(status -> {
+            Book book = bookRepository.findByIdForUpdate(bookId).orElse(null);
+            if (book == null || shardRepository.existsByBookId(bookId)) {
+                return false;
+            }
+            int copies = book.getAvailableCopies();
+            List<BookStockShard> shards = new ArrayList<>(shardCount);
+            for (int i = 0; i < shardCount; i++) {
+                shards.add(new BookStockShard(null, bookId, i, shareOf(copies, shardCount, i)));
+            }
+            shardRepository.saveAll(shards);
+            book.setAvailableCopies(0);
+            return true;
+        });
+        if (Boolean.TRUE.equals(promoted)) {
+            hotBooks.add(bookId);
+            log.info("Libro {} promovido a stock fragmentado en {} filas", bookId, shardCount);
+        }
+        return Boolean.TRUE.equals(promoted);
+    }
+
+    public boolean demote(Long bookId) {
+        Boolean demoted = transactionTemplate.execute(status -> {
+            Book book = bookRepository.findByIdForUpdate(bookId).orElse(null);
+            List<BookStockShard> shards = shardRepository.findByBookIdForUpdate(bookId);
+            if (shards.isEmpty()) {
+                return false;
+            }
+            if (book != null) {
+                int copies = shards.stream().mapToInt(BookStockShard::getAvailableCopies).sum();
+                book.setAvailableCopies(book.getAvailableCopies() + copies);
+            }
+            shardRepository.deleteByBookId(bookId);
+            return true;
+        });
+        hotBooks.remove(bookId);
+        if (Boolean.TRUE.equals(demoted)) {
+            log.info("Libro {} vuelve a stock en una sola fila", bookId);
+        }
+        return Boolean.TRUE.equals(demoted);
+    }
+
+    // Mide cuántas operaciones de stock sobre el mismo libro están en curso a la vez
+    public void beginStockUpdate(Long bookId) {
+        if (!enabled) {
+            return;
+        }
+        Contention c = contention.computeIfAbsent(bookId, id -> new Contention());
+        int inFlight = c.inFlight.incrementAndGet();
+        c.peak.accumulateAndGet(inFlight, Math::max);
+    }
+
+    public void endStockUpdate(Long bookId) {
+        if (!enabled) {
+            return;
+        }
+        Contention c = contention.get(bookId);
+        if (c != null) {
+            c.inFlight.decrementAndGet();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${libros.hot-books.evaluation-interval:10s}")
+    public void evaluate() {
+        if (!enabled) {
+            return;
+        }
+        // Los libros calientes sin tráfico también cuentan como ventanas tranquilas
+        hotBooks.forEach(id -> contention.computeIfAbsent(id, key -> new Contention()));
+        for (Map.Entry<Long, Contention> entry : contention.entrySet()) {
+            Long bookId = entry.getKey();
+            Contention c = entry.getValue();
+            int peak = c.peak.getAndSet(c.inFlight.get());
+            if (!hotBooks.contains(bookId)) {
+                if (peak >= promoteConcurrency) {
+                    promote(bookId);
+                } else if (peak == 0 && c.inFlight.get() == 0) {
+                    contention.remove(bookId, c);
+                }
+            } else if (peak <= demoteConcurrency) {
+                if (++c.quietWindows >= demoteAfterQuietWindows) {
+                    demote(bookId);
+                    contention.remove(bookId, c);
+                }
+            } else {
+                c.quietWindows = 0;
+            }
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static int shareOf(int copies, int shards, int index) {
+        return copies / shards + (index < copies % shards ? 1 : 0);
+    }
+
+    private static final class Contention {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peak = new AtomicInteger();
+        private int quietWindows;
+    }
+}
@@ -0,0 +1,260 @@
+package com.biblioteca.microservicio_libros.snapshot;
+
+import com.biblioteca.microservicio_libros.dto.BookResponseDTO;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+
+// Snapshot binario del catálogo, pensado para leerse con un mapeo de memoria de solo lectura.
+// Formato (big endian):
+//   cabecera   magic, versión, fecha de creación, cantidad de libros y offsets de cada sección
+//   registros  id (long), ejemplares (int) e isbn, título y autor como UTF-8 precedidos por su largo (unsigned short)
+//   índice id  pares (id long, offset int) ordenados por id: búsqueda binaria
+//   índice isbn tabla hash de direccionamiento abierto con el offset del registro (0 = vacío)
+// Los índices viven en el archivo mapeado, fuera del heap: abrir un snapshot no carga el catálogo en memoria.
+public final class CatalogSnapshot {
+    private static final int MAGIC = 0x4C42534E;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 36;
+    private static final int ID_ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private final MappedByteBuffer buffer;
+    private final Instant createdAt;
+    private final int size;
+    private final int idIndexOffset;
+    private final int isbnTableOffset;
+    private final int isbnTableMask;
+
+    private CatalogSnapshot(MappedByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("El archivo no es un snapshot del catálogo");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Versión de snapshot no soportada: " + buffer.getInt(4));
+        }
+        this.buffer = buffer;
+        this.createdAt = Instant.ofEpochMilli(buffer.getLong(8));
+        this.size = buffer.getInt(16);
+        this.idIndexOffset = buffer.getInt(20);
+        this.isbnTableOffset = buffer.getInt(24);
+        this.isbnTableMask = buffer.getInt(28) - 1;
+    }
+
+    public static CatalogSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // El mapeo sigue siendo válido después de cerrar el canal
+            return new CatalogSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static Builder create(Path path) throws IOException {
+        return new Builder(path);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Instant createdAt() {
+        return createdAt;
+    }
+
+    public Optional<BookResponseDTO> findById(long id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = idIndexOffset + mid * ID_ENTRY_SIZE;
+            long candidate = buffer.getLong(entry);
+            if (candidate < id) {
+                low = mid + 1;
+            } else if (candidate > id) {
+                high = mid - 1;
+            } else {
+                return Optional.of(readRecord(buffer.getInt(entry + Long.BYTES)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    public Optional<BookResponseDTO> findByIsbn(String isbn) {
+        byte[] key = isbn.getBytes(StandardCharsets.UTF_8);
+        int slot = hash(key) & isbnTableMask;
+        while (true) {
+            int offset = buffer.getInt(isbnTableOffset + slot * Integer.BYTES);
+            if (offset == 0) {
+                return Optional.empty();
+            }
+            if (isbnEquals(offset, key)) {
+                return Optional.of(readRecord(offset));
+            }
+            slot = (slot + 1) & isbnTableMask;
+        }
+    }
+
+    private boolean isbnEquals(int recordOffset, byte[] key) {
+        int position = recordOffset + Long.BYTES + Integer.BYTES;
+        int length = Short.toUnsignedInt(buffer.getShort(position));
+        if (length != key.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(position + Short.BYTES + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private BookResponseDTO readRecord(int offset) {
+        ByteBuffer record = buffer.slice(offset, buffer.capacity() - offset);
+        long id = record.getLong();
+        int copies = record.getInt();
+        String isbn = readString(record);
+        String title = readString(record);
+        String author = readString(record);
+        return new BookResponseDTO(id, title, author, isbn, copies);
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[Short.toUnsignedInt(record.getShort())];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // FNV-1a de 32 bits: estable entre versiones de la JVM, a diferencia de String.hashCode sobre el texto decodificado
+    private static int hash(byte[] bytes) {
+        int hash = 0x811C9DC5;
+        for (byte b : bytes) {
+            hash ^= b & 0xFF;
+            hash *= 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    // Escribe el snapshot en un archivo temporal y lo publica con un movimiento atómico,
+    // así un lector nunca mapea un archivo a medio escribir. Los libros deben llegar ordenados por id.
+    public static final class Builder implements Closeable {
+        private final Path target;
+        private final Path temp;
+        private final DataOutputStream out;
+        private long[] ids = new long[1024];
+        private int[] offsets = new int[1024];
+        private int[] isbnHashes = new int[1024];
+        private int count;
+        private boolean committed;
+
+        private Builder(Path target) throws IOException {
+            Path directory = target.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            this.target = target;
+            this.temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16));
+            out.write(new byte[HEADER_SIZE]);
+        }
+
+        public void add(BookResponseDTO book) throws IOException {
+            if (count > 0 && book.getId() <= ids[count - 1]) {
+                throw new IllegalStateException("Los libros del snapshot deben llegar ordenados por id");
+            }
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+                isbnHashes = Arrays.copyOf(isbnHashes, count * 2);
+            }
+            byte[] isbn = book.getIsbn().getBytes(StandardCharsets.UTF_8);
+            ids[count] = book.getId();
+            offsets[count] = position();
+            isbnHashes[count] = hash(isbn);
+            count++;
+
+            out.writeLong(book.getId());
+            out.writeInt(book.getAvailableCopies());
+            writeString(isbn);
+            writeString(book.getTitle().getBytes(StandardCharsets.UTF_8));
+            writeString(book.getAuthor().getBytes(StandardCharsets.UTF_8));
+        }
+
+        public int commit() throws IOException {
+            int idIndexOffset = position();
+            for (int i = 0; i < count; i++) {
+                out.writeLong(ids[i]);
+                out.writeInt(offsets[i]);
+            }
+
+            // Factor de carga menor a 0,5 para que las búsquedas por ISBN sondeen pocas posiciones
+            int capacity = Integer.highestOneBit(Math.max(count * 2 - 1, 1)) << 1;
+            int[] table = new int[capacity];
+            for (int i = 0; i < count; i++) {
+                int slot = isbnHashes[i] & (capacity - 1);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                table[slot] = offsets[i];
+            }
+            int isbnTableOffset = position();
+            for (int offset : table) {
+                out.writeInt(offset);
+            }
+            // Verifica que la tabla también haya entrado en el límite
+            position();
+            out.close();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putLong(System.currentTimeMillis())
+                    .putInt(count)
+                    .putInt(idIndexOffset)
+                    .putInt(isbnTableOffset)
+                    .putInt(capacity)
+                    .putInt(HEADER_SIZE)
+                    .flip();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.write(header, 0);
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                out.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private void writeString(byte[] bytes) throws IOException {
+            if (bytes.length > MAX_STRING_BYTES) {
+                throw new IllegalArgumentException("Texto demasiado largo para el snapshot: " + bytes.length + " bytes");
+            }
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+
+        // Los offsets son int y el archivo se mapea en un único buffer: el snapshot no puede superar 2 GB
+        private int position() {
+            if (out.size() == Integer.MAX_VALUE) {
+                throw new IllegalStateException("El snapshot supera el tamaño máximo de 2 GB");
+            }
+            return out.size();
+        }
+    }
+}
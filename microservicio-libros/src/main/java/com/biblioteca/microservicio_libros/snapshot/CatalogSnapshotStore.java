@@ -0,0 +1,68 @@
+package com.biblioteca.microservicio_libros.snapshot;
+
+import com.biblioteca.microservicio_libros.dto.BookResponseDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+
+// En las réplicas de solo lectura getBookById y getBookByIsbn se sirven desde el snapshot mapeado en memoria;
+// el stock se lee siempre de la base de datos.
+// El snapshot se abre al crear el bean, antes de aceptar tráfico, y se vuelve a mapear cuando el archivo cambia.
+// Los datos pueden atrasarse hasta un intervalo de escritura respecto de la base de datos.
+@Component
+public class CatalogSnapshotStore {
+    private static final Logger log = LoggerFactory.getLogger(CatalogSnapshotStore.class);
+
+    private final Path path;
+    private final boolean readOnly;
+
+    private volatile CatalogSnapshot snapshot;
+    private volatile FileTime loadedVersion;
+
+    public CatalogSnapshotStore(@Value("${libros.snapshot.path:data/catalog.snapshot}") Path path,
+                                @Value("${libros.snapshot.read-only:false}") boolean readOnly) {
+        this.path = path;
+        this.readOnly = readOnly;
+        if (readOnly) {
+            reload();
+        }
+    }
+
+    public Optional<BookResponseDTO> findById(Long id) {
+        CatalogSnapshot current = snapshot;
+        return current == null ? Optional.empty() : current.findById(id);
+    }
+
+    public Optional<BookResponseDTO> findByIsbn(String isbn) {
+        CatalogSnapshot current = snapshot;
+        return current == null ? Optional.empty() : current.findByIsbn(isbn);
+    }
+
+    @Scheduled(fixedDelayString = "${libros.snapshot.reload-interval:30s}")
+    public void reload() {
+        if (!readOnly || !Files.exists(path)) {
+            return;
+        }
+        try {
+            FileTime version = Files.getLastModifiedTime(path);
+            if (version.equals(loadedVersion)) {
+                return;
+            }
+            // El mapeo anterior se libera cuando deja de estar referenciado; los lectores en curso no se ven afectados
+            CatalogSnapshot opened = CatalogSnapshot.open(path);
+            snapshot = opened;
+            loadedVersion = version;
+            log.info("Snapshot del catálogo mapeado: {} libros generados el {}", opened.size(), opened.createdAt());
+        } catch (IOException | RuntimeException ex) {
+            log.warn("No se pudo mapear el snapshot {}: {}", path, ex.getMessage());
+        }
+    }
+}
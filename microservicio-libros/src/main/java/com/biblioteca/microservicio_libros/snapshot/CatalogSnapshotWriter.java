@@ -0,0 +1,59 @@
+package com.biblioteca.microservicio_libros.snapshot;
+
+import com.biblioteca.microservicio_libros.service.BookService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+// Corre en la instancia principal: vuelca el catálogo completo al snapshot que mapean las réplicas
+@Component
+public class CatalogSnapshotWriter {
+    private static final Logger log = LoggerFactory.getLogger(CatalogSnapshotWriter.class);
+
+    private final BookService bookService;
+    private final Path path;
+    private final boolean enabled;
+
+    public CatalogSnapshotWriter(BookService bookService,
+                                 @Value("${libros.snapshot.path:data/catalog.snapshot}") Path path,
+                                 @Value("${libros.snapshot.write-enabled:false}") boolean enabled) {
+        this.bookService = bookService;
+        this.path = path;
+        this.enabled = enabled;
+    }
+
+    @Scheduled(fixedDelayString = "${libros.snapshot.write-interval:5m}")
+    public void scheduledWrite() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int books = writeSnapshot();
+            log.info("Snapshot del catálogo escrito en {}: {} libros", path, books);
+        } catch (IOException | RuntimeException ex) {
+            log.warn("No se pudo escribir el snapshot {}: {}", path, ex.getMessage());
+        }
+    }
+
+    public int writeSnapshot() throws IOException {
+        try (CatalogSnapshot.Builder builder = CatalogSnapshot.create(path)) {
+            // exportBooks recorre los libros ordenados por id, que es lo que exige el índice del snapshot
+            bookService.exportBooks(book -> {
+                try {
+                    builder.add(book);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            return builder.commit();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+}
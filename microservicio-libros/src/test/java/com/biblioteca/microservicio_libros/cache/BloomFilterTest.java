@@ -0,0 +1,48 @@
+package com.biblioteca.microservicio_libros.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    @Test
+    void whenValueIsAdded_thenItIsAlwaysReported() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("978-" + i);
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(filter.mightContain("978-" + i)).isTrue();
+        }
+    }
+
+    @Test
+    void whenValueWasNotAdded_thenFalsePositiveRateStaysNearConfiguredRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("978-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("979-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertThat(falsePositives).isLessThan(300);
+    }
+
+    @Test
+    void whenCleared_thenNothingIsReported() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        filter.put("978-0156012195");
+
+        filter.clear();
+
+        assertThat(filter.mightContain("978-0156012195")).isFalse();
+    }
+}
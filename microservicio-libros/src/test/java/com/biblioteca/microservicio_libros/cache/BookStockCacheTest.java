@@ -0,0 +1,66 @@
+package com.biblioteca.microservicio_libros.cache;
+
+import com.biblioteca.microservicio_libros.dto.BookStockDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookStockCacheTest {
+
+    @Test
+    void whenEntryIsInvalidated_thenNextReadReloadsIt() {
+        BookStockCache cache = new BookStockCache(100, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1L, id -> load(id, loads));
+        cache.get(1L, id -> load(id, loads));
+        cache.invalidate(1L);
+        cache.get(1L, id -> load(id, loads));
+
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(cache.stats().getHitCount()).isEqualTo(1);
+        assertThat(cache.stats().getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    void whenInvalidatedInsideTransaction_thenEntryIsInvalidatedAgainAfterCompletion() {
+        BookStockCache cache = new BookStockCache(100, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidate(1L);
+            // Una lectura concurrente antes del commit vuelve a poblar la caché con el valor anterior
+            cache.get(1L, id -> load(id, loads));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        cache.get(1L, id -> load(id, loads));
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void whenMaximumSizeIsExceeded_thenEntriesAreEvicted() {
+        BookStockCache cache = new BookStockCache(10, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        for (long id = 0; id < 1000; id++) {
+            cache.get(id, key -> load(key, loads));
+        }
+
+        assertThat(cache.stats().getEvictionCount()).isPositive();
+    }
+
+    private static BookStockDTO load(Long id, AtomicInteger loads) {
+        loads.incrementAndGet();
+        return new BookStockDTO(id, "Libro " + id, 1, true);
+    }
+}
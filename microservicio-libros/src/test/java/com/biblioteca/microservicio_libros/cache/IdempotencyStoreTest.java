@@ -0,0 +1,143 @@
+package com.biblioteca.microservicio_libros.cache;
+
+import com.biblioteca.microservicio_libros.exception.IdempotencyConflictException;
+import com.biblioteca.microservicio_libros.exception.InsufficientStockException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyStoreTest {
+
+    private final IdempotencyStore store = new IdempotencyStore(1000, Duration.ofMinutes(1), Duration.ofSeconds(5));
+
+    @Test
+    void whenKeyIsMissing_thenActionRunsEveryTime() {
+        AtomicInteger runs = new AtomicInteger();
+
+        store.execute("decrease-stock", 1L, null, runs::incrementAndGet);
+        store.execute("decrease-stock", 1L, " ", runs::incrementAndGet);
+
+        assertThat(runs.get()).isEqualTo(2);
+    }
+
+    @Test
+    void whenKeyIsRepeated_thenActionRunsOnceAndIsReplayed() {
+        AtomicInteger runs = new AtomicInteger();
+
+        boolean first = store.execute("decrease-stock", 1L, "k1", runs::incrementAndGet);
+        boolean second = store.execute("decrease-stock", 1L, "k1", runs::incrementAndGet);
+
+        assertThat(first).isFalse();
+        assertThat(second).isTrue();
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    void whenKeyIsReusedForAnotherBook_thenActionRunsAgain() {
+        AtomicInteger runs = new AtomicInteger();
+
+        store.execute("decrease-stock", 1L, "k1", runs::incrementAndGet);
+        boolean replayed = store.execute("decrease-stock", 2L, "k1", runs::incrementAndGet);
+
+        assertThat(replayed).isFalse();
+        assertThat(runs.get()).isEqualTo(2);
+    }
+
+    @Test
+    void whenBusinessErrorOccurred_thenReplayRethrowsIt() {
+        AtomicInteger runs = new AtomicInteger();
+        Runnable outOfStock = () -> {
+            runs.incrementAndGet();
+            throw new InsufficientStockException(1L);
+        };
+
+        assertThatThrownBy(() -> store.execute("decrease-stock", 1L, "k1", outOfStock))
+                .isInstanceOf(InsufficientStockException.class);
+        assertThatThrownBy(() -> store.execute("decrease-stock", 1L, "k1", outOfStock))
+                .isInstanceOf(InsufficientStockException.class);
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    void whenUnexpectedErrorOccurred_thenKeyIsReleasedForRetry() {
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThatThrownBy(() -> store.execute("decrease-stock", 1L, "k1", () -> {
+            throw new IllegalStateException("base de datos caída");
+        })).isInstanceOf(IllegalStateException.class);
+        boolean replayed = store.execute("decrease-stock", 1L, "k1", runs::incrementAndGet);
+
+        assertThat(replayed).isFalse();
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    void whenOriginalIsStillRunning_thenDuplicateTimesOutWithConflict() throws Exception {
+        IdempotencyStore shortWait = new IdempotencyStore(1000, Duration.ofMinutes(1), Duration.ofMillis(50));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> shortWait.execute("decrease-stock", 1L, "k1", () -> {
+                started.countDown();
+                awaitQuietly(release);
+            }));
+            started.await();
+
+            assertThatThrownBy(() -> shortWait.execute("decrease-stock", 1L, "k1", () -> { }))
+                    .isInstanceOf(IdempotencyConflictException.class);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void whenConcurrentDuplicatesArrive_thenActionRunsOnce() throws Exception {
+        int threads = 64;
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return store.execute("decrease-stock", 1L, "k1", runs::incrementAndGet);
+                }));
+            }
+            start.countDown();
+
+            int replays = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(10, TimeUnit.SECONDS)) {
+                    replays++;
+                }
+            }
+
+            assertThat(runs.get()).isEqualTo(1);
+            assertThat(replays).isEqualTo(threads - 1);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,24 +1,53 @@
 package com.biblioteca.microservicio_libros.controller;
 
+import com.biblioteca.microservicio_libros.cache.IdempotencyStore;
+import com.biblioteca.microservicio_libros.dto.AuthorFacetDTO;
+import com.biblioteca.microservicio_libros.dto.BookImportErrorDTO;
+import com.biblioteca.microservicio_libros.dto.BookImportResultDTO;
+import com.biblioteca.microservicio_libros.dto.BookPageDTO;
 import com.biblioteca.microservicio_libros.dto.BookRequestDTO;
 import com.biblioteca.microservicio_libros.dto.BookResponseDTO;
+import com.biblioteca.microservicio_libros.dto.BookSearchResultDTO;
+import com.biblioteca.microservicio_libros.dto.BookStockBatchDTO;
 import com.biblioteca.microservicio_libros.dto.BookStockDTO;
+import com.biblioteca.microservicio_libros.dto.BookSuggestionDTO;
+import com.biblioteca.microservicio_libros.dto.CacheStatsDTO;
+import com.biblioteca.microservicio_libros.dto.ReservationRequestDTO;
+import com.biblioteca.microservicio_libros.dto.ReservationResponseDTO;
+import com.biblioteca.microservicio_libros.events.StockEventPublisher;
+import com.biblioteca.microservicio_libros.exception.BatchTooLargeException;
 import com.biblioteca.microservicio_libros.exception.BookNotFoundException;
 import com.biblioteca.microservicio_libros.exception.DuplicateIsbnException;
+import com.biblioteca.microservicio_libros.exception.InsufficientStockException;
+import com.biblioteca.microservicio_libros.exception.InvalidCursorException;
+import com.biblioteca.microservicio_libros.exception.ReservationNotActiveException;
+import com.biblioteca.microservicio_libros.model.StockReservation;
+import com.biblioteca.microservicio_libros.service.BookImportService;
 import com.biblioteca.microservicio_libros.service.BookService;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.biblioteca.microservicio_libros.service.ReservationService;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -27,6 +56,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(BookController.class)
+@Import(IdempotencyStore.class)
 class BookControllerTest {
 
     @Autowired
@@ -38,6 +68,15 @@ class BookControllerTest {
     @MockitoBean
     private BookService bookService;
 
+    @MockitoBean
+    private BookImportService bookImportService;
+
+    @MockitoBean
+    private StockEventPublisher stockEventPublisher;
+
+    @MockitoBean
+    private ReservationService reservationService;
+
     private BookRequestDTO requestDTO;
     private BookResponseDTO responseDTO;
 
@@ -99,19 +138,131 @@ class BookControllerTest {
     }
 
     @Test
-    void whenGetAllBooks_thenReturnBookList() throws Exception {
+    void whenImportBooksCsv_thenReturnImportSummary() throws Exception {
+        BookImportResultDTO summary = new BookImportResultDTO(1, 1,
+                List.of(new BookImportErrorDTO(3, "978-0156012195", "Ya existe un libro con el ISBN: 978-0156012195")));
+        when(bookImportService.importBooks(any(), eq(BookImportService.Format.CSV))).thenReturn(summary);
+
+        mockMvc.perform(post("/api/libros/import")
+                        .contentType("text/csv")
+                        .content("title,author,isbn,availableCopies\n1984,George Orwell,978-0451524935,3\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(3));
+    }
+
+    @Test
+    void whenImportBooksNdjson_thenUseNdjsonFormat() throws Exception {
+        when(bookImportService.importBooks(any(), eq(BookImportService.Format.NDJSON)))
+                .thenReturn(new BookImportResultDTO(1, 0, List.of()));
+
+        mockMvc.perform(post("/api/libros/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(objectMapper.writeValueAsString(requestDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1));
+    }
+
+    @Test
+    void whenGetAllBooks_thenReturnBookPage() throws Exception {
         BookResponseDTO book2 = new BookResponseDTO(
                 2L, "1984", "George Orwell", "978-0451524935", 3
         );
-        List<BookResponseDTO> books = Arrays.asList(responseDTO, book2);
+        BookPageDTO page = new BookPageDTO(Arrays.asList(responseDTO, book2), "Mg");
 
-        when(bookService.getAllBooks()).thenReturn(books);
+        when(bookService.getAllBooks(null, null, null, false)).thenReturn(page);
 
         mockMvc.perform(get("/api/libros"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(2)))
-                .andExpect(jsonPath("$[0].title").value("El Principito"))
-                .andExpect(jsonPath("$[1].title").value("1984"));
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].title").value("El Principito"))
+                .andExpect(jsonPath("$.items[1].title").value("1984"))
+                .andExpect(jsonPath("$.nextCursor").value("Mg"));
+    }
+
+    @Test
+    void whenGetAllBooks_withCursorAndFilters_thenPassThemToService() throws Exception {
+        when(bookService.getAllBooks("Mg", 10, "George Orwell", true))
+                .thenReturn(new BookPageDTO(List.of(), null));
+
+        mockMvc.perform(get("/api/libros")
+                        .param("after", "Mg")
+                        .param("limit", "10")
+                        .param("author", "George Orwell")
+                        .param("available", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(0)));
+    }
+
+    @Test
+    void whenGetAllBooks_withInvalidCursor_thenReturnBadRequest() throws Exception {
+        when(bookService.getAllBooks("xx", null, null, false))
+                .thenThrow(new InvalidCursorException("xx"));
+
+        mockMvc.perform(get("/api/libros").param("after", "xx"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenSearchBooks_thenReturnRankedResults() throws Exception {
+        BookSearchResultDTO hit = new BookSearchResultDTO(1L, "El Principito", "Antoine de Saint-Exupéry", 1.5);
+        when(bookService.searchBooks("principito", null)).thenReturn(List.of(hit));
+
+        mockMvc.perform(get("/api/libros/search").param("q", "principito"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(1L))
+                .andExpect(jsonPath("$[0].title").value("El Principito"));
+    }
+
+    @Test
+    void whenSuggestBooks_thenReturnSuggestions() throws Exception {
+        BookSuggestionDTO suggestion = new BookSuggestionDTO("El Principito", "title", 5);
+        when(bookService.suggestBooks("el p", 5)).thenReturn(List.of(suggestion));
+
+        mockMvc.perform(get("/api/libros/suggest").param("prefix", "el p").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].text").value("El Principito"))
+                .andExpect(jsonPath("$[0].availableCopies").value(5));
+    }
+
+    @Test
+    void whenGetAuthorFacets_thenReturnCounts() throws Exception {
+        when(bookService.getAuthorFacets(null))
+                .thenReturn(List.of(new AuthorFacetDTO("Antoine de Saint-Exupéry", 2, 1, 5)));
+
+        mockMvc.perform(get("/api/libros/facets/authors"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].totalTitles").value(2))
+                .andExpect(jsonPath("$[0].availableTitles").value(1))
+                .andExpect(jsonPath("$[0].availableCopies").value(5));
+    }
+
+    @Test
+    void whenExportBooks_thenReturnNdjson() throws Exception {
+        BookResponseDTO book2 = new BookResponseDTO(
+                2L, "1984", "George Orwell", "978-0451524935", 3
+        );
+        doAnswer(invocation -> {
+            Consumer<BookResponseDTO> consumer = invocation.getArgument(0);
+            consumer.accept(responseDTO);
+            consumer.accept(book2);
+            return null;
+        }).when(bookService).exportBooks(any());
+
+        MvcResult result = mockMvc.perform(get("/api/libros/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String expected = objectMapper.writeValueAsString(responseDTO) + "\n"
+                + objectMapper.writeValueAsString(book2) + "\n";
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().bytes(expected.getBytes(StandardCharsets.UTF_8)));
     }
 
     @Test
@@ -134,6 +285,15 @@ class BookControllerTest {
                 .andExpect(jsonPath("$.message").value("No se encontró el libro con id: 99"));
     }
 
+    @Test
+    void whenGetBookByIsbn_thenReturnBook() throws Exception {
+        when(bookService.getBookByIsbn("978-0156012195")).thenReturn(responseDTO);
+
+        mockMvc.perform(get("/api/libros/isbn/978-0156012195"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1L));
+    }
+
     @Test
     void whenGetBookStock_thenReturnStock() throws Exception {
         BookStockDTO stockDTO = new BookStockDTO(1L, "El Principito", 5, true);
@@ -145,6 +305,88 @@ class BookControllerTest {
                 .andExpect(jsonPath("$.available").value(true));
     }
 
+    @Test
+    void whenGetBookStockAcceptingCbor_thenReturnCborStock() throws Exception {
+        BookStockDTO stockDTO = new BookStockDTO(1L, "El Principito", 5, true);
+        when(bookService.getBookStock(1L)).thenReturn(stockDTO);
+
+        byte[] body = mockMvc.perform(get("/api/libros/1/stock").accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertThat(new CBORMapper().readValue(body, BookStockDTO.class)).isEqualTo(stockDTO);
+    }
+
+    @Test
+    void whenStreamStockEvents_withLastEventId_thenResumeFromThatVersion() throws Exception {
+        when(stockEventPublisher.subscribe(7L)).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/libros/stock/events")
+                        .header("Last-Event-ID", "7")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+
+        verify(stockEventPublisher, times(1)).subscribe(7L);
+    }
+
+    @Test
+    void whenStreamStockEvents_withSinceParam_thenResumeFromThatVersion() throws Exception {
+        when(stockEventPublisher.subscribe(3L)).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/libros/stock/events").param("since", "3"))
+                .andExpect(request().asyncStarted());
+
+        verify(stockEventPublisher, times(1)).subscribe(3L);
+    }
+
+    @Test
+    void whenGetStockCacheStats_thenReturnCounters() throws Exception {
+        when(bookService.getStockCacheStats()).thenReturn(new CacheStatsDTO(10, 90, 10, 2, 0.9));
+
+        mockMvc.perform(get("/api/libros/stock/cache-stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hitCount").value(90))
+                .andExpect(jsonPath("$.missCount").value(10))
+                .andExpect(jsonPath("$.evictionCount").value(2));
+    }
+
+    @Test
+    void whenGetBooksStock_thenReturnStockMap() throws Exception {
+        BookStockDTO stockDTO = new BookStockDTO(1L, "El Principito", 5, true);
+        BookStockBatchDTO batchDTO = new BookStockBatchDTO(Map.of(1L, stockDTO), List.of(99L));
+        when(bookService.getBooksStock(List.of(1L, 99L))).thenReturn(batchDTO);
+
+        mockMvc.perform(get("/api/libros/stock").param("ids", "1", "99"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stocks.1.availableCopies").value(5))
+                .andExpect(jsonPath("$.notFound[0]").value(99));
+    }
+
+    @Test
+    void whenGetBooksStockByBody_thenReturnStockMap() throws Exception {
+        BookStockDTO stockDTO = new BookStockDTO(1L, "El Principito", 5, true);
+        BookStockBatchDTO batchDTO = new BookStockBatchDTO(Map.of(1L, stockDTO), List.of());
+        when(bookService.getBooksStock(List.of(1L))).thenReturn(batchDTO);
+
+        mockMvc.perform(post("/api/libros/stock")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(1L))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stocks.1.available").value(true))
+                .andExpect(jsonPath("$.notFound", hasSize(0)));
+    }
+
+    @Test
+    void whenGetBooksStockWithTooManyIds_thenReturnBadRequest() throws Exception {
+        when(bookService.getBooksStock(any())).thenThrow(new BatchTooLargeException(5001, 5000));
+
+        mockMvc.perform(post("/api/libros/stock")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1]"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void whenUpdateBook_thenReturnUpdatedBook() throws Exception {
         when(bookService.updateBook(eq(1L), any(BookRequestDTO.class))).thenReturn(responseDTO);
@@ -186,4 +428,90 @@ class BookControllerTest {
 
         verify(bookService, times(1)).increaseStock(1L);
     }
+
+    @Test
+    void whenDecreaseStockIsRetriedWithSameKey_thenStockIsDecreasedOnce() throws Exception {
+        doNothing().when(bookService).decreaseStock(1L);
+
+        mockMvc.perform(patch("/api/libros/1/decrease-stock").header("Idempotency-Key", "loan-42"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+        mockMvc.perform(patch("/api/libros/1/decrease-stock").header("Idempotency-Key", "loan-42"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"));
+
+        verify(bookService, times(1)).decreaseStock(1L);
+    }
+
+    @Test
+    void whenDecreaseStockFailedWithoutStock_thenRetryReplaysTheError() throws Exception {
+        doThrow(new InsufficientStockException(1L)).when(bookService).decreaseStock(1L);
+
+        mockMvc.perform(patch("/api/libros/1/decrease-stock").header("Idempotency-Key", "loan-43"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(patch("/api/libros/1/decrease-stock").header("Idempotency-Key", "loan-43"))
+                .andExpect(status().isBadRequest());
+
+        verify(bookService, times(1)).decreaseStock(1L);
+    }
+
+    @Test
+    void whenSameKeyIsUsedForIncrease_thenItDoesNotReplayTheDecrease() throws Exception {
+        mockMvc.perform(patch("/api/libros/1/decrease-stock").header("Idempotency-Key", "loan-44"))
+                .andExpect(status().isOk());
+        mockMvc.perform(patch("/api/libros/1/increase-stock").header("Idempotency-Key", "loan-44"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+
+        verify(bookService, times(1)).decreaseStock(1L);
+        verify(bookService, times(1)).increaseStock(1L);
+    }
+
+    @Test
+    void whenReserve_thenReturnCreatedHold() throws Exception {
+        UUID holdId = UUID.randomUUID();
+        ReservationResponseDTO hold = new ReservationResponseDTO(
+                holdId, 1L, StockReservation.Status.HELD, Instant.now().plusSeconds(60));
+        when(reservationService.reserve(1L, 60)).thenReturn(hold);
+
+        mockMvc.perform(post("/api/libros/1/reservations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ReservationRequestDTO(60))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(holdId.toString()))
+                .andExpect(jsonPath("$.status").value("HELD"));
+    }
+
+    @Test
+    void whenReserve_withoutBody_thenUseDefaultTtl() throws Exception {
+        when(reservationService.reserve(1L, null)).thenReturn(new ReservationResponseDTO(
+                UUID.randomUUID(), 1L, StockReservation.Status.HELD, Instant.now().plusSeconds(300)));
+
+        mockMvc.perform(post("/api/libros/1/reservations"))
+                .andExpect(status().isCreated());
+
+        verify(reservationService).reserve(1L, null);
+    }
+
+    @Test
+    void whenConfirmExpiredReservation_thenReturnConflict() throws Exception {
+        UUID holdId = UUID.randomUUID();
+        when(reservationService.confirm(holdId))
+                .thenThrow(new ReservationNotActiveException(holdId, StockReservation.Status.EXPIRED));
+
+        mockMvc.perform(post("/api/libros/reservations/" + holdId + "/confirm"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").exists());
+    }
+
+    @Test
+    void whenCancelReservation_thenReturnCancelledHold() throws Exception {
+        UUID holdId = UUID.randomUUID();
+        when(reservationService.cancel(holdId)).thenReturn(new ReservationResponseDTO(
+                holdId, 1L, StockReservation.Status.CANCELLED, Instant.now()));
+
+        mockMvc.perform(post("/api/libros/reservations/" + holdId + "/cancel"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("CANCELLED"));
+    }
 }
@@ -0,0 +1,131 @@
+package com.biblioteca.microservicio_libros.events;
+
+import com.biblioteca.microservicio_libros.dto.StockEventDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockEventPublisherTest {
+
+    private StockEventPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        publisher = new StockEventPublisher(3, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.shutdown();
+    }
+
+    @Test
+    void whenPublish_thenVersionsAreMonotonic() throws InterruptedException {
+        publisher.publish(StockEventDTO.Type.DECREASED, 1L, () -> 4);
+        publisher.publish(StockEventDTO.Type.INCREASED, 1L, () -> 5);
+        awaitVersion(2);
+
+        List<StockEventDTO> events = publisher.eventsSince(0);
+
+        assertThat(events).extracting(StockEventDTO::getVersion).containsExactly(1L, 2L);
+        assertThat(events.get(0).getAvailableCopies()).isEqualTo(4);
+        assertThat(events.get(1).isAvailable()).isTrue();
+        assertThat(publisher.currentVersion()).isEqualTo(2);
+    }
+
+    @Test
+    void whenEventsSince_thenOnlyNewerEventsAreReturned() throws InterruptedException {
+        publisher.publish(StockEventDTO.Type.DECREASED, 1L, () -> 4);
+        publisher.publish(StockEventDTO.Type.DECREASED, 1L, () -> 3);
+        publisher.publish(StockEventDTO.Type.DECREASED, 2L, () -> 0);
+        awaitVersion(3);
+
+        assertThat(publisher.eventsSince(1)).extracting(StockEventDTO::getBookId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void whenBufferIsFull_thenOldestEventIsDropped() throws InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            int copies = i;
+            publisher.publish(StockEventDTO.Type.UPDATED, 1L, () -> copies);
+        }
+        awaitVersion(5);
+
+        assertThat(publisher.eventsSince(0)).extracting(StockEventDTO::getVersion).containsExactly(3L, 4L, 5L);
+    }
+
+    @Test
+    void whenPublishInsideTransaction_thenEventWaitsForCommit() throws InterruptedException {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            publisher.publish(StockEventDTO.Type.DECREASED, 1L, () -> 4);
+            assertThat(publisher.currentVersion()).isZero();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        awaitVersion(1);
+
+        assertThat(publisher.currentVersion()).isEqualTo(1);
+    }
+
+    @Test
+    void whenStockIsReadAfterCommit_thenEventCarriesValueAtDispatch() throws InterruptedException {
+        int[] stock = {4};
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            publisher.publish(StockEventDTO.Type.DECREASED, 1L, () -> stock[0]);
+            // Otro préstamo confirma antes de que se despache el evento
+            stock[0] = 3;
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        awaitVersion(1);
+
+        assertThat(publisher.eventsSince(0)).singleElement()
+                .extracting(StockEventDTO::getAvailableCopies).isEqualTo(3);
+    }
+
+    @Test
+    void whenStockReadFails_thenSkipEventAndKeepDispatching() throws InterruptedException {
+        publisher.publish(StockEventDTO.Type.DECREASED, 1L, () -> {
+            throw new IllegalStateException("base de datos caída");
+        });
+        publisher.publish(StockEventDTO.Type.DECREASED, 2L, () -> 7);
+        awaitVersion(1);
+
+        assertThat(publisher.eventsSince(0)).singleElement()
+                .extracting(StockEventDTO::getBookId).isEqualTo(2L);
+    }
+
+    @Test
+    void whenTransactionRollsBack_thenNoEventIsPublished() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            publisher.publish(StockEventDTO.Type.DECREASED, 1L, () -> 4);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(publisher.eventsSince(0)).isEmpty();
+    }
+
+    private void awaitVersion(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (publisher.currentVersion() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
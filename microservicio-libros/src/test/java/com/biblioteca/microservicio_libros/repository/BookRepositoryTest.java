@@ -1,16 +1,24 @@
 package com.biblioteca.microservicio_libros.repository;
 
+import com.biblioteca.microservicio_libros.dto.BookResponseDTO;
+import com.biblioteca.microservicio_libros.dto.BookStockDTO;
 import com.biblioteca.microservicio_libros.model.Book;
+import com.biblioteca.microservicio_libros.model.BookStockShard;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
-import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
@@ -18,6 +26,9 @@ class BookRepositoryTest {
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private BookStockShardRepository shardRepository;
+
     private Book testBook;
 
     @BeforeEach
@@ -95,4 +106,182 @@ class BookRepositoryTest {
 
         assertThat(bookRepository.findAll()).hasSize(2);
     }
+
+    @Test
+    void whenDecrementAvailableCopies_thenStockIsDecreased() {
+        Book savedBook = bookRepository.save(testBook);
+
+        int updated = bookRepository.decrementAvailableCopies(savedBook.getId());
+
+        assertThat(updated).isEqualTo(1);
+        assertThat(bookRepository.findById(savedBook.getId()).get().getAvailableCopies()).isEqualTo(4);
+    }
+
+    @Test
+    void whenDecrementAvailableCopies_withZeroStock_thenNothingIsUpdated() {
+        testBook.setAvailableCopies(0);
+        Book savedBook = bookRepository.save(testBook);
+
+        int updated = bookRepository.decrementAvailableCopies(savedBook.getId());
+
+        assertThat(updated).isZero();
+        assertThat(bookRepository.findById(savedBook.getId()).get().getAvailableCopies()).isZero();
+    }
+
+    @Test
+    void whenIncrementAvailableCopies_thenStockIsIncreased() {
+        Book savedBook = bookRepository.save(testBook);
+
+        int updated = bookRepository.incrementAvailableCopies(savedBook.getId());
+
+        assertThat(updated).isEqualTo(1);
+        assertThat(bookRepository.findById(savedBook.getId()).get().getAvailableCopies()).isEqualTo(6);
+    }
+
+    @Test
+    void whenFindByIdGreaterThan_thenReturnNextKeysetPage() {
+        Book book1 = new Book();
+        book1.setTitle("1984");
+        book1.setAuthor("George Orwell");
+        book1.setIsbn("978-0451524935");
+        book1.setAvailableCopies(0);
+
+        Book first = bookRepository.save(testBook);
+        Book second = bookRepository.save(book1);
+
+        List<BookResponseDTO> page = bookRepository.findByIdGreaterThanOrderByIdAsc(first.getId(), Limit.of(10));
+        List<BookResponseDTO> available = bookRepository.findByAvailableCopiesGreaterThanAndIdGreaterThanOrderByIdAsc(0, 0L, Limit.of(10));
+        List<BookResponseDTO> byAuthor = bookRepository.findByAuthorAndIdGreaterThanOrderByIdAsc("George Orwell", 0L, Limit.of(10));
+
+        assertThat(page).extracting(BookResponseDTO::getId).containsExactly(second.getId());
+        assertThat(available).extracting(BookResponseDTO::getId).containsExactly(first.getId());
+        assertThat(byAuthor).extracting(BookResponseDTO::getId).containsExactly(second.getId());
+        assertThat(byAuthor.get(0).getIsbn()).isEqualTo("978-0451524935");
+    }
+
+    @Test
+    void whenFindStockById_thenProjectStockDto() {
+        Book savedBook = bookRepository.save(testBook);
+        Book book1 = new Book();
+        book1.setTitle("1984");
+        book1.setAuthor("George Orwell");
+        book1.setIsbn("978-0451524935");
+        book1.setAvailableCopies(0);
+        Book soldOut = bookRepository.save(book1);
+
+        Optional<BookStockDTO> stock = bookRepository.findStockById(savedBook.getId());
+        List<BookStockDTO> stocks = bookRepository.findStockByIdIn(List.of(savedBook.getId(), soldOut.getId(), 999L));
+
+        assertThat(stock).isPresent();
+        assertThat(stock.get().getAvailableCopies()).isEqualTo(savedBook.getAvailableCopies());
+        assertThat(stock.get().isAvailable()).isTrue();
+        assertThat(stocks).extracting(BookStockDTO::getId).containsExactlyInAnyOrder(savedBook.getId(), soldOut.getId());
+        assertThat(stocks).filteredOn(s -> s.getId().equals(soldOut.getId()))
+                .singleElement()
+                .satisfies(s -> assertThat(s.isAvailable()).isFalse());
+        assertThat(bookRepository.findStockById(999L)).isEmpty();
+    }
+
+    @Test
+    void whenStreamAllResponses_thenReturnDtosOrderedById() {
+        Book first = bookRepository.save(testBook);
+
+        try (Stream<BookResponseDTO> books = bookRepository.streamAllResponses()) {
+            assertThat(books.map(BookResponseDTO::getId)).containsExactly(first.getId());
+        }
+        assertThat(bookRepository.findResponseById(first.getId()))
+                .get()
+                .extracting(BookResponseDTO::getTitle)
+                .isEqualTo(first.getTitle());
+    }
+
+    @Test
+    void whenStreamAll_thenReturnBooksOrderedById() {
+        Book book1 = new Book();
+        book1.setTitle("1984");
+        book1.setAuthor("George Orwell");
+        book1.setIsbn("978-0451524935");
+        book1.setAvailableCopies(3);
+
+        Book first = bookRepository.save(testBook);
+        Book second = bookRepository.save(book1);
+
+        try (Stream<Book> books = bookRepository.streamAllByOrderByIdAsc()) {
+            assertThat(books.map(Book::getId)).containsExactly(first.getId(), second.getId());
+        }
+    }
+
+    @Test
+    void whenStreamAllIsbns_thenReturnEveryIsbn() {
+        bookRepository.save(testBook);
+
+        try (Stream<String> isbns = bookRepository.streamAllIsbns()) {
+            assertThat(isbns).containsExactly("978-0156012195");
+        }
+    }
+
+    @Test
+    void whenStreamAuthorCopies_thenAddShardCopiesToRow() {
+        Book sharded = bookRepository.save(testBook);
+        sharded.setAvailableCopies(0);
+        bookRepository.saveAndFlush(sharded);
+        shardRepository.save(new BookStockShard(null, sharded.getId(), 0, 2));
+        shardRepository.saveAndFlush(new BookStockShard(null, sharded.getId(), 1, 3));
+
+        try (Stream<BookRepository.AuthorCopies> rows = bookRepository.streamAuthorCopies()) {
+            assertThat(rows.toList())
+                    .singleElement()
+                    .satisfies(row -> {
+                        assertThat(row.getAuthor()).isEqualTo("Antoine de Saint-Exupéry");
+                        assertThat(row.getCopies()).isEqualTo(5L);
+                    });
+        }
+        try (Stream<BookRepository.TitleAuthorCopies> rows = bookRepository.streamTitleAuthorCopies()) {
+            assertThat(rows.toList())
+                    .singleElement()
+                    .satisfies(row -> {
+                        assertThat(row.getTitle()).isEqualTo(sharded.getTitle());
+                        assertThat(row.getCopies()).isEqualTo(5L);
+                    });
+        }
+    }
+
+    @Test
+    void whenReadShardedBook_thenProjectionsAddShardCopiesToRow() {
+        Book sharded = bookRepository.save(testBook);
+        sharded.setAvailableCopies(0);
+        bookRepository.saveAndFlush(sharded);
+        shardRepository.save(new BookStockShard(null, sharded.getId(), 0, 2));
+        shardRepository.saveAndFlush(new BookStockShard(null, sharded.getId(), 1, 3));
+
+        assertThat(bookRepository.findStockById(sharded.getId())).get()
+                .satisfies(stock -> {
+                    assertThat(stock.getAvailableCopies()).isEqualTo(5);
+                    assertThat(stock.isAvailable()).isTrue();
+                });
+        assertThat(bookRepository.findStockByIdIn(List.of(sharded.getId())))
+                .singleElement()
+                .satisfies(stock -> assertThat(stock.getAvailableCopies()).isEqualTo(5));
+        assertThat(bookRepository.findResponseById(sharded.getId())).get()
+                .extracting(BookResponseDTO::getAvailableCopies).isEqualTo(5);
+        assertThat(bookRepository.findResponseByIsbn(sharded.getIsbn())).get()
+                .extracting(BookResponseDTO::getAvailableCopies).isEqualTo(5);
+        assertThat(bookRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(10)))
+                .extracting(BookResponseDTO::getAvailableCopies).containsExactly(5);
+        assertThat(bookRepository.findTotalCopiesById(sharded.getId())).contains(5);
+    }
+
+    @Test
+    void whenSaveBook_withDuplicateIsbn_thenUniqueConstraintIsViolated() {
+        bookRepository.saveAndFlush(testBook);
+
+        Book duplicate = new Book();
+        duplicate.setTitle("Otro título");
+        duplicate.setAuthor("Otro autor");
+        duplicate.setIsbn("978-0156012195");
+        duplicate.setAvailableCopies(1);
+
+        assertThatThrownBy(() -> bookRepository.saveAndFlush(duplicate))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
 }
@@ -0,0 +1,121 @@
+package com.biblioteca.microservicio_libros.search;
+
+import com.biblioteca.microservicio_libros.dto.AuthorFacetDTO;
+import com.biblioteca.microservicio_libros.repository.BookRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuthorFacetIndexTest {
+    @Mock
+    private BookRepository bookRepository;
+
+    @InjectMocks
+    private AuthorFacetIndex authorFacetIndex;
+
+    @Test
+    void whenRebuild_thenCountTitlesAndCopiesPerAuthor() {
+        when(bookRepository.streamAuthorCopies()).thenReturn(Stream.of(
+                row(1L, "Jorge Luis Borges", 2),
+                row(2L, "Jorge Luis Borges", 0),
+                row(3L, "Julio Cortázar", 4)
+        ));
+
+        authorFacetIndex.rebuild();
+
+        assertThat(authorFacetIndex.getAuthor("Jorge Luis Borges"))
+                .isEqualTo(new AuthorFacetDTO("Jorge Luis Borges", 2, 1, 2));
+        assertThat(authorFacetIndex.topAuthors(10))
+                .extracting(AuthorFacetDTO::getAuthor)
+                .containsExactly("Jorge Luis Borges", "Julio Cortázar");
+    }
+
+    @Test
+    void whenAuthorChanges_thenMoveBookBetweenFacets() {
+        authorFacetIndex.index(1L, "Jorge Luis Borges", 3);
+
+        authorFacetIndex.index(1L, "J. L. Borges", 3);
+
+        assertThat(authorFacetIndex.getAuthor("Jorge Luis Borges").getTotalTitles()).isZero();
+        assertThat(authorFacetIndex.getAuthor("J. L. Borges"))
+                .isEqualTo(new AuthorFacetDTO("J. L. Borges", 1, 1, 3));
+    }
+
+    @Test
+    void whenLastCopyIsLent_thenTitleIsNoLongerAvailable() {
+        authorFacetIndex.index(1L, "Julio Cortázar", 1);
+
+        authorFacetIndex.adjustCopies(1L, -1);
+
+        assertThat(authorFacetIndex.getAuthor("Julio Cortázar"))
+                .isEqualTo(new AuthorFacetDTO("Julio Cortázar", 1, 0, 0));
+
+        authorFacetIndex.adjustCopies(1L, 1);
+
+        assertThat(authorFacetIndex.getAuthor("Julio Cortázar").getAvailableTitles()).isEqualTo(1);
+    }
+
+    @Test
+    void whenBookIsRemoved_thenDropEmptyAuthor() {
+        authorFacetIndex.index(1L, "Julio Cortázar", 1);
+
+        authorFacetIndex.remove(1L);
+
+        assertThat(authorFacetIndex.topAuthors(10)).isEmpty();
+    }
+
+    @Test
+    void whenTopAuthors_thenRankByTitlesWithLimit() {
+        authorFacetIndex.index(1L, "Borges", 1);
+        authorFacetIndex.index(2L, "Borges", 1);
+        authorFacetIndex.index(3L, "Cortázar", 1);
+        authorFacetIndex.index(4L, "Arlt", 1);
+
+        assertThat(authorFacetIndex.topAuthors(2))
+                .extracting(AuthorFacetDTO::getAuthor)
+                .containsExactly("Borges", "Arlt");
+    }
+
+    @Test
+    void whenBooksChangeDuringRebuild_thenKeepTheirCurrentCounts() {
+        authorFacetIndex.index(1L, "Borges", 2);
+        // Mientras se lee la base, llega un préstamo del libro 1 y se crea el libro 2
+        when(bookRepository.streamAuthorCopies()).thenReturn(Stream.of(row(1L, "Borges", 2))
+                .peek(row -> {
+                    authorFacetIndex.adjustCopies(1L, -1);
+                    authorFacetIndex.index(2L, "Borges", 1);
+                }));
+
+        authorFacetIndex.rebuild();
+
+        assertThat(authorFacetIndex.getAuthor("Borges"))
+                .isEqualTo(new AuthorFacetDTO("Borges", 2, 2, 2));
+    }
+
+    private static BookRepository.AuthorCopies row(Long id, String author, long copies) {
+        return new BookRepository.AuthorCopies() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getAuthor() {
+                return author;
+            }
+
+            @Override
+            public Long getCopies() {
+                return copies;
+            }
+        };
+    }
+}
@@ -0,0 +1,144 @@
+package com.biblioteca.microservicio_libros.search;
+
+import com.biblioteca.microservicio_libros.dto.BookSearchResultDTO;
+import com.biblioteca.microservicio_libros.model.Book;
+import com.biblioteca.microservicio_libros.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookSearchIndexTest {
+    @Mock
+    private BookRepository bookRepository;
+
+    private BookSearchIndex bookSearchIndex;
+
+    private Book principito;
+    private Book orwell;
+
+    @BeforeEach
+    void setUp() {
+        bookSearchIndex = new BookSearchIndex(bookRepository, 2);
+        principito = new Book(1L, "El Principito", "Antoine de Saint-Exupéry", "978-0156012195", 5, null);
+        orwell = new Book(2L, "1984", "George Orwell", "978-0451524935", 3, null);
+    }
+
+    @Test
+    void whenRebuild_thenBooksFromRepositoryAreSearchable() {
+        when(bookRepository.streamTitleAuthors()).thenReturn(Stream.of(row(principito), row(orwell)));
+
+        bookSearchIndex.rebuild();
+
+        assertThat(bookSearchIndex.search("orwell", 10)).extracting(BookSearchResultDTO::getId).containsExactly(2L);
+        verify(bookRepository, never()).streamAllByOrderByIdAsc();
+    }
+
+    @Test
+    void whenBooksChangeDuringRebuild_thenChangesSurviveTheSwap() {
+        Book aleph = new Book(3L, "El Aleph", "Jorge Luis Borges", "978-0000000002", 2, null);
+        bookSearchIndex.index(orwell);
+        // Las escrituras durante el recorrido no esperan a la reconstrucción y se repiten sobre el índice nuevo
+        when(bookRepository.streamTitleAuthors()).thenReturn(Stream.of(row(principito), row(orwell))
+                .peek(row -> {
+                    if (row.getId() == 2L) {
+                        bookSearchIndex.index(aleph);
+                        bookSearchIndex.remove(1L);
+                    }
+                }));
+
+        bookSearchIndex.rebuild();
+
+        assertThat(bookSearchIndex.search("aleph", 10)).extracting(BookSearchResultDTO::getId).containsExactly(3L);
+        assertThat(bookSearchIndex.search("principito", 10)).isEmpty();
+        assertThat(bookSearchIndex.search("orwell", 10)).extracting(BookSearchResultDTO::getId).containsExactly(2L);
+    }
+
+    @Test
+    void whenQueryMixesRareAndCommonTerms_thenCommonTermOnlyScoresRareCandidates() {
+        Book aleph = new Book(3L, "El Aleph", "Jorge Luis Borges", "978-0000000002", 2, null);
+        bookSearchIndex.index(principito);
+        bookSearchIndex.index(aleph);
+        bookSearchIndex.index(new Book(4L, "El túnel", "Ernesto Sabato", "978-0000000003", 1, null));
+
+        List<BookSearchResultDTO> results = bookSearchIndex.search("el aleph", 10);
+
+        assertThat(results).extracting(BookSearchResultDTO::getId).containsExactly(3L);
+        assertThat(results.get(0).getScore()).isGreaterThan(bookSearchIndex.search("aleph", 10).get(0).getScore());
+        assertThat(bookSearchIndex.search("el", 10)).extracting(BookSearchResultDTO::getId).containsExactly(1L, 3L, 4L);
+    }
+
+    @Test
+    void whenSearch_thenIgnoreAccentsAndCase() {
+        bookSearchIndex.index(principito);
+
+        List<BookSearchResultDTO> results = bookSearchIndex.search("SAINT EXUPERY", 10);
+
+        assertThat(results).extracting(BookSearchResultDTO::getId).containsExactly(1L);
+        assertThat(results.get(0).getTitle()).isEqualTo("El Principito");
+    }
+
+    @Test
+    void whenSearch_thenTitleMatchesRankAboveAuthorMatches() {
+        Book biography = new Book(3L, "Orwell: una biografía", "Bernard Crick", "978-0000000001", 1, null);
+        bookSearchIndex.index(orwell);
+        bookSearchIndex.index(biography);
+
+        List<BookSearchResultDTO> results = bookSearchIndex.search("orwell", 10);
+
+        assertThat(results).extracting(BookSearchResultDTO::getId).containsExactly(3L, 2L);
+    }
+
+    @Test
+    void whenSearch_thenReturnAtMostLimitResults() {
+        bookSearchIndex.index(principito);
+        bookSearchIndex.index(new Book(3L, "El Aleph", "Jorge Luis Borges", "978-0000000002", 2, null));
+
+        assertThat(bookSearchIndex.search("el", 1)).hasSize(1);
+    }
+
+    @Test
+    void whenBookIsUpdated_thenOldTermsAreRemoved() {
+        bookSearchIndex.index(principito);
+        bookSearchIndex.index(new Book(1L, "Le Petit Prince", "Antoine de Saint-Exupéry", "978-0156012195", 5, null));
+
+        assertThat(bookSearchIndex.search("principito", 10)).isEmpty();
+        assertThat(bookSearchIndex.search("petit", 10)).extracting(BookSearchResultDTO::getId).containsExactly(1L);
+    }
+
+    @Test
+    void whenBookIsRemoved_thenItIsNotReturned() {
+        bookSearchIndex.index(principito);
+
+        bookSearchIndex.remove(1L);
+
+        assertThat(bookSearchIndex.search("principito", 10)).isEmpty();
+    }
+
+    private static BookRepository.TitleAuthor row(Book book) {
+        return new BookRepository.TitleAuthor() {
+            @Override
+            public Long getId() {
+                return book.getId();
+            }
+
+            @Override
+            public String getTitle() {
+                return book.getTitle();
+            }
+
+            @Override
+            public String getAuthor() {
+                return book.getAuthor();
+            }
+        };
+    }
+}
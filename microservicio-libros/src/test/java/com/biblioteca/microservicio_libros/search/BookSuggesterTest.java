@@ -0,0 +1,119 @@
+package com.biblioteca.microservicio_libros.search;
+
+import com.biblioteca.microservicio_libros.dto.BookSuggestionDTO;
+import com.biblioteca.microservicio_libros.model.Book;
+import com.biblioteca.microservicio_libros.repository.BookRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookSuggesterTest {
+    @Mock
+    private BookRepository bookRepository;
+
+    @InjectMocks
+    private BookSuggester bookSuggester;
+
+    @Test
+    void whenRebuild_thenSuggestTitlesAndAuthorsByPrefix() {
+        when(bookRepository.streamTitleAuthorCopies()).thenReturn(Stream.of(
+                row(1L, "El Principito", "Antoine de Saint-Exupéry", 5),
+                row(2L, "El Aleph", "Jorge Luis Borges", 2)
+        ));
+
+        bookSuggester.rebuild();
+
+        assertThat(bookSuggester.suggest("el", 10))
+                .extracting(BookSuggestionDTO::getText)
+                .containsExactly("El Principito", "El Aleph");
+        assertThat(bookSuggester.suggest("jorge l", 10))
+                .extracting(BookSuggestionDTO::getField)
+                .containsExactly(BookSuggester.AUTHOR);
+    }
+
+    @Test
+    void whenSuggest_thenIgnoreAccentsAndRankByAvailability() {
+        bookSuggester.index(new Book(1L, "Cien años de soledad", "Gabriel García Márquez", "978-0000000003", 1, null));
+        bookSuggester.index(new Book(2L, "Ciencia ficción", "Varios", "978-0000000004", 7, null));
+        bookSuggester.index(new Book(3L, "Ciudad y los perros", "Mario Vargas Llosa", "978-0000000005", 3, null));
+
+        List<BookSuggestionDTO> suggestions = bookSuggester.suggest("CIÉ", 2);
+
+        assertThat(suggestions).extracting(BookSuggestionDTO::getText)
+                .containsExactly("Ciencia ficción", "Cien años de soledad");
+        assertThat(bookSuggester.suggest("gabriel garcía", 10)).extracting(BookSuggestionDTO::getText)
+                .containsExactly("Gabriel García Márquez");
+    }
+
+    @Test
+    void whenStockChanges_thenRankingIsUpdated() {
+        bookSuggester.index(new Book(1L, "Rayuela", "Julio Cortázar", "978-0000000006", 1, null));
+        bookSuggester.index(new Book(2L, "Rabia", "Sergio Bizzio", "978-0000000007", 2, null));
+
+        bookSuggester.adjustCopies(1L, 3);
+
+        assertThat(bookSuggester.suggest("ra", 10)).extracting(BookSuggestionDTO::getText)
+                .containsExactly("Rayuela", "Rabia");
+        assertThat(bookSuggester.suggest("rayuela", 1).get(0).getAvailableCopies()).isEqualTo(4);
+    }
+
+    @Test
+    void whenBookIsUpdatedOrRemoved_thenOldCompletionsDisappear() {
+        bookSuggester.index(new Book(1L, "El Principito", "Antoine de Saint-Exupéry", "978-0156012195", 5, null));
+        bookSuggester.index(new Book(1L, "Le Petit Prince", "Antoine de Saint-Exupéry", "978-0156012195", 5, null));
+
+        assertThat(bookSuggester.suggest("el p", 10)).isEmpty();
+        assertThat(bookSuggester.suggest("le", 10)).extracting(BookSuggestionDTO::getText)
+                .containsExactly("Le Petit Prince");
+
+        bookSuggester.remove(1L);
+
+        assertThat(bookSuggester.suggest("a", 10)).isEmpty();
+    }
+
+    @Test
+    void whenShardedBookIsIndexedWithTotalCopies_thenRankByThatTotal() {
+        bookSuggester.index(new Book(1L, "Dune", "Frank Herbert", "978-0000000008", 4, null));
+        // Libro fragmentado: la fila tiene 0 ejemplares y el total vive en los fragmentos
+        bookSuggester.index(2L, "Duelo", "Varios", 9);
+
+        bookSuggester.adjustCopies(2L, -1);
+
+        assertThat(bookSuggester.suggest("du", 10)).extracting(BookSuggestionDTO::getText, BookSuggestionDTO::getAvailableCopies)
+                .containsExactly(tuple("Duelo", 8L), tuple("Dune", 4L));
+    }
+
+    private static BookRepository.TitleAuthorCopies row(Long id, String title, String author, long copies) {
+        return new BookRepository.TitleAuthorCopies() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getTitle() {
+                return title;
+            }
+
+            @Override
+            public String getAuthor() {
+                return author;
+            }
+
+            @Override
+            public Long getCopies() {
+                return copies;
+            }
+        };
+    }
+}
@@ -0,0 +1,60 @@
+package com.biblioteca.microservicio_libros.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RadixTrieTest {
+
+    @Test
+    void whenKeysShareAPrefix_thenReturnTopCompletionsByWeight() {
+        RadixTrie trie = new RadixTrie();
+        trie.add("romeo", "Romeo", 1);
+        trie.add("romano", "Romano", 5);
+        trie.add("rubens", "Rubens", 3);
+        trie.add("rom", "Rom", 2);
+
+        assertThat(trie.topCompletions("r", 3)).extracting(RadixTrie.Completion::text)
+                .containsExactly("Romano", "Rubens", "Rom");
+        assertThat(trie.topCompletions("rom", 10)).extracting(RadixTrie.Completion::text)
+                .containsExactly("Romano", "Rom", "Romeo");
+        assertThat(trie.topCompletions("roma", 10)).extracting(RadixTrie.Completion::text)
+                .containsExactly("Romano");
+        assertThat(trie.topCompletions("x", 10)).isEmpty();
+        assertThat(trie.size()).isEqualTo(4);
+    }
+
+    @Test
+    void whenSameKeyIsAddedTwice_thenWeightsAreSummedUntilLastReferenceIsRemoved() {
+        RadixTrie trie = new RadixTrie();
+        trie.add("dune", "Dune", 2);
+        trie.add("dune", "DUNE", 3);
+
+        assertThat(trie.topCompletions("du", 10)).containsExactly(new RadixTrie.Completion("Dune", 5));
+
+        trie.remove("dune", 2);
+        assertThat(trie.topCompletions("du", 10)).containsExactly(new RadixTrie.Completion("Dune", 3));
+
+        trie.remove("dune", 3);
+        assertThat(trie.topCompletions("du", 10)).isEmpty();
+        assertThat(trie.size()).isZero();
+    }
+
+    @Test
+    void whenKeysAreRemoved_thenRemainingKeysAreStillReachable() {
+        RadixTrie trie = new RadixTrie();
+        trie.add("test", "Test", 1);
+        trie.add("team", "Team", 2);
+        trie.add("tea", "Tea", 3);
+
+        trie.remove("tea", 3);
+        trie.remove("team", 2);
+
+        assertThat(trie.topCompletions("te", 10)).extracting(RadixTrie.Completion::text)
+                .containsExactly("Test");
+
+        trie.add("tea", "Tea", 4);
+        assertThat(trie.topCompletions("t", 10)).extracting(RadixTrie.Completion::text)
+                .containsExactly("Tea", "Test");
+    }
+}
@@ -0,0 +1,104 @@
+package com.biblioteca.microservicio_libros.service;
+
+import com.biblioteca.microservicio_libros.dto.BookImportResultDTO;
+import com.biblioteca.microservicio_libros.model.Book;
+import com.biblioteca.microservicio_libros.repository.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@TestPropertySource(properties = "libros.import.batch-size=2")
+class BookImportServiceTest {
+
+    @Autowired
+    private BookImportService bookImportService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    void whenImportCsv_thenValidRowsAreInsertedAndInvalidRowsReported() {
+        Book existing = new Book();
+        existing.setTitle("1984");
+        existing.setAuthor("George Orwell");
+        existing.setIsbn("978-0451524935");
+        existing.setAvailableCopies(3);
+        bookRepository.save(existing);
+
+        String csv = """
+                title,author,isbn,availableCopies
+                El Principito,Antoine de Saint-Exupéry,978-0156012195,5
+                "Cien años de soledad, edición especial",Gabriel García Márquez,978-0307474728,2
+                Sin autor,,978-0000000001,1
+                Rebelión en la granja,George Orwell,978-0451524935,4
+                El Principito (copia),Antoine de Saint-Exupéry,978-0156012195,1
+                El Aleph,Jorge Luis Borges,978-0142437889,dos
+                Ficciones,Jorge Luis Borges,978-0802130303,7
+                """;
+
+        BookImportResultDTO result = bookImportService.importBooks(toStream(csv), BookImportService.Format.CSV);
+
+        assertThat(result.getImported()).isEqualTo(3);
+        assertThat(result.getFailed()).isEqualTo(4);
+        assertThat(result.getErrors()).extracting(error -> error.getLine()).containsExactlyInAnyOrder(4L, 5L, 6L, 7L);
+        assertThat(bookRepository.count()).isEqualTo(4);
+        assertThat(bookRepository.findByIsbn("978-0307474728").get().getTitle())
+                .isEqualTo("Cien años de soledad, edición especial");
+    }
+
+    @Test
+    void whenImportNdjson_thenRowsAreInserted() {
+        String ndjson = """
+                {"title":"El Principito","author":"Antoine de Saint-Exupéry","isbn":"978-0156012195","availableCopies":5}
+                {"title":"Ficciones","author":"Jorge Luis Borges","isbn":"978-0802130303","availableCopies":7}
+                {no es json}
+                """;
+
+        BookImportResultDTO result = bookImportService.importBooks(toStream(ndjson), BookImportService.Format.NDJSON);
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(1);
+        assertThat(result.getErrors().get(0).getLine()).isEqualTo(3);
+        assertThat(bookRepository.existsByIsbn("978-0802130303")).isTrue();
+    }
+
+    @Test
+    void whenRowViolatesNonIsbnConstraint_thenReportItAsSuch() {
+        String longTitle = "a".repeat(300);
+        String csv = "El Principito,Antoine de Saint-Exupéry,978-0156012195,5\n"
+                + longTitle + ",Jorge Luis Borges,978-0802130303,7\n";
+
+        BookImportResultDTO result = bookImportService.importBooks(toStream(csv), BookImportService.Format.CSV);
+
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getFailed()).isEqualTo(1);
+        assertThat(result.getErrors().get(0).getLine()).isEqualTo(2);
+        assertThat(result.getErrors().get(0).getMessage())
+                .startsWith("Restricción de la base de datos violada")
+                .doesNotContain("Ya existe un libro con el ISBN");
+    }
+
+    @Test
+    void whenParseCsvLine_thenHonorQuotesAndEscapedQuotes() {
+        assertThat(BookImportService.parseCsvLine("\"El \"\"Quijote\"\", tomo I\",Cervantes,978-1,3"))
+                .containsExactly("El \"Quijote\", tomo I", "Cervantes", "978-1", "3");
+    }
+
+    private static InputStream toStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
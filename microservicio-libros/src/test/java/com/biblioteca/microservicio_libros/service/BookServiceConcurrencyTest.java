@@ -0,0 +1,221 @@
+package com.biblioteca.microservicio_libros.service;
+
+import com.biblioteca.microservicio_libros.dto.BookPageDTO;
+import com.biblioteca.microservicio_libros.dto.BookRequestDTO;
+import com.biblioteca.microservicio_libros.dto.BookResponseDTO;
+import com.biblioteca.microservicio_libros.dto.StockEventDTO;
+import com.biblioteca.microservicio_libros.events.StockEventPublisher;
+import com.biblioteca.microservicio_libros.exception.ConcurrentUpdateException;
+import com.biblioteca.microservicio_libros.exception.InsufficientStockException;
+import com.biblioteca.microservicio_libros.model.Book;
+import com.biblioteca.microservicio_libros.repository.BookRepository;
+import com.biblioteca.microservicio_libros.repository.BookStockShardRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class BookServiceConcurrencyTest {
+
+    private static final int CALLERS = 600;
+    private static final int INITIAL_STOCK = 500;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookStockShardRepository shardRepository;
+
+    @Autowired
+    private StockShardService stockShardService;
+
+    @Autowired
+    private StockEventPublisher stockEventPublisher;
+
+    @AfterEach
+    void tearDown() {
+        shardRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    void whenConcurrentDecreaseStock_thenNoOversell() throws Exception {
+        Long bookId = saveBook();
+
+        decreaseConcurrently(bookId);
+
+        assertThat(bookRepository.findById(bookId).get().getAvailableCopies()).isZero();
+    }
+
+    @Test
+    void whenConcurrentDecreaseStock_onShardedBook_thenNoOversell() throws Exception {
+        Long bookId = saveBook();
+        assertThat(stockShardService.promote(bookId)).isTrue();
+        assertThat(bookService.getBookStock(bookId).getAvailableCopies()).isEqualTo(INITIAL_STOCK);
+
+        decreaseConcurrently(bookId);
+
+        assertThat(shardRepository.sumAvailableCopies(bookId)).isZero();
+        assertThat(bookService.getBookStock(bookId).isAvailable()).isFalse();
+
+        bookService.increaseStock(bookId);
+        assertThat(stockShardService.demote(bookId)).isTrue();
+        assertThat(shardRepository.existsByBookId(bookId)).isFalse();
+        assertThat(bookRepository.findById(bookId).get().getAvailableCopies()).isEqualTo(1);
+    }
+
+    @Test
+    void whenConcurrentStockChanges_onShardedBook_thenLastEventMatchesDatabase() throws Exception {
+        Long bookId = saveBook();
+        assertThat(stockShardService.promote(bookId)).isTrue();
+        long startVersion = stockEventPublisher.currentVersion();
+
+        decreaseConcurrently(bookId);
+
+        List<StockEventDTO> events = awaitEvents(bookId, startVersion, INITIAL_STOCK);
+        assertThat(events).hasSize(INITIAL_STOCK);
+        assertThat(events.get(events.size() - 1).getAvailableCopies())
+                .isEqualTo(bookService.getBookStock(bookId).getAvailableCopies())
+                .isZero();
+        // Con la lectura después del commit el stock anunciado nunca sube mientras sólo hay préstamos
+        assertThat(events).extracting(StockEventDTO::getAvailableCopies).isSortedAccordingTo(Comparator.reverseOrder());
+    }
+
+    @Test
+    void whenListAvailable_afterPromotion_thenShardedBookIsListed() {
+        Long bookId = saveBook();
+        assertThat(stockShardService.promote(bookId)).isTrue();
+        assertThat(bookRepository.findById(bookId).get().getAvailableCopies()).isZero();
+
+        BookPageDTO page = bookService.getAllBooks(null, 10, null, true);
+        BookPageDTO byAuthor = bookService.getAllBooks(null, 10, "Antoine de Saint-Exupéry", true);
+
+        assertThat(page.getItems()).extracting(BookResponseDTO::getId).containsExactly(bookId);
+        assertThat(page.getItems().get(0).getAvailableCopies()).isEqualTo(INITIAL_STOCK);
+        assertThat(byAuthor.getItems()).extracting(BookResponseDTO::getId).containsExactly(bookId);
+    }
+
+    @Test
+    void whenStockChangesDuringEdit_thenStaleSaveIsRejected() {
+        Long bookId = saveBook();
+        Book stale = bookRepository.findById(bookId).get();
+
+        bookService.decreaseStock(bookId);
+        stale.setTitle("Le Petit Prince");
+
+        assertThatThrownBy(() -> bookRepository.save(stale))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(bookRepository.findById(bookId).get().getAvailableCopies()).isEqualTo(INITIAL_STOCK - 1);
+    }
+
+    @Test
+    void whenConcurrentUpdateBook_thenNoUpdateIsLost() throws Exception {
+        Long bookId = saveBook();
+        long initialVersion = bookRepository.findById(bookId).get().getVersion();
+        int editors = 8;
+        AtomicInteger applied = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(editors);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < editors; i++) {
+            int copies = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    bookService.updateBook(bookId, new BookRequestDTO(
+                            "El Principito", "Antoine de Saint-Exupéry", "978-0156012195", copies));
+                    applied.incrementAndGet();
+                } catch (ConcurrentUpdateException ex) {
+                    conflicts.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Cada edición aplicada incrementa la versión exactamente una vez: ninguna se pisó en silencio
+        assertThat(applied.get() + conflicts.get()).isEqualTo(editors);
+        assertThat(applied.get()).isPositive();
+        assertThat(bookRepository.findById(bookId).get().getVersion()).isEqualTo(initialVersion + applied.get());
+    }
+
+    // Los eventos se despachan en otro hilo: se espera a que lleguen los de este libro
+    private List<StockEventDTO> awaitEvents(Long bookId, long sinceVersion, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        List<StockEventDTO> events;
+        do {
+            events = stockEventPublisher.eventsSince(sinceVersion).stream()
+                    .filter(event -> event.getBookId().equals(bookId))
+                    .toList();
+            if (events.size() >= expected) {
+                return events;
+            }
+            Thread.sleep(10);
+        } while (System.nanoTime() < deadline);
+        return events;
+    }
+
+    private Long saveBook() {
+        Book book = new Book();
+        book.setTitle("El Principito");
+        book.setAuthor("Antoine de Saint-Exupéry");
+        book.setIsbn("978-0156012195");
+        book.setAvailableCopies(INITIAL_STOCK);
+        return bookRepository.save(book).getId();
+    }
+
+    private void decreaseConcurrently(Long bookId) throws Exception {
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger rejections = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    bookService.decreaseStock(bookId);
+                    successes.incrementAndGet();
+                } catch (InsufficientStockException ex) {
+                    rejections.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(successes.get()).isEqualTo(INITIAL_STOCK);
+        assertThat(rejections.get()).isEqualTo(CALLERS - INITIAL_STOCK);
+    }
+}
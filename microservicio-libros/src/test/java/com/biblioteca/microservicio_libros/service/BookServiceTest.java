@@ -1,24 +1,52 @@
 package com.biblioteca.microservicio_libros.service;
 
+import com.biblioteca.microservicio_libros.cache.BookStockCache;
+import com.biblioteca.microservicio_libros.cache.IsbnFilter;
+import com.biblioteca.microservicio_libros.dto.AuthorFacetDTO;
+import com.biblioteca.microservicio_libros.dto.BookPageDTO;
 import com.biblioteca.microservicio_libros.dto.BookRequestDTO;
 import com.biblioteca.microservicio_libros.dto.BookResponseDTO;
+import com.biblioteca.microservicio_libros.dto.BookSearchResultDTO;
+import com.biblioteca.microservicio_libros.dto.BookStockBatchDTO;
 import com.biblioteca.microservicio_libros.dto.BookStockDTO;
+import com.biblioteca.microservicio_libros.dto.BookSuggestionDTO;
+import com.biblioteca.microservicio_libros.dto.StockEventDTO;
+import com.biblioteca.microservicio_libros.events.StockEventPublisher;
+import com.biblioteca.microservicio_libros.exception.BatchTooLargeException;
 import com.biblioteca.microservicio_libros.exception.BookNotFoundException;
+import com.biblioteca.microservicio_libros.exception.ConcurrentUpdateException;
 import com.biblioteca.microservicio_libros.exception.DuplicateIsbnException;
 import com.biblioteca.microservicio_libros.exception.InsufficientStockException;
+import com.biblioteca.microservicio_libros.exception.InvalidCursorException;
 import com.biblioteca.microservicio_libros.mapper.BookMapper;
 import com.biblioteca.microservicio_libros.model.Book;
 import com.biblioteca.microservicio_libros.repository.BookRepository;
+import com.biblioteca.microservicio_libros.search.AuthorFacetIndex;
+import com.biblioteca.microservicio_libros.search.BookSearchIndex;
+import com.biblioteca.microservicio_libros.search.BookSuggester;
+import com.biblioteca.microservicio_libros.snapshot.CatalogSnapshotStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -32,6 +60,36 @@ class BookServiceTest {
     @Mock
     private BookMapper bookMapper;
 
+    @Mock
+    private BookSearchIndex bookSearchIndex;
+
+    @Mock
+    private BookSuggester bookSuggester;
+
+    @Mock
+    private AuthorFacetIndex authorFacetIndex;
+
+    @Mock
+    private IsbnFilter isbnFilter;
+
+    @Mock
+    private StockShardService stockShardService;
+
+    @Mock
+    private StockEventPublisher stockEventPublisher;
+
+    @Mock
+    private OptimisticLockRetry optimisticLockRetry;
+
+    @Mock
+    private CatalogSnapshotStore catalogSnapshotStore;
+
+    @Mock
+    private IsbnConflictChecker isbnConflictChecker;
+
+    @Spy
+    private BookStockCache bookStockCache = new BookStockCache(100, Duration.ofMinutes(1));
+
     @InjectMocks
     private BookService bookService;
 
@@ -41,6 +99,9 @@ class BookServiceTest {
 
     @BeforeEach
     void setUp() {
+        lenient().when(optimisticLockRetry.execute(any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+
         testBook = new Book();
         testBook.setId(1L);
         testBook.setTitle("El Principito");
@@ -66,57 +127,202 @@ class BookServiceTest {
 
     @Test
     void whenCreateBook_thenBookIsCreated() {
+        when(isbnFilter.mightContain(requestDTO.getIsbn())).thenReturn(true);
         when(bookRepository.existsByIsbn(requestDTO.getIsbn())).thenReturn(false);
         when(bookMapper.toEntity(requestDTO)).thenReturn(testBook);
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        when(bookRepository.saveAndFlush(any(Book.class))).thenReturn(testBook);
         when(bookMapper.toResponseDTO(testBook)).thenReturn(responseDTO);
 
         BookResponseDTO result = bookService.createBook(requestDTO);
 
         assertThat(result).isNotNull();
         assertThat(result.getTitle()).isEqualTo("El Principito");
-        verify(bookRepository, times(1)).save(any(Book.class));
+        verify(bookRepository, times(1)).saveAndFlush(any(Book.class));
+        verify(isbnFilter, times(1)).put("978-0156012195");
+        verify(bookSearchIndex, times(1)).index(testBook);
+        verify(bookSuggester, times(1)).index(testBook);
+    }
+
+    @Test
+    void whenCreateBookInsideTransaction_thenIndexesChangeOnlyAfterCommit() {
+        when(isbnFilter.mightContain(requestDTO.getIsbn())).thenReturn(false);
+        when(bookMapper.toEntity(requestDTO)).thenReturn(testBook);
+        when(bookRepository.saveAndFlush(any(Book.class))).thenReturn(testBook);
+        when(bookMapper.toResponseDTO(testBook)).thenReturn(responseDTO);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            bookService.createBook(requestDTO);
+
+            verifyNoInteractions(bookSearchIndex, bookSuggester, authorFacetIndex);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(bookSearchIndex).index(testBook);
+        verify(bookSuggester).index(testBook);
+        verify(authorFacetIndex).index(testBook.getId(), testBook.getAuthor(), testBook.getAvailableCopies());
+    }
+
+    @Test
+    void whenCreateBook_withIsbnRejectedByFilter_thenSkipExistsQuery() {
+        when(isbnFilter.mightContain(requestDTO.getIsbn())).thenReturn(false);
+        when(bookMapper.toEntity(requestDTO)).thenReturn(testBook);
+        when(bookRepository.saveAndFlush(any(Book.class))).thenReturn(testBook);
+        when(bookMapper.toResponseDTO(testBook)).thenReturn(responseDTO);
+
+        bookService.createBook(requestDTO);
+
+        verify(bookRepository, never()).existsByIsbn(any());
+        verify(bookRepository, times(1)).saveAndFlush(any(Book.class));
     }
 
     @Test
     void whenCreateBook_withDuplicateIsbn_thenThrowException() {
+        when(isbnFilter.mightContain(requestDTO.getIsbn())).thenReturn(true);
         when(bookRepository.existsByIsbn(requestDTO.getIsbn())).thenReturn(true);
 
         assertThatThrownBy(() -> bookService.createBook(requestDTO))
                 .isInstanceOf(DuplicateIsbnException.class)
                 .hasMessageContaining("Ya existe un libro con el ISBN");
 
-        verify(bookRepository, never()).save(any(Book.class));
+        verify(bookRepository, never()).saveAndFlush(any(Book.class));
     }
 
     @Test
-    void whenGetAllBooks_thenReturnBookList() {
-        Book book2 = new Book();
-        book2.setId(2L);
-        book2.setTitle("1984");
-        book2.setAuthor("George Orwell");
-        book2.setIsbn("978-0451524935");
-        book2.setAvailableCopies(3);
+    void whenCreateBook_withUniqueConstraintViolation_thenThrowDuplicateIsbn() {
+        when(isbnFilter.mightContain(requestDTO.getIsbn())).thenReturn(false);
+        when(bookMapper.toEntity(requestDTO)).thenReturn(testBook);
+        when(bookRepository.saveAndFlush(any(Book.class)))
+                .thenThrow(new DataIntegrityViolationException("books_isbn_key"));
+        when(isbnConflictChecker.isTakenByAnother("978-0156012195", 1L)).thenReturn(true);
+
+        assertThatThrownBy(() -> bookService.createBook(requestDTO))
+                .isInstanceOf(DuplicateIsbnException.class)
+                .hasMessageContaining("978-0156012195");
+
+        verify(isbnFilter, never()).put(any());
+        verify(bookSearchIndex, never()).index(any());
+    }
+
+    @Test
+    void whenCreateBook_withOtherConstraintViolation_thenRethrowIt() {
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("NULL not allowed for column TITLE");
+        when(isbnFilter.mightContain(requestDTO.getIsbn())).thenReturn(false);
+        when(bookMapper.toEntity(requestDTO)).thenReturn(testBook);
+        when(bookRepository.saveAndFlush(any(Book.class))).thenThrow(violation);
+        when(isbnConflictChecker.isTakenByAnother("978-0156012195", 1L)).thenReturn(false);
+
+        assertThatThrownBy(() -> bookService.createBook(requestDTO)).isSameAs(violation);
+
+        verify(isbnFilter, never()).put(any());
+    }
 
+    @Test
+    void whenGetAllBooks_thenReturnFirstPage() {
         BookResponseDTO responseDTO2 = new BookResponseDTO(
                 2L, "1984", "George Orwell", "978-0451524935", 3
         );
 
-        when(bookRepository.findAll()).thenReturn(Arrays.asList(testBook, book2));
-        when(bookMapper.toResponseDTO(testBook)).thenReturn(responseDTO);
-        when(bookMapper.toResponseDTO(book2)).thenReturn(responseDTO2);
+        when(bookRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(BookService.DEFAULT_PAGE_SIZE + 1)))
+                .thenReturn(Arrays.asList(responseDTO, responseDTO2));
+
+        BookPageDTO result = bookService.getAllBooks(null, null, null, false);
+
+        assertThat(result.getItems()).hasSize(2);
+        assertThat(result.getItems().get(0).getTitle()).isEqualTo("El Principito");
+        assertThat(result.getItems().get(1).getTitle()).isEqualTo("1984");
+        assertThat(result.getNextCursor()).isNull();
+        verify(bookRepository, never()).findAll();
+        verifyNoInteractions(bookMapper);
+    }
+
+    @Test
+    void whenGetAllBooks_withMorePages_thenReturnNextCursor() {
+        BookResponseDTO responseDTO2 = new BookResponseDTO(2L, "1984", "George Orwell", "978-0451524935", 3);
+
+        when(bookRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(2)))
+                .thenReturn(Arrays.asList(responseDTO, responseDTO2));
+
+        BookPageDTO first = bookService.getAllBooks(null, 1, null, false);
+
+        assertThat(first.getItems()).hasSize(1);
+        assertThat(first.getNextCursor()).isNotNull();
+
+        when(bookRepository.findByIdGreaterThanOrderByIdAsc(1L, Limit.of(2)))
+                .thenReturn(List.of());
+
+        BookPageDTO second = bookService.getAllBooks(first.getNextCursor(), 1, null, false);
+
+        assertThat(second.getItems()).isEmpty();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    void whenGetAllBooks_withFilters_thenUseFilteredQuery() {
+        when(bookRepository.findByAuthorAndAvailableCopiesGreaterThanAndIdGreaterThanOrderByIdAsc(
+                "George Orwell", 0, 0L, Limit.of(BookService.MAX_PAGE_SIZE + 1)))
+                .thenReturn(List.of());
+
+        BookPageDTO result = bookService.getAllBooks(null, 5000, "George Orwell", true);
+
+        assertThat(result.getItems()).isEmpty();
+    }
+
+    @Test
+    void whenGetAllBooks_withInvalidCursor_thenThrowException() {
+        assertThatThrownBy(() -> bookService.getAllBooks("no-es-un-cursor", null, null, false))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    void whenExportBooks_thenEachBookIsWrittenFromProjection() {
+        when(bookRepository.streamAllResponses()).thenReturn(Stream.of(responseDTO));
 
-        List<BookResponseDTO> result = bookService.getAllBooks();
+        List<BookResponseDTO> exported = new ArrayList<>();
+        bookService.exportBooks(exported::add);
 
-        assertThat(result).hasSize(2);
-        assertThat(result.get(0).getTitle()).isEqualTo("El Principito");
-        assertThat(result.get(1).getTitle()).isEqualTo("1984");
+        assertThat(exported).containsExactly(responseDTO);
+        verify(bookRepository, never()).streamAllByOrderByIdAsc();
+        verify(bookRepository, never()).findAll();
+    }
+
+    @Test
+    void whenSearchBooks_thenDelegateToIndexWithBoundedLimit() {
+        BookSearchResultDTO hit = new BookSearchResultDTO(1L, "El Principito", "Antoine de Saint-Exupéry", 1.5);
+        when(bookSearchIndex.search("principito", BookService.MAX_PAGE_SIZE)).thenReturn(List.of(hit));
+
+        List<BookSearchResultDTO> result = bookService.searchBooks("principito", 5000);
+
+        assertThat(result).containsExactly(hit);
+        verify(bookRepository, never()).findAll();
+    }
+
+    @Test
+    void whenSuggestBooks_thenUseDefaultLimit() {
+        BookSuggestionDTO suggestion = new BookSuggestionDTO("El Principito", BookSuggester.TITLE, 5);
+        when(bookSuggester.suggest("el", BookService.DEFAULT_SUGGESTIONS)).thenReturn(List.of(suggestion));
+
+        List<BookSuggestionDTO> result = bookService.suggestBooks("el", null);
+
+        assertThat(result).containsExactly(suggestion);
+    }
+
+    @Test
+    void whenGetAuthorFacets_thenServeFromIndexWithBoundedLimit() {
+        AuthorFacetDTO facet = new AuthorFacetDTO("Antoine de Saint-Exupéry", 1, 1, 5);
+        when(authorFacetIndex.topAuthors(BookService.MAX_PAGE_SIZE)).thenReturn(List.of(facet));
+
+        List<AuthorFacetDTO> result = bookService.getAuthorFacets(1000);
+
+        assertThat(result).containsExactly(facet);
+        verifyNoInteractions(bookRepository);
     }
 
     @Test
     void whenGetBookById_thenReturnBook() {
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(testBook));
-        when(bookMapper.toResponseDTO(testBook)).thenReturn(responseDTO);
+        when(bookRepository.findResponseById(1L)).thenReturn(Optional.of(responseDTO));
 
         BookResponseDTO result = bookService.getBookById(1L);
 
@@ -125,9 +331,51 @@ class BookServiceTest {
         assertThat(result.getTitle()).isEqualTo("El Principito");
     }
 
+    @Test
+    void whenGetBookById_onSnapshotReplica_thenOverlayLiveStock() {
+        when(catalogSnapshotStore.findById(1L)).thenReturn(Optional.of(responseDTO));
+        when(bookRepository.findStockById(1L)).thenReturn(Optional.of(new BookStockDTO(1L, "El Principito", 2, true)));
+
+        BookResponseDTO result = bookService.getBookById(1L);
+
+        assertThat(result.getTitle()).isEqualTo("El Principito");
+        assertThat(result.getAvailableCopies()).isEqualTo(2);
+        verify(bookRepository, never()).findResponseById(any());
+    }
+
+    @Test
+    void whenGetBookByIsbn_onSnapshotReplica_withDeletedBook_thenThrowNotFound() {
+        when(catalogSnapshotStore.findByIsbn("978-0156012195")).thenReturn(Optional.of(responseDTO));
+        when(bookRepository.findStockById(1L)).thenReturn(Optional.empty());
+        when(bookRepository.findResponseByIsbn("978-0156012195")).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> bookService.getBookByIsbn("978-0156012195"))
+                .isInstanceOf(BookNotFoundException.class);
+    }
+
+    @Test
+    void whenGetBookStock_onSnapshotReplica_thenReadStockFromDatabase() {
+        lenient().when(catalogSnapshotStore.findById(1L)).thenReturn(Optional.of(responseDTO));
+        when(bookRepository.findStockById(1L)).thenReturn(Optional.of(new BookStockDTO(1L, "El Principito", 2, true)));
+
+        BookStockDTO result = bookService.getBookStock(1L);
+
+        assertThat(result.getAvailableCopies()).isEqualTo(2);
+        verifyNoInteractions(catalogSnapshotStore);
+    }
+
+    @Test
+    void whenGetBookByIsbn_withoutSnapshot_thenQueryDatabase() {
+        when(bookRepository.findResponseByIsbn("978-0156012195")).thenReturn(Optional.of(responseDTO));
+
+        BookResponseDTO result = bookService.getBookByIsbn("978-0156012195");
+
+        assertThat(result.getId()).isEqualTo(1L);
+    }
+
     @Test
     void whenGetBookById_withInvalidId_thenThrowException() {
-        when(bookRepository.findById(99L)).thenReturn(Optional.empty());
+        when(bookRepository.findResponseById(99L)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> bookService.getBookById(99L))
                 .isInstanceOf(BookNotFoundException.class)
@@ -138,8 +386,7 @@ class BookServiceTest {
     void whenGetBookStock_thenReturnStock() {
         BookStockDTO stockDTO = new BookStockDTO(1L, "El Principito", 5, true);
 
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(testBook));
-        when(bookMapper.toStockDTO(testBook)).thenReturn(stockDTO);
+        when(bookRepository.findStockById(1L)).thenReturn(Optional.of(stockDTO));
 
         BookStockDTO result = bookService.getBookStock(1L);
 
@@ -148,6 +395,69 @@ class BookServiceTest {
         assertThat(result.getAvailableCopies()).isEqualTo(5);
     }
 
+    @Test
+    void whenGetBookStockTwice_thenSecondCallIsServedFromCache() {
+        BookStockDTO stockDTO = new BookStockDTO(1L, "El Principito", 5, true);
+
+        when(bookRepository.findStockById(1L)).thenReturn(Optional.of(stockDTO));
+
+        bookService.getBookStock(1L);
+        BookStockDTO result = bookService.getBookStock(1L);
+
+        assertThat(result).isEqualTo(stockDTO);
+        verify(bookRepository, times(1)).findStockById(1L);
+        assertThat(bookService.getStockCacheStats().getHitCount()).isEqualTo(1);
+        assertThat(bookService.getStockCacheStats().getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void whenDecreaseStock_thenCachedStockIsInvalidated() {
+        BookStockDTO stockDTO = new BookStockDTO(1L, "El Principito", 5, true);
+
+        when(bookRepository.findStockById(1L)).thenReturn(Optional.of(stockDTO));
+        when(bookRepository.decrementAvailableCopies(1L)).thenReturn(1);
+
+        bookService.getBookStock(1L);
+        bookService.decreaseStock(1L);
+        bookService.getBookStock(1L);
+
+        verify(bookStockCache, times(1)).invalidate(1L);
+        verify(bookRepository, times(2)).findStockById(1L);
+    }
+
+    @Test
+    void whenGetBookStock_withInvalidId_thenThrowException() {
+        when(bookRepository.findStockById(99L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> bookService.getBookStock(99L))
+                .isInstanceOf(BookNotFoundException.class);
+    }
+
+    @Test
+    void whenGetBooksStock_thenReturnStocksAndNotFoundIds() {
+        BookStockDTO stockDTO = new BookStockDTO(1L, "El Principito", 5, true);
+
+        when(bookRepository.findStockByIdIn(anyCollection())).thenReturn(List.of(stockDTO));
+
+        BookStockBatchDTO result = bookService.getBooksStock(List.of(1L, 99L, 1L));
+
+        assertThat(result.getStocks()).containsOnlyKeys(1L);
+        assertThat(result.getStocks().get(1L).getAvailableCopies()).isEqualTo(5);
+        assertThat(result.getNotFound()).containsExactly(99L);
+        verify(bookRepository, times(1)).findStockByIdIn(anyCollection());
+        verify(bookRepository, never()).findAllById(anyIterable());
+    }
+
+    @Test
+    void whenGetBooksStock_withTooManyIds_thenThrowWithoutQuerying() {
+        List<Long> ids = LongStream.rangeClosed(1, BookService.MAX_STOCK_BATCH + 1).boxed().toList();
+
+        assertThatThrownBy(() -> bookService.getBooksStock(ids))
+                .isInstanceOf(BatchTooLargeException.class);
+
+        verify(bookRepository, never()).findStockByIdIn(anyCollection());
+    }
+
     @Test
     void whenUpdateBook_thenBookIsUpdated() {
         BookRequestDTO updateDTO = new BookRequestDTO(
@@ -157,10 +467,10 @@ class BookServiceTest {
                 10
         );
 
-        when(bookRepository.findById(1L))
+        when(bookRepository.findByIdForUpdate(1L))
                 .thenReturn(Optional.of(testBook));
 
-        when(bookRepository.save(any(Book.class)))
+        when(bookRepository.saveAndFlush(any(Book.class)))
                 .thenReturn(testBook);
 
         when(bookMapper.toResponseDTO(testBook))
@@ -169,7 +479,24 @@ class BookServiceTest {
         BookResponseDTO result = bookService.updateBook(1L, updateDTO);
 
         assertThat(result).isNotNull();
-        verify(bookRepository).save(any(Book.class));
+        verify(bookRepository).saveAndFlush(any(Book.class));
+        verify(bookSearchIndex).index(testBook);
+        verify(bookSuggester).index(1L, "El Principito (Edición Especial)", "Antoine de Saint-Exupéry", 10);
+        verify(authorFacetIndex).index(1L, "Antoine de Saint-Exupéry", 10);
+    }
+
+    @Test
+    void whenUpdateShardedBook_thenSuggesterGetsTotalCopiesNotTheRow() {
+        BookRequestDTO updateDTO = new BookRequestDTO("El Principito", "Antoine de Saint-Exupéry", "978-0156012195", 12);
+        when(bookRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(testBook));
+        when(stockShardService.resetShards(1L, 12)).thenReturn(true);
+        when(bookRepository.saveAndFlush(any(Book.class))).thenReturn(testBook);
+        when(bookMapper.toResponseDTO(testBook, 12)).thenReturn(responseDTO);
+
+        bookService.updateBook(1L, updateDTO);
+
+        assertThat(testBook.getAvailableCopies()).isZero();
+        verify(bookSuggester).index(1L, "El Principito", "Antoine de Saint-Exupéry", 12);
     }
 
     @Test
@@ -182,16 +509,30 @@ class BookServiceTest {
                 isbnDeOtroLibro,
                 10
         );
-        when(bookRepository.findById(1L))
+        when(bookRepository.findByIdForUpdate(1L))
                 .thenReturn(Optional.of(testBook));
 
+        when(isbnFilter.mightContain(isbnDeOtroLibro))
+                .thenReturn(true);
+
         when(bookRepository.existsByIsbn(isbnDeOtroLibro))
                 .thenReturn(true);
 
         assertThatThrownBy(() -> bookService.updateBook(1L, updateDTO))
                 .isInstanceOf(DuplicateIsbnException.class);
 
-        verify(bookRepository, never()).save(any());
+        verify(bookRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void whenUpdateBook_withRetriesExhausted_thenThrowConcurrentUpdate() {
+        doAnswer(invocation -> {
+            throw invocation.<Supplier<RuntimeException>>getArgument(1).get();
+        }).when(optimisticLockRetry).execute(any(), any());
+
+        assertThatThrownBy(() -> bookService.updateBook(1L, requestDTO))
+                .isInstanceOf(ConcurrentUpdateException.class)
+                .hasMessageContaining("id 1");
     }
 
     @Test
@@ -202,6 +543,10 @@ class BookServiceTest {
         bookService.deleteBook(1L);
 
         verify(bookRepository, times(1)).deleteById(1L);
+        verify(stockShardService, times(1)).deleteShards(1L);
+        verify(bookStockCache, times(1)).invalidate(1L);
+        verify(bookSearchIndex, times(1)).remove(1L);
+        verify(bookSuggester, times(1)).remove(1L);
     }
 
     @Test
@@ -216,33 +561,94 @@ class BookServiceTest {
 
     @Test
     void whenDecreaseStock_thenStockIsDecreased() {
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(testBook));
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        when(bookRepository.decrementAvailableCopies(1L)).thenReturn(1);
+
+        bookService.decreaseStock(1L);
+
+        verify(bookRepository, times(1)).decrementAvailableCopies(1L);
+        verify(bookRepository, never()).findById(any());
+        verify(bookRepository, never()).save(any(Book.class));
+        verify(bookSuggester, times(1)).adjustCopies(1L, -1);
+        verify(authorFacetIndex, times(1)).adjustCopies(1L, -1);
+    }
+
+    @Test
+    void whenDecreaseStock_thenPublishStockEventWithRemainingCopies() {
+        when(bookRepository.decrementAvailableCopies(1L)).thenReturn(1);
+        when(bookRepository.findTotalCopiesById(1L)).thenReturn(Optional.of(4));
+        ArgumentCaptor<IntSupplier> copies = ArgumentCaptor.forClass(IntSupplier.class);
 
         bookService.decreaseStock(1L);
 
-        verify(bookRepository, times(1)).save(any(Book.class));
+        verify(stockEventPublisher, times(1)).publish(eq(StockEventDTO.Type.DECREASED), eq(1L), copies.capture());
+        // El publicador lee el stock después del commit, no dentro de la transacción del préstamo
+        verify(bookRepository, never()).findTotalCopiesById(1L);
+        assertThat(copies.getValue().getAsInt()).isEqualTo(4);
     }
 
     @Test
     void whenDecreaseStock_withZeroStock_thenThrowException() {
-        testBook.setAvailableCopies(0);
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(testBook));
+        when(bookRepository.decrementAvailableCopies(1L)).thenReturn(0);
+        when(bookRepository.existsById(1L)).thenReturn(true);
 
         assertThatThrownBy(() -> bookService.decreaseStock(1L))
                 .isInstanceOf(InsufficientStockException.class)
                 .hasMessageContaining("no tiene ejemplares disponibles");
 
+        verify(stockEventPublisher, never()).publish(any(), any(), any());
+
         verify(bookRepository, never()).save(any(Book.class));
     }
 
+    @Test
+    void whenDecreaseStock_withInvalidId_thenThrowException() {
+        when(bookRepository.decrementAvailableCopies(99L)).thenReturn(0);
+        when(bookRepository.existsById(99L)).thenReturn(false);
+
+        assertThatThrownBy(() -> bookService.decreaseStock(99L))
+                .isInstanceOf(BookNotFoundException.class);
+    }
+
+    @Test
+    void whenDecreaseStock_onHotBook_thenDecrementShard() {
+        when(stockShardService.isHot(1L)).thenReturn(true);
+        when(stockShardService.tryDecrement(1L)).thenReturn(true);
+
+        bookService.decreaseStock(1L);
+
+        verify(bookRepository, never()).decrementAvailableCopies(any());
+        verify(stockShardService).endStockUpdate(1L);
+        verify(bookSuggester, times(1)).adjustCopies(1L, -1);
+    }
+
+    @Test
+    void whenDecreaseStock_afterPromotionByAnotherInstance_thenRetryOnShards() {
+        when(bookRepository.decrementAvailableCopies(1L)).thenReturn(0);
+        when(bookRepository.existsById(1L)).thenReturn(true);
+        when(stockShardService.hasShards(1L)).thenReturn(true);
+        when(stockShardService.tryDecrement(1L)).thenReturn(true);
+
+        bookService.decreaseStock(1L);
+
+        verify(bookSuggester, times(1)).adjustCopies(1L, -1);
+    }
+
     @Test
     void whenIncreaseStock_thenStockIsIncreased() {
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(testBook));
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        when(bookRepository.incrementAvailableCopies(1L)).thenReturn(1);
 
         bookService.increaseStock(1L);
 
-        verify(bookRepository, times(1)).save(any(Book.class));
+        verify(bookRepository, times(1)).incrementAvailableCopies(1L);
+        verify(bookRepository, never()).save(any(Book.class));
+        verify(bookSuggester, times(1)).adjustCopies(1L, 1);
+    }
+
+    @Test
+    void whenIncreaseStock_withInvalidId_thenThrowException() {
+        when(bookRepository.incrementAvailableCopies(99L)).thenReturn(0);
+
+        assertThatThrownBy(() -> bookService.increaseStock(99L))
+                .isInstanceOf(BookNotFoundException.class);
     }
 }
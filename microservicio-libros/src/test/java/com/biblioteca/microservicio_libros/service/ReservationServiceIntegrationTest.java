@@ -0,0 +1,90 @@
+package com.biblioteca.microservicio_libros.service;
+
+import com.biblioteca.microservicio_libros.dto.ReservationResponseDTO;
+import com.biblioteca.microservicio_libros.exception.InsufficientStockException;
+import com.biblioteca.microservicio_libros.exception.ReservationNotActiveException;
+import com.biblioteca.microservicio_libros.model.Book;
+import com.biblioteca.microservicio_libros.model.StockReservation;
+import com.biblioteca.microservicio_libros.repository.BookRepository;
+import com.biblioteca.microservicio_libros.repository.StockReservationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class ReservationServiceIntegrationTest {
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    @AfterEach
+    void tearDown() {
+        reservationRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    void whenLastCopyIsHeld_thenItCannotBeLent() {
+        Long bookId = saveBook(1);
+
+        reservationService.reserve(bookId, 60);
+
+        assertThat(bookService.getBookStock(bookId).isAvailable()).isFalse();
+        assertThatThrownBy(() -> bookService.decreaseStock(bookId))
+                .isInstanceOf(InsufficientStockException.class);
+        assertThatThrownBy(() -> reservationService.reserve(bookId, 60))
+                .isInstanceOf(InsufficientStockException.class);
+    }
+
+    @Test
+    void whenHoldIsConfirmed_thenCopyStaysTakenAndCannotBeCancelled() {
+        Long bookId = saveBook(2);
+        ReservationResponseDTO hold = reservationService.reserve(bookId, 60);
+
+        ReservationResponseDTO confirmed = reservationService.confirm(hold.getId());
+
+        assertThat(confirmed.getStatus()).isEqualTo(StockReservation.Status.CONFIRMED);
+        assertThat(bookService.getBookStock(bookId).getAvailableCopies()).isEqualTo(1);
+        assertThatThrownBy(() -> reservationService.cancel(hold.getId()))
+                .isInstanceOf(ReservationNotActiveException.class);
+    }
+
+    @Test
+    void whenHoldExpires_thenCopyReturnsToStockAndConfirmFails() throws Exception {
+        Long bookId = saveBook(1);
+        ReservationResponseDTO hold = reservationService.reserve(bookId, 1);
+
+        Thread.sleep(1100);
+        assertThatThrownBy(() -> reservationService.confirm(hold.getId()))
+                .isInstanceOf(ReservationNotActiveException.class);
+        reservationService.expireDueHolds();
+
+        assertThat(reservationService.getReservation(hold.getId()).getStatus()).isEqualTo(StockReservation.Status.EXPIRED);
+        assertThat(bookService.getBookStock(bookId).getAvailableCopies()).isEqualTo(1);
+        // Un segundo barrido no vuelve a devolver el ejemplar
+        assertThat(reservationService.expireOverdueHolds()).isZero();
+        assertThat(bookService.getBookStock(bookId).getAvailableCopies()).isEqualTo(1);
+    }
+
+    private Long saveBook(int copies) {
+        Book book = new Book();
+        book.setTitle("El Principito");
+        book.setAuthor("Antoine de Saint-Exupéry");
+        book.setIsbn("978-0156012195");
+        book.setAvailableCopies(copies);
+        return bookRepository.save(book).getId();
+    }
+}
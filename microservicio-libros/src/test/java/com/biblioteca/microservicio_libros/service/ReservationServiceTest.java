@@ -0,0 +1,164 @@
+package com.biblioteca.microservicio_libros.service;
+
+import com.biblioteca.microservicio_libros.dto.ReservationResponseDTO;
+import com.biblioteca.microservicio_libros.exception.InsufficientStockException;
+import com.biblioteca.microservicio_libros.exception.ReservationNotActiveException;
+import com.biblioteca.microservicio_libros.exception.ReservationNotFoundException;
+import com.biblioteca.microservicio_libros.model.StockReservation;
+import com.biblioteca.microservicio_libros.repository.BookRepository;
+import com.biblioteca.microservicio_libros.repository.StockReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ReservationServiceTest {
+
+    private StockReservationRepository reservationRepository;
+    private BookRepository bookRepository;
+    private BookService bookService;
+    private ReservationService reservationService;
+
+    @BeforeEach
+    void setUp() {
+        reservationRepository = mock(StockReservationRepository.class);
+        bookRepository = mock(BookRepository.class);
+        bookService = mock(BookService.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(reservationRepository.save(any(StockReservation.class))).thenAnswer(invocation -> {
+            StockReservation reservation = invocation.getArgument(0);
+            reservation.setId(UUID.randomUUID());
+            return reservation;
+        });
+        reservationService = new ReservationService(reservationRepository, bookRepository, bookService,
+                transactionManager, Duration.ofMinutes(5), Duration.ofMinutes(30), 1000);
+    }
+
+    @Test
+    void whenReserve_thenDecreaseStockAndScheduleExpiry() {
+        ReservationResponseDTO result = reservationService.reserve(1L, 60);
+
+        assertThat(result.getStatus()).isEqualTo(StockReservation.Status.HELD);
+        assertThat(result.getExpiresAt()).isBetween(Instant.now().plusSeconds(50), Instant.now().plusSeconds(61));
+        verify(bookService).decreaseStock(1L);
+        assertThat(reservationService.pendingTimers()).isEqualTo(1);
+    }
+
+    @Test
+    void whenReserve_withTtlAboveMaximum_thenClampTtl() {
+        ReservationResponseDTO result = reservationService.reserve(1L, 24 * 3600);
+
+        assertThat(result.getExpiresAt()).isBefore(Instant.now().plus(Duration.ofMinutes(31)));
+    }
+
+    @Test
+    void whenReserve_withoutStock_thenNoHoldIsCreated() {
+        doThrow(new InsufficientStockException(1L)).when(bookService).decreaseStock(1L);
+
+        assertThatThrownBy(() -> reservationService.reserve(1L, null))
+                .isInstanceOf(InsufficientStockException.class);
+
+        verify(reservationRepository, never()).save(any());
+        assertThat(reservationService.pendingTimers()).isZero();
+    }
+
+    @Test
+    void whenCancel_thenReturnCopyToStock() {
+        UUID id = UUID.randomUUID();
+        when(reservationRepository.updateStatus(id, StockReservation.Status.HELD, StockReservation.Status.CANCELLED))
+                .thenReturn(1);
+        when(reservationRepository.findBookIdById(id)).thenReturn(1L);
+        when(bookRepository.existsById(1L)).thenReturn(true);
+        when(reservationRepository.findById(id)).thenReturn(Optional.of(reservation(id, StockReservation.Status.CANCELLED)));
+
+        ReservationResponseDTO result = reservationService.cancel(id);
+
+        assertThat(result.getStatus()).isEqualTo(StockReservation.Status.CANCELLED);
+        verify(bookService).increaseStock(1L);
+    }
+
+    @Test
+    void whenCancelConfirmedReservation_thenThrowNotActiveWithoutReleasing() {
+        UUID id = UUID.randomUUID();
+        when(reservationRepository.findById(id)).thenReturn(Optional.of(reservation(id, StockReservation.Status.CONFIRMED)));
+
+        assertThatThrownBy(() -> reservationService.cancel(id))
+                .isInstanceOf(ReservationNotActiveException.class)
+                .hasMessageContaining("CONFIRMED");
+
+        verify(bookService, never()).increaseStock(any());
+    }
+
+    @Test
+    void whenConfirmExpiredHold_thenThrowNotActive() {
+        UUID id = UUID.randomUUID();
+        when(reservationRepository.findById(id)).thenReturn(Optional.of(reservation(id, StockReservation.Status.HELD)));
+
+        assertThatThrownBy(() -> reservationService.confirm(id))
+                .isInstanceOf(ReservationNotActiveException.class)
+                .hasMessageContaining("EXPIRED");
+    }
+
+    @Test
+    void whenConfirmUnknownHold_thenThrowNotFound() {
+        UUID id = UUID.randomUUID();
+        when(reservationRepository.findById(id)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> reservationService.confirm(id))
+                .isInstanceOf(ReservationNotFoundException.class);
+    }
+
+    @Test
+    void whenManyHoldsArePending_thenSweepOnlyReleasesDueOnes() {
+        Instant later = Instant.now().plus(Duration.ofMinutes(10));
+        Instant past = Instant.now().minusSeconds(1);
+        Stream<StockReservation> pending = Stream.concat(
+                IntStream.range(0, 100_000).mapToObj(i -> reservation(UUID.randomUUID(), later)),
+                IntStream.range(0, 10).mapToObj(i -> reservation(UUID.randomUUID(), past)));
+        when(reservationRepository.streamByStatus(StockReservation.Status.HELD)).thenReturn(pending);
+        when(reservationRepository.updateStatus(any(), eq(StockReservation.Status.HELD), eq(StockReservation.Status.EXPIRED)))
+                .thenReturn(1);
+        when(reservationRepository.findBookIdById(any())).thenReturn(1L);
+        when(bookRepository.existsById(1L)).thenReturn(true);
+        reservationService.loadPendingHolds();
+
+        int expired = reservationService.expireDueHolds();
+
+        assertThat(expired).isEqualTo(10);
+        assertThat(reservationService.pendingTimers()).isEqualTo(100_000);
+        verify(reservationRepository, times(10)).updateStatus(any(), any(), any());
+        verify(bookService, times(10)).increaseStock(1L);
+    }
+
+    @Test
+    void whenHoldWasAlreadyConfirmed_thenExpiryDoesNotReleaseStock() {
+        when(reservationRepository.streamByStatus(StockReservation.Status.HELD))
+                .thenReturn(Stream.of(reservation(UUID.randomUUID(), Instant.now().minusSeconds(1))));
+        reservationService.loadPendingHolds();
+
+        assertThat(reservationService.expireDueHolds()).isZero();
+        verify(bookService, never()).increaseStock(any());
+    }
+
+    private static StockReservation reservation(UUID id, StockReservation.Status status) {
+        return new StockReservation(id, 1L, status, Instant.now().minusSeconds(1), Instant.now().minusSeconds(60));
+    }
+
+    private static StockReservation reservation(UUID id, Instant expiresAt) {
+        return new StockReservation(id, 1L, StockReservation.Status.HELD, expiresAt, Instant.now());
+    }
+}
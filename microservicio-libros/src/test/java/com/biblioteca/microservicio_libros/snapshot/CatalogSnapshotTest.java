@@ -0,0 +1,127 @@
+package com.biblioteca.microservicio_libros.snapshot;
+
+import com.biblioteca.microservicio_libros.dto.BookResponseDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CatalogSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void whenSnapshotIsWritten_thenBooksAreFoundByIdAndIsbn() throws IOException {
+        Path file = directory.resolve("catalog.snapshot");
+        try (CatalogSnapshot.Builder builder = CatalogSnapshot.create(file)) {
+            builder.add(new BookResponseDTO(1L, "El Principito", "Antoine de Saint-Exupéry", "978-0156012195", 5));
+            builder.add(new BookResponseDTO(7L, "Cien años de soledad", "Gabriel García Márquez", "978-0307474728", 0));
+            assertThat(builder.commit()).isEqualTo(2);
+        }
+
+        CatalogSnapshot snapshot = CatalogSnapshot.open(file);
+
+        assertThat(snapshot.size()).isEqualTo(2);
+        assertThat(snapshot.findById(7L)).contains(
+                new BookResponseDTO(7L, "Cien años de soledad", "Gabriel García Márquez", "978-0307474728", 0));
+        assertThat(snapshot.findByIsbn("978-0156012195")).map(BookResponseDTO::getId).contains(1L);
+        assertThat(snapshot.findById(2L)).isEmpty();
+        assertThat(snapshot.findByIsbn("000-0000000000")).isEmpty();
+    }
+
+    @Test
+    void whenSnapshotHasManyBooks_thenEveryBookIsReachable() throws IOException {
+        Path file = directory.resolve("catalog.snapshot");
+        int books = 50_000;
+        try (CatalogSnapshot.Builder builder = CatalogSnapshot.create(file)) {
+            for (long id = 1; id <= books; id++) {
+                builder.add(new BookResponseDTO(id * 3, "Título " + id, "Autor " + (id % 97), "isbn-" + id, (int) (id % 5)));
+            }
+            builder.commit();
+        }
+
+        CatalogSnapshot snapshot = CatalogSnapshot.open(file);
+
+        for (long id = 1; id <= books; id++) {
+            assertThat(snapshot.findById(id * 3)).map(BookResponseDTO::getIsbn).contains("isbn-" + id);
+            assertThat(snapshot.findByIsbn("isbn-" + id)).map(BookResponseDTO::getId).contains(id * 3);
+        }
+        assertThat(snapshot.findById(1L)).isEmpty();
+    }
+
+    @Test
+    void whenSnapshotIsEmpty_thenLookupsReturnEmpty() throws IOException {
+        Path file = directory.resolve("catalog.snapshot");
+        try (CatalogSnapshot.Builder builder = CatalogSnapshot.create(file)) {
+            builder.commit();
+        }
+
+        CatalogSnapshot snapshot = CatalogSnapshot.open(file);
+
+        assertThat(snapshot.findById(1L)).isEmpty();
+        assertThat(snapshot.findByIsbn("978-0156012195")).isEmpty();
+    }
+
+    @Test
+    void whenBooksAreNotOrderedById_thenRejectAndLeaveNoFile() throws IOException {
+        Path file = directory.resolve("catalog.snapshot");
+        try (CatalogSnapshot.Builder builder = CatalogSnapshot.create(file)) {
+            builder.add(new BookResponseDTO(2L, "El Aleph", "Jorge Luis Borges", "978-0000000002", 2));
+            assertThatThrownBy(() -> builder.add(new BookResponseDTO(1L, "Rayuela", "Julio Cortázar", "978-0000000006", 1)))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+
+        try (var files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void whenFileIsNotASnapshot_thenRejectIt() throws IOException {
+        Path file = Files.write(directory.resolve("catalog.snapshot"), new byte[64]);
+
+        assertThatThrownBy(() -> CatalogSnapshot.open(file))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void whenSnapshotIsReplaced_thenReadOnlyStoreRemapsIt() throws IOException {
+        Path file = directory.resolve("catalog.snapshot");
+        try (CatalogSnapshot.Builder builder = CatalogSnapshot.create(file)) {
+            builder.add(new BookResponseDTO(1L, "El Principito", "Antoine de Saint-Exupéry", "978-0156012195", 5));
+            builder.commit();
+        }
+        CatalogSnapshotStore store = new CatalogSnapshotStore(file, true);
+        assertThat(store.findById(1L)).map(BookResponseDTO::getAvailableCopies).contains(5);
+
+        try (CatalogSnapshot.Builder builder = CatalogSnapshot.create(file)) {
+            builder.add(new BookResponseDTO(1L, "El Principito", "Antoine de Saint-Exupéry", "978-0156012195", 4));
+            builder.commit();
+        }
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(5)));
+        store.reload();
+
+        assertThat(store.findById(1L)).map(BookResponseDTO::getAvailableCopies).contains(4);
+    }
+
+    @Test
+    void whenStoreIsNotReadOnly_thenSnapshotIsIgnored() throws IOException {
+        Path file = directory.resolve("catalog.snapshot");
+        try (CatalogSnapshot.Builder builder = CatalogSnapshot.create(file)) {
+            builder.add(new BookResponseDTO(1L, "El Principito", "Antoine de Saint-Exupéry", "978-0156012195", 5));
+            builder.commit();
+        }
+
+        CatalogSnapshotStore store = new CatalogSnapshotStore(file, false);
+
+        assertThat(store.findById(1L)).isEmpty();
+    }
+}
@@ -1,10 +1,17 @@
 package com.biblioteca.prestamos.client;
 
+import com.biblioteca.prestamos.config.FeignConfig;
+import com.biblioteca.prestamos.dto.BookStockBatchDTO;
 import com.biblioteca.prestamos.dto.BookStockDTO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+
+import java.util.List;
 
 @FeignClient(
         name = "libros-service",
@@ -12,12 +19,18 @@ import org.springframework.web.bind.annotation.PathVariable;
 )
 public interface BookClient {
 
-    @GetMapping("/api/libros/{id}/stock")
+    @GetMapping(value = "/api/libros/{id}/stock", headers = FeignConfig.ACCEPT_BINARY)
     BookStockDTO getBookStock(@PathVariable Long id);
 
+    @PostMapping(value = "/api/libros/stock", headers = FeignConfig.ACCEPT_BINARY)
+    BookStockBatchDTO getBooksStock(@RequestBody List<Long> ids);
+
+    String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    // Con la misma clave, libros no vuelve a aplicar una mutación ya hecha, así el reintento es seguro
     @PatchMapping("/api/libros/{id}/decrease-stock")
-    void decreaseStock(@PathVariable Long id);
+    void decreaseStock(@PathVariable Long id, @RequestHeader(IDEMPOTENCY_KEY) String idempotencyKey);
 
     @PatchMapping("/api/libros/{id}/increase-stock")
-    void increaseStock(@PathVariable Long id);
+    void increaseStock(@PathVariable Long id, @RequestHeader(IDEMPOTENCY_KEY) String idempotencyKey);
 }
@@ -1,9 +1,17 @@
 package com.biblioteca.prestamos.client;
 
+import com.biblioteca.prestamos.config.FeignConfig;
+import com.biblioteca.prestamos.dto.UserStatusBatchDTO;
 import com.biblioteca.prestamos.dto.UserStatusDTO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import java.util.List;
 
 @FeignClient(
         name = "usuarios-service",
@@ -11,9 +19,13 @@ import org.springframework.web.bind.annotation.PathVariable;
 )
 public interface UserClient {
 
-    @GetMapping("/api/usuarios/{id}/status")
+    @GetMapping(value = "/api/usuarios/{id}/status", headers = FeignConfig.ACCEPT_BINARY)
     UserStatusDTO getUserStatus(@PathVariable Long id);
 
-    @GetMapping("/api/usuarios/{id}/validate-active")
+    @PostMapping(value = "/api/usuarios/status:batch", headers = FeignConfig.ACCEPT_BINARY)
+    UserStatusBatchDTO getUsersStatus(@RequestBody List<Long> ids);
+
+    // HEAD: 204 activo, 409 inactivo, 404 inexistente; sin cuerpo en ningún caso
+    @RequestMapping(value = "/api/usuarios/{id}/validate-active", method = RequestMethod.HEAD)
     void validateUserIsActive(@PathVariable Long id);
 }
@@ -10,6 +10,9 @@ import org.springframework.context.annotation.Configuration;
 @EnableFeignClients(basePackages = "com.biblioteca.prestamos")
 public class FeignConfig {
 
+    // Llamadas internas en CBOR; si el servicio no lo soporta responde JSON, que sigue siendo aceptado
+    public static final String ACCEPT_BINARY = "Accept=application/cbor, application/json;q=0.9";
+
     @Bean
     Logger.Level feignLoggerLevel() {
         return Logger.Level.FULL;
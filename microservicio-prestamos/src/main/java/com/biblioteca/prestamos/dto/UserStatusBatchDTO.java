@@ -0,0 +1,16 @@
+package com.biblioteca.prestamos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStatusBatchDTO {
+    private Map<Long, UserStatusDTO> statuses;
+    private List<Long> notFound;
+}
@@ -1,10 +1,14 @@
 package com.biblioteca.prestamos.repository;
 
+import com.biblioteca.prestamos.dto.LoanResponseDTO;
 import com.biblioteca.prestamos.model.Loan;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface LoanRepository extends JpaRepository<Loan, Long> {
@@ -14,4 +18,25 @@ public interface LoanRepository extends JpaRepository<Loan, Long> {
     List<Loan> findByBookId(Long bookId);
 
     List<Loan> findByReturnDateIsNull();
+
+    // Proyecciones para lecturas: construyen el DTO desde la consulta sin cargar entidades administradas
+    @Query("SELECT new com.biblioteca.prestamos.dto.LoanResponseDTO(l.id, l.userId, l.bookId, l.loanDate, l.returnDate) " +
+            "FROM Loan l ORDER BY l.id")
+    List<LoanResponseDTO> findAllResponses();
+
+    @Query("SELECT new com.biblioteca.prestamos.dto.LoanResponseDTO(l.id, l.userId, l.bookId, l.loanDate, l.returnDate) " +
+            "FROM Loan l WHERE l.id = :id")
+    Optional<LoanResponseDTO> findResponseById(@Param("id") Long id);
+
+    @Query("SELECT new com.biblioteca.prestamos.dto.LoanResponseDTO(l.id, l.userId, l.bookId, l.loanDate, l.returnDate) " +
+            "FROM Loan l WHERE l.userId = :userId ORDER BY l.id")
+    List<LoanResponseDTO> findResponsesByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT new com.biblioteca.prestamos.dto.LoanResponseDTO(l.id, l.userId, l.bookId, l.loanDate, l.returnDate) " +
+            "FROM Loan l WHERE l.bookId = :bookId ORDER BY l.id")
+    List<LoanResponseDTO> findResponsesByBookId(@Param("bookId") Long bookId);
+
+    @Query("SELECT new com.biblioteca.prestamos.dto.LoanResponseDTO(l.id, l.userId, l.bookId, l.loanDate, l.returnDate) " +
+            "FROM Loan l WHERE l.returnDate IS NULL ORDER BY l.id")
+    List<LoanResponseDTO> findActiveResponses();
 }
@@ -19,12 +19,14 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class LoanService {
+    private static final int STOCK_CONFLICT_ATTEMPTS = 3;
+
     private final LoanRepository loanRepository;
     private final LoanMapper loanMapper;
     private final UserClient userClient;
@@ -36,7 +38,7 @@ public class LoanService {
             userClient.validateUserIsActive(requestDTO.getUserId());
         } catch (FeignException.NotFound e) {
             throw new ExternalServiceException("Usuarios", "Usuario con id " + requestDTO.getUserId() + " no encontrado");
-        } catch (FeignException.BadRequest e) {
+        } catch (FeignException.Conflict e) {
             throw new ExternalServiceException("Usuarios", "Usuario con id " + requestDTO.getUserId() + " no está activo");
         } catch (FeignException e) {
             throw new ExternalServiceException("Usuarios", "Error al validar usuario: " + e.getMessage());
@@ -53,7 +55,10 @@ public class LoanService {
             throw new ExternalServiceException("Libros", "Error al validar libro: " + e.getMessage());
         }
         try {
-            bookClient.decreaseStock(requestDTO.getBookId());
+            // La clave cubre los reintentos de esta llamada (Feign y 409 en curso), no un nuevo createLoan del cliente:
+            // si el cliente repite la petición de préstamo, se genera otra clave y otro descuento de stock
+            String idempotencyKey = UUID.randomUUID().toString();
+            withIdempotentRetry(() -> bookClient.decreaseStock(requestDTO.getBookId(), idempotencyKey));
         } catch (FeignException e) {
             throw new ExternalServiceException("Libros", "Error al actualizar stock: " + e.getMessage());
         }
@@ -68,17 +73,13 @@ public class LoanService {
 
     @Transactional(readOnly = true)
     public List<LoanResponseDTO> getAllLoans() {
-        return loanRepository.findAll()
-                .stream()
-                .map(loanMapper::toResponseDTO)
-                .toList();
+        return loanRepository.findAllResponses();
     }
 
     @Transactional(readOnly = true)
     public LoanResponseDTO getLoanById(Long id) {
-        Loan loan = loanRepository.findById(id)
+        return loanRepository.findResponseById(id)
                 .orElseThrow(() -> new LoanNotFoundException(id));
-        return loanMapper.toResponseDTO(loan);
     }
 
     @Transactional
@@ -93,7 +94,8 @@ public class LoanService {
         loan.setReturnDate(LocalDate.now());
 
         try {
-            bookClient.increaseStock(loan.getBookId());
+            // Clave fija por préstamo: si la devolución falla después de sumar el stock, repetirla no lo suma dos veces
+            withIdempotentRetry(() -> bookClient.increaseStock(loan.getBookId(), "loan-" + id + "-return"));
         } catch (FeignException e) {
             throw new ExternalServiceException("Libros", "Error al actualizar stock: " + e.getMessage());
         }
@@ -105,28 +107,35 @@ public class LoanService {
         return loanMapper.toResponseDTO(updatedLoan);
     }
 
+    // Un 409 de libros indica que el intento anterior con la misma clave sigue en curso (o falló y la clave quedó libre):
+    // se repite con la misma clave, que devuelve el resultado original o ejecuta la operación una sola vez
+    private void withIdempotentRetry(Runnable stockCall) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                stockCall.run();
+                return;
+            } catch (FeignException.Conflict e) {
+                if (attempt >= STOCK_CONFLICT_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Operación de stock en curso en libros, reintento {} con la misma clave", attempt);
+            }
+        }
+    }
+
     @Transactional(readOnly = true)
     public List<LoanResponseDTO> getActiveLoans() {
-        return loanRepository.findByReturnDateIsNull()
-                .stream()
-                .map(loanMapper::toResponseDTO)
-                .toList();
+        return loanRepository.findActiveResponses();
     }
 
     @Transactional(readOnly = true)
     public List<LoanResponseDTO> getLoansByUserId(Long userId) {
-        return loanRepository.findByUserId(userId)
-                .stream()
-                .map(loanMapper::toResponseDTO)
-                .toList();
+        return loanRepository.findResponsesByUserId(userId);
     }
 
     @Transactional(readOnly = true)
     public List<LoanResponseDTO> getLoansByBookId(Long bookId) {
-        return loanRepository.findByBookId(bookId)
-                .stream()
-                .map(loanMapper::toResponseDTO)
-                .toList();
+        return loanRepository.findResponsesByBookId(bookId);
     }
 
 
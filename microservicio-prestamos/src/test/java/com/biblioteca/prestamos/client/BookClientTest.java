@@ -0,0 +1,81 @@
+package com.biblioteca.prestamos.client;
+
+import com.biblioteca.prestamos.dto.BookStockDTO;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.cloud.openfeign.FeignAutoConfiguration;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// El cliente Feign real contra un servidor HTTP local que solo responde en CBOR
+@SpringBootTest(classes = BookClientTest.FeignTestConfig.class, webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class BookClientTest {
+
+    private static final AtomicReference<String> acceptHeader = new AtomicReference<>();
+    private static final HttpServer librosServer = startLibrosServer();
+
+    @Autowired
+    private BookClient bookClient;
+
+    @DynamicPropertySource
+    static void librosUrl(DynamicPropertyRegistry registry) {
+        registry.add("libros.service.url", () -> "http://localhost:" + librosServer.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void stopServer() {
+        librosServer.stop(0);
+    }
+
+    @Test
+    void whenGetBookStock_thenAcceptCborAndDecodeCborBody() {
+        BookStockDTO stock = bookClient.getBookStock(1L);
+
+        assertThat(acceptHeader.get()).startsWith("application/cbor");
+        assertThat(stock.getId()).isEqualTo(1L);
+        assertThat(stock.getTitle()).isEqualTo("Cien años de soledad");
+        assertThat(stock.getAvailableCopies()).isEqualTo(3);
+        assertThat(stock.isAvailable()).isTrue();
+    }
+
+    private static HttpServer startLibrosServer() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            byte[] body = new CBORMapper().writeValueAsBytes(new BookStockDTO(1L, "Cien años de soledad", 3, true));
+            server.createContext("/api/libros/1/stock", exchange -> {
+                acceptHeader.set(exchange.getRequestHeaders().getFirst("Accept"));
+                exchange.getResponseHeaders().add("Content-Type", "application/cbor");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({JacksonAutoConfiguration.class, HttpMessageConvertersAutoConfiguration.class, FeignAutoConfiguration.class})
+    @EnableFeignClients(clients = BookClient.class)
+    static class FeignTestConfig {
+    }
+}
@@ -1,5 +1,6 @@
 package com.biblioteca.prestamos.repository;
 
+import com.biblioteca.prestamos.dto.LoanResponseDTO;
 import com.biblioteca.prestamos.model.Loan;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -135,6 +136,39 @@ class LoanRepositoryTest {
         assertTrue(bookLoans.isEmpty());
     }
 
+    @Test
+    @DisplayName("Debe proyectar los préstamos activos directamente a DTO")
+    void findActiveResponses_Success() {
+        List<LoanResponseDTO> activeLoans = loanRepository.findActiveResponses();
+
+        assertEquals(List.of(loan1.getId(), loan3.getId()), activeLoans.stream().map(LoanResponseDTO::getId).toList());
+        assertTrue(activeLoans.stream().allMatch(loan -> loan.getReturnDate() == null));
+    }
+
+    @Test
+    @DisplayName("Debe proyectar los préstamos de un usuario y de un libro directamente a DTO")
+    void findResponsesByUserIdAndBookId_Success() {
+        List<LoanResponseDTO> userLoans = loanRepository.findResponsesByUserId(1L);
+        List<LoanResponseDTO> bookLoans = loanRepository.findResponsesByBookId(10L);
+
+        assertEquals(2, userLoans.size());
+        assertEquals(loan2.getReturnDate(), userLoans.get(1).getReturnDate());
+        assertEquals(2, bookLoans.size());
+        assertTrue(bookLoans.stream().allMatch(loan -> loan.getBookId().equals(10L)));
+    }
+
+    @Test
+    @DisplayName("Debe proyectar un préstamo por ID directamente a DTO")
+    void findResponseById_Success() {
+        Optional<LoanResponseDTO> found = loanRepository.findResponseById(loan1.getId());
+
+        assertTrue(found.isPresent());
+        assertEquals(10L, found.get().getBookId());
+        assertEquals(loan1.getLoanDate(), found.get().getLoanDate());
+        assertFalse(loanRepository.findResponseById(999L).isPresent());
+        assertEquals(3, loanRepository.findAllResponses().size());
+    }
+
     @Test
     @DisplayName("Debe actualizar fecha de devolución correctamente")
     void updateReturnDate_Success() {
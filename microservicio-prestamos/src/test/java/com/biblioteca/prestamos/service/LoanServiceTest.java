@@ -16,6 +16,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -27,6 +28,8 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -71,7 +74,7 @@ class LoanServiceTest {
 
         doNothing().when(userClient).validateUserIsActive(1L);
         when(bookClient.getBookStock(2L)).thenReturn(stockDTO);
-        doNothing().when(bookClient).decreaseStock(2L);
+        doNothing().when(bookClient).decreaseStock(eq(2L), anyString());
         when(loanMapper.toEntity(requestDTO)).thenReturn(loan);
         when(loanRepository.save(loan)).thenReturn(loan);
         when(loanMapper.toResponseDTO(loan)).thenReturn(responseDTO);
@@ -85,7 +88,26 @@ class LoanServiceTest {
 
         verify(userClient).validateUserIsActive(1L);
         verify(bookClient).getBookStock(2L);
-        verify(bookClient).decreaseStock(2L);
+        verify(bookClient).decreaseStock(eq(2L), anyString());
+        verify(loanRepository).save(loan);
+    }
+
+    @Test
+    @DisplayName("Debe reintentar con la misma clave cuando libros responde 409 por una operación en curso")
+    void createLoan_StockConflictRetriedWithSameKey() {
+        BookStockDTO stockDTO = new BookStockDTO(2L, "Harry Postre", 5, true);
+        when(bookClient.getBookStock(2L)).thenReturn(stockDTO);
+        doThrow(mock(FeignException.Conflict.class)).doNothing()
+                .when(bookClient).decreaseStock(eq(2L), anyString());
+        when(loanMapper.toEntity(requestDTO)).thenReturn(loan);
+        when(loanRepository.save(loan)).thenReturn(loan);
+        when(loanMapper.toResponseDTO(loan)).thenReturn(responseDTO);
+
+        loanService.createLoan(requestDTO);
+
+        ArgumentCaptor<String> keys = ArgumentCaptor.forClass(String.class);
+        verify(bookClient, times(2)).decreaseStock(eq(2L), keys.capture());
+        assertEquals(keys.getAllValues().get(0), keys.getAllValues().get(1));
         verify(loanRepository).save(loan);
     }
 
@@ -108,7 +130,7 @@ class LoanServiceTest {
     @Test
     @DisplayName("Debe lanzar excepción cuando usuario no está activo")
     void createLoan_UserNotActive() {
-        FeignException.BadRequest exception = mock(FeignException.BadRequest.class);
+        FeignException.Conflict exception = mock(FeignException.Conflict.class);
         doThrow(exception).when(userClient).validateUserIsActive(1L);
 
         ExternalServiceException thrown = assertThrows(
@@ -134,44 +156,42 @@ class LoanServiceTest {
         );
 
         assertTrue(thrown.getMessage().contains("no tiene ejemplares disponibles"));
-        verify(bookClient, never()).decreaseStock(any());
+        verify(bookClient, never()).decreaseStock(any(), any());
         verify(loanRepository, never()).save(any());
     }
 
     @Test
     @DisplayName("Debe obtener todos los préstamos correctamente")
     void getAllLoans_Success() {
-        List<Loan> loans = Arrays.asList(loan);
-        when(loanRepository.findAll()).thenReturn(loans);
-        when(loanMapper.toResponseDTO(loan)).thenReturn(responseDTO);
+        when(loanRepository.findAllResponses()).thenReturn(Arrays.asList(responseDTO));
 
         List<LoanResponseDTO> result = loanService.getAllLoans();
 
         assertNotNull(result);
         assertEquals(1, result.size());
-        verify(loanRepository).findAll();
+        verify(loanRepository).findAllResponses();
+        verify(loanRepository, never()).findAll();
     }
 
     @Test
     @DisplayName("Debe obtener un préstamo por ID correctamente")
     void getLoanById_Success() {
-        when(loanRepository.findById(1L)).thenReturn(Optional.of(loan));
-        when(loanMapper.toResponseDTO(loan)).thenReturn(responseDTO);
+        when(loanRepository.findResponseById(1L)).thenReturn(Optional.of(responseDTO));
 
         LoanResponseDTO result = loanService.getLoanById(1L);
 
         assertNotNull(result);
         assertEquals(1L, result.getId());
-        verify(loanRepository).findById(1L);
+        verify(loanRepository).findResponseById(1L);
     }
 
     @Test
     @DisplayName("Debe lanzar excepción cuando préstamo no existe")
     void getLoanById_NotFound() {
-        when(loanRepository.findById(99L)).thenReturn(Optional.empty());
+        when(loanRepository.findResponseById(99L)).thenReturn(Optional.empty());
 
         assertThrows(LoanNotFoundException.class, () -> loanService.getLoanById(99L));
-        verify(loanRepository).findById(99L);
+        verify(loanRepository).findResponseById(99L);
     }
 
     @Test
@@ -181,13 +201,13 @@ class LoanServiceTest {
         when(loanRepository.findById(1L)).thenReturn(Optional.of(loan));
         when(loanRepository.save(loan)).thenReturn(loan);
         when(loanMapper.toResponseDTO(loan)).thenReturn(responseDTO);
-        doNothing().when(bookClient).increaseStock(2L);
+        doNothing().when(bookClient).increaseStock(2L, "loan-1-return");
 
         LoanResponseDTO result = loanService.returnLoan(1L);
 
         assertNotNull(result);
         assertNotNull(loan.getReturnDate());
-        verify(bookClient).increaseStock(2L);
+        verify(bookClient).increaseStock(2L, "loan-1-return");
         verify(loanRepository).save(loan);
     }
 
@@ -198,49 +218,43 @@ class LoanServiceTest {
         when(loanRepository.findById(1L)).thenReturn(Optional.of(loan));
 
         assertThrows(LoanAlreadyReturnedException.class, () -> loanService.returnLoan(1L));
-        verify(bookClient, never()).increaseStock(any());
+        verify(bookClient, never()).increaseStock(any(), any());
         verify(loanRepository, never()).save(any());
     }
 
     @Test
     @DisplayName("Debe obtener préstamos activos correctamente")
     void getActiveLoans_Success() {
-        List<Loan> activeLoans = Arrays.asList(loan);
-        when(loanRepository.findByReturnDateIsNull()).thenReturn(activeLoans);
-        when(loanMapper.toResponseDTO(loan)).thenReturn(responseDTO);
+        when(loanRepository.findActiveResponses()).thenReturn(Arrays.asList(responseDTO));
 
         List<LoanResponseDTO> result = loanService.getActiveLoans();
 
         assertNotNull(result);
         assertEquals(1, result.size());
-        verify(loanRepository).findByReturnDateIsNull();
+        verify(loanRepository).findActiveResponses();
     }
 
     @Test
     @DisplayName("Debe obtener préstamos por usuario correctamente")
     void getLoansByUserId_Success() {
-        List<Loan> userLoans = Arrays.asList(loan);
-        when(loanRepository.findByUserId(1L)).thenReturn(userLoans);
-        when(loanMapper.toResponseDTO(loan)).thenReturn(responseDTO);
+        when(loanRepository.findResponsesByUserId(1L)).thenReturn(Arrays.asList(responseDTO));
 
         List<LoanResponseDTO> result = loanService.getLoansByUserId(1L);
 
         assertNotNull(result);
         assertEquals(1, result.size());
-        verify(loanRepository).findByUserId(1L);
+        verify(loanRepository).findResponsesByUserId(1L);
     }
 
     @Test
     @DisplayName("Debe obtener préstamos por libro correctamente")
     void getLoansByBookId_Success() {
-        List<Loan> bookLoans = Arrays.asList(loan);
-        when(loanRepository.findByBookId(2L)).thenReturn(bookLoans);
-        when(loanMapper.toResponseDTO(loan)).thenReturn(responseDTO);
+        when(loanRepository.findResponsesByBookId(2L)).thenReturn(Arrays.asList(responseDTO));
 
         List<LoanResponseDTO> result = loanService.getLoansByBookId(2L);
 
         assertNotNull(result);
         assertEquals(1, result.size());
-        verify(loanRepository).findByBookId(2L);
+        verify(loanRepository).findResponsesByBookId(2L);
     }
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+package com.biblioteca.usuarios.cache;
+
+import com.biblioteca.usuarios.dto.UserChangeBatchDTO;
+import com.biblioteca.usuarios.dto.UserStatusChangeDTO;
+import com.biblioteca.usuarios.events.UserChangeLog;
+import com.biblioteca.usuarios.model.UserStatusChange;
+import com.biblioteca.usuarios.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// Estado activo/inactivo de todos los usuarios en memoria para validar préstamos sin ir a la base.
+// Se carga al arrancar y se actualiza después de cada commit local. Los cambios de otras instancias
+// llegan siguiendo el registro de cambios: cada pocos segundos se compara la versión de la cabecera y
+// sólo si avanzó se leen las entradas nuevas. La recarga completa periódica queda como red de seguridad.
+@Component
+@RequiredArgsConstructor
+public class ActiveUserIndex {
+    private final UserRepository userRepository;
+    private final UserChangeLog userChangeLog;
+
+    private final Object writeLock = new Object();
+    private volatile UserStatusBitmap bitmap;
+    // Usuarios modificados mientras corre una recarga; null cuando no hay ninguna en curso
+    private Set<Long> changedDuringRebuild;
+    // Última versión del registro de cambios reflejada en el bitmap
+    private long appliedVersion;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${usuarios.active-index.reload-interval:PT5M}",
+            fixedDelayString = "${usuarios.active-index.reload-interval:PT5M}")
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        // Se lee antes de recorrer la tabla: lo confirmado después se aplica desde el registro
+        long headVersion = userChangeLog.currentVersion();
+        synchronized (writeLock) {
+            changedDuringRebuild = new HashSet<>();
+        }
+
+        UserStatusBitmap loaded = new UserStatusBitmap();
+        try (Stream<UserRepository.ActiveFlag> rows = userRepository.streamActiveFlags()) {
+            rows.forEach(row -> loaded.set(row.getId(), row.getActive()));
+        }
+
+        synchronized (writeLock) {
+            // Lo que cambió durante la lectura ya está reflejado en el bitmap vigente
+            UserStatusBitmap current = bitmap;
+            for (Long id : changedDuringRebuild) {
+                int status = current == null ? UserStatusBitmap.UNKNOWN : current.status(id);
+                if (status == UserStatusBitmap.UNKNOWN) {
+                    loaded.clear(id);
+                } else {
+                    loaded.set(id, status == UserStatusBitmap.ACTIVE);
+                }
+            }
+            changedDuringRebuild = null;
+            appliedVersion = Math.max(appliedVersion, headVersion);
+            bitmap = loaded;
+        }
+    }
+
+    @Scheduled(initialDelayString = "${usuarios.active-index.tail-interval:PT2S}",
+            fixedDelayString = "${usuarios.active-index.tail-interval:PT2S}")
+    @Transactional(readOnly = true)
+    public void catchUp() {
+        long since;
+        synchronized (writeLock) {
+            if (bitmap == null) {
+                return;
+            }
+            since = appliedVersion;
+        }
+        if (userChangeLog.currentVersion() <= since) {
+            return;
+        }
+
+        UserChangeBatchDTO batch;
+        do {
+            batch = userChangeLog.changesAfter(since, UserChangeLog.MAX_BATCH_SIZE);
+            if (batch.isReset()) {
+                // El registro ya se purgó más allá de lo aplicado: no queda otra que recargar todo
+                rebuild();
+                return;
+            }
+            synchronized (writeLock) {
+                UserStatusBitmap current = bitmap;
+                for (UserStatusChangeDTO change : batch.getChanges()) {
+                    if (change.getType() == UserStatusChange.Type.DELETED) {
+                        current.clear(change.getUserId());
+                    } else {
+                        current.set(change.getUserId(), Boolean.TRUE.equals(change.getActive()));
+                    }
+                    markChanged(change.getUserId());
+                }
+                appliedVersion = Math.max(appliedVersion, batch.getNextSince());
+            }
+            since = batch.getNextSince();
+        } while (batch.getChanges().size() == UserChangeLog.MAX_BATCH_SIZE);
+    }
+
+    // UNKNOWN mientras no se haya cargado o si el id no figura: el llamador consulta la base
+    public int status(long id) {
+        UserStatusBitmap current = bitmap;
+        return current == null ? UserStatusBitmap.UNKNOWN : current.status(id);
+    }
+
+    public void put(Long id, boolean active) {
+        afterCommit(() -> {
+            synchronized (writeLock) {
+                UserStatusBitmap current = bitmap;
+                if (current != null) {
+                    current.set(id, active);
+                }
+                markChanged(id);
+            }
+        });
+    }
+
+    public void putAll(Collection<Long> ids, boolean active) {
+        afterCommit(() -> {
+            synchronized (writeLock) {
+                UserStatusBitmap current = bitmap;
+                for (Long id : ids) {
+                    if (current != null) {
+                        current.set(id, active);
+                    }
+                    markChanged(id);
+                }
+            }
+        });
+    }
+
+    public void remove(Long id) {
+        afterCommit(() -> {
+            synchronized (writeLock) {
+                UserStatusBitmap current = bitmap;
+                if (current != null) {
+                    current.clear(id);
+                }
+                markChanged(id);
+            }
+        });
+    }
+
+    private void markChanged(Long id) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(id);
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
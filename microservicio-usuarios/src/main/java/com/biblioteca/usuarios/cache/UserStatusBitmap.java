@@ -0,0 +1,86 @@
+package com.biblioteca.usuarios.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Bitmap de dos niveles al estilo roaring: los ids se agrupan en bloques de 65536 y cada bloque
+// guarda dos arreglos de bits (usuario conocido / usuario activo) que sólo se reservan si tiene ids.
+// Las consultas no bloquean ni reservan memoria.
+public class UserStatusBitmap {
+    public static final int UNKNOWN = 0;
+    public static final int INACTIVE = 1;
+    public static final int ACTIVE = 2;
+
+    private static final int CHUNK_BITS = 16;
+    private static final int WORDS_PER_CHUNK = (1 << CHUNK_BITS) / 64;
+    private static final int MAX_CHUNKS = 1 << (31 - CHUNK_BITS);
+
+    private final AtomicReferenceArray<Chunk> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    private static final class Chunk {
+        final AtomicLongArray known = new AtomicLongArray(WORDS_PER_CHUNK);
+        final AtomicLongArray active = new AtomicLongArray(WORDS_PER_CHUNK);
+    }
+
+    public int status(long id) {
+        if (!inRange(id)) {
+            return UNKNOWN;
+        }
+        Chunk chunk = chunks.get((int) (id >>> CHUNK_BITS));
+        if (chunk == null) {
+            return UNKNOWN;
+        }
+        int word = wordOf(id);
+        long mask = 1L << id;
+        if ((chunk.known.get(word) & mask) == 0) {
+            return UNKNOWN;
+        }
+        return (chunk.active.get(word) & mask) != 0 ? ACTIVE : INACTIVE;
+    }
+
+    // Ids fuera de rango se ignoran: quedan como desconocidos y se resuelven contra la base
+    public void set(long id, boolean active) {
+        if (!inRange(id)) {
+            return;
+        }
+        Chunk chunk = chunkFor((int) (id >>> CHUNK_BITS));
+        int word = wordOf(id);
+        long mask = 1L << id;
+        // El flag se escribe antes de marcar el id como conocido para no exponer un estado a medias
+        if (active) {
+            chunk.active.getAndUpdate(word, bits -> bits | mask);
+        } else {
+            chunk.active.getAndUpdate(word, bits -> bits & ~mask);
+        }
+        chunk.known.getAndUpdate(word, bits -> bits | mask);
+    }
+
+    public void clear(long id) {
+        if (!inRange(id)) {
+            return;
+        }
+        Chunk chunk = chunks.get((int) (id >>> CHUNK_BITS));
+        if (chunk == null) {
+            return;
+        }
+        long mask = 1L << id;
+        chunk.known.getAndUpdate(wordOf(id), bits -> bits & ~mask);
+    }
+
+    private Chunk chunkFor(int index) {
+        Chunk chunk = chunks.get(index);
+        if (chunk == null) {
+            chunks.compareAndSet(index, null, new Chunk());
+            chunk = chunks.get(index);
+        }
+        return chunk;
+    }
+
+    private static int wordOf(long id) {
+        return (int) (id >>> 6) & (WORDS_PER_CHUNK - 1);
+    }
+
+    private static boolean inRange(long id) {
+        return id >= 0 && id <= Integer.MAX_VALUE;
+    }
+}
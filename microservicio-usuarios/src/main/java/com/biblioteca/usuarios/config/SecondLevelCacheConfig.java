@@ -0,0 +1,70 @@
+package com.biblioteca.usuarios.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.Properties;
+import java.util.UUID;
+
+// Caché de segundo nivel de Hibernate en memoria local (JCache sobre Caffeine), con regiones acotadas
+@Configuration
+public class SecondLevelCacheConfig {
+    public static final String USERS_REGION = "users";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(
+            @Value("${usuarios.l2-cache.users.maximum-size:10000}") long usersMaximumSize,
+            @Value("${usuarios.l2-cache.users.ttl:10m}") Duration usersTtl,
+            @Value("${usuarios.l2-cache.query.maximum-size:2000}") long queryMaximumSize,
+            @Value("${usuarios.l2-cache.query.ttl:5m}") Duration queryTtl,
+            @Value("${usuarios.l2-cache.statistics:false}") boolean statistics){
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        // URI propia para que cada contexto tenga sus regiones y no comparta datos con otro contexto de la JVM
+        CacheManager cacheManager = provider.getCacheManager(
+                URI.create("usuarios-l2-" + UUID.randomUUID()), getClass().getClassLoader(), new Properties());
+
+        cacheManager.createCache(USERS_REGION, region(usersMaximumSize, usersTtl, statistics));
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, region(queryMaximumSize, queryTtl, statistics));
+        // Las marcas de tiempo de actualización no deben expirar ni desalojarse antes que los resultados que invalidan
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, region(-1, null, statistics));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(
+            CacheManager hibernateCacheManager,
+            @Value("${usuarios.l2-cache.statistics:false}") boolean statistics){
+        return properties -> {
+            properties.put("hibernate.cache.use_second_level_cache", true);
+            properties.put("hibernate.cache.use_query_cache", true);
+            properties.put("hibernate.cache.region.factory_class", "jcache");
+            properties.put("hibernate.javax.cache.cache_manager", hibernateCacheManager);
+            properties.put("hibernate.javax.cache.missing_cache_strategy", "create-warn");
+            // Las estadísticas cuestan en cada sesión: solo se encienden para medir la caché
+            properties.put("hibernate.generate_statistics", statistics);
+        };
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maximumSize, Duration ttl, boolean statistics) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        if (maximumSize > 0) {
+            configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        }
+        if (ttl != null) {
+            configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        }
+        configuration.setStatisticsEnabled(statistics);
+        return configuration;
+    }
+}
@@ -0,0 +1,50 @@
+package com.biblioteca.usuarios.config;
+
+import com.biblioteca.usuarios.dto.CacheRegionStatsDTO;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Expone las estadísticas por región de la caché de segundo nivel en /actuator/l2cache.
+// Solo existe con usuarios.l2-cache.statistics=true: sin estadísticas los contadores quedarían en cero
+@Component
+@ConditionalOnProperty(name = "usuarios.l2-cache.statistics", havingValue = "true")
+@Endpoint(id = "l2cache")
+public class SecondLevelCacheEndpoint {
+    private final Statistics statistics;
+
+    public SecondLevelCacheEndpoint(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @ReadOperation
+    public List<CacheRegionStatsDTO> regions() {
+        return Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(this::toStatsDTO)
+                .toList();
+    }
+
+    private CacheRegionStatsDTO toStatsDTO(String region) {
+        CacheRegionStatistics stats = statistics.getCacheRegionStatistics(region);
+        long hits = stats.getHitCount();
+        long misses = stats.getMissCount();
+        long lookups = hits + misses;
+        return new CacheRegionStatsDTO(
+                region,
+                hits,
+                misses,
+                stats.getPutCount(),
+                stats.getElementCountInMemory(),
+                lookups == 0 ? 0.0 : (double) hits / lookups
+        );
+    }
+}
@@ -0,0 +1,81 @@
+package com.biblioteca.usuarios.config;
+
+import com.biblioteca.usuarios.model.User;
+import com.biblioteca.usuarios.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+// Índices que ddl-auto no sabe crear: índices parciales de PostgreSQL sobre usuarios activos e inactivos,
+// para que el listado filtrado por actividad recorra sólo las filas que le corresponden.
+@Component
+@Slf4j
+public class UserIndexInitializer {
+    private static final String[] PARTIAL_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_users_active_id ON users (id) WHERE active",
+            "CREATE INDEX IF NOT EXISTS idx_users_inactive_id ON users (id) WHERE NOT active"
+    };
+    private static final int BACKFILL_BATCH = 1000;
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public UserIndexInitializer(UserRepository userRepository, JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        int backfilled = backfillEmailDomains();
+        if (backfilled > 0) {
+            log.info("Dominio de email completado para {} usuarios", backfilled);
+        }
+
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        if ("PostgreSQL".equals(database)) {
+            for (String statement : PARTIAL_INDEXES) {
+                jdbcTemplate.execute(statement);
+            }
+        }
+    }
+
+    // Misma regla que al guardar (texto tras la última '@'). Cada tramo de ids se confirma en su propia
+    // transacción, así que un backfill interrumpido conserva lo hecho y no retiene bloqueos hasta el final
+    public int backfillEmailDomains() {
+        int backfilled = 0;
+        long lastId = 0L;
+        List<UserRepository.IdEmail> rows;
+        while (!(rows = userRepository.findWithoutEmailDomainAfter(lastId, Limit.of(BACKFILL_BATCH))).isEmpty()) {
+            long after = lastId;
+            long upTo = rows.get(rows.size() - 1).getId();
+            List<UserRepository.IdEmail> chunk = rows;
+            backfilled += transactionTemplate.execute(status -> backfillChunk(after, upTo, chunk));
+            lastId = upTo;
+        }
+        return backfilled;
+    }
+
+    private int backfillChunk(long after, long upTo, List<UserRepository.IdEmail> rows) {
+        int backfilled = userRepository.backfillSingleAtEmailDomains(after, upTo);
+        // JPQL no ubica la última '@': los pocos emails con varias se resuelven en Java
+        for (UserRepository.IdEmail row : rows) {
+            if (row.getEmail().indexOf('@') != row.getEmail().lastIndexOf('@')) {
+                backfilled += userRepository.setEmailDomain(row.getId(), User.domainOf(row.getEmail()));
+            }
+        }
+        return backfilled;
+    }
+}
@@ -1,8 +1,16 @@
 package com.biblioteca.usuarios.cotroller;
 
+import com.biblioteca.usuarios.cache.UserStatusBitmap;
+import com.biblioteca.usuarios.dto.BulkStatusRequestDTO;
+import com.biblioteca.usuarios.dto.BulkStatusResultDTO;
+import com.biblioteca.usuarios.dto.UserChangeBatchDTO;
+import com.biblioteca.usuarios.dto.UserPageDTO;
 import com.biblioteca.usuarios.dto.UserRequestDTO;
 import com.biblioteca.usuarios.dto.UserResponseDTO;
+import com.biblioteca.usuarios.dto.UserStatusBatchDTO;
 import com.biblioteca.usuarios.dto.UserStatusDTO;
+import com.biblioteca.usuarios.events.UserChangeLog;
+import com.biblioteca.usuarios.service.UserBulkStatusService;
 import com.biblioteca.usuarios.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -11,6 +19,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.List;
 
@@ -20,7 +29,13 @@ import java.util.List;
 @Tag(name = "Usuarios", description = "API para gestión de usuarios")
 public class UserController {
 
+    private static final ResponseEntity<Void> ACTIVE = ResponseEntity.noContent().build();
+    private static final ResponseEntity<Void> INACTIVE = ResponseEntity.status(HttpStatus.CONFLICT).build();
+    private static final ResponseEntity<Void> NOT_FOUND = ResponseEntity.notFound().build();
+
     private final UserService userService;
+    private final UserBulkStatusService userBulkStatusService;
+    private final UserChangeLog userChangeLog;
 
     @PostMapping
     @Operation(summary = "Crear un nuevo usuario")
@@ -30,10 +45,14 @@ public class UserController {
     }
 
     @GetMapping
-    @Operation(summary = "Obtener todos los usuarios")
-    public ResponseEntity<List<UserResponseDTO>> getAllUsers() {
-        List<UserResponseDTO> users = userService.getAllUsers();
-        return ResponseEntity.ok(users);
+    @Operation(summary = "Obtener usuarios paginados", description = "Paginación por cursor: usar nextCursor como parámetro after para pedir la página siguiente")
+    public ResponseEntity<UserPageDTO> getAllUsers(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Boolean active,
+            @RequestParam(required = false) String emailDomain) {
+        UserPageDTO page = userService.getAllUsers(after, limit, active, emailDomain);
+        return ResponseEntity.ok(page);
     }
 
     @GetMapping("/{id}")
@@ -50,6 +69,22 @@ public class UserController {
         return ResponseEntity.ok(status);
     }
 
+    @PostMapping("/status:batch")
+    @Operation(summary = "Consultar estado de varios usuarios (uso interno)")
+    public ResponseEntity<UserStatusBatchDTO> getUsersStatus(@RequestBody List<Long> ids) {
+        UserStatusBatchDTO statuses = userService.getUsersStatus(ids);
+        return ResponseEntity.ok(statuses);
+    }
+
+    @GetMapping("/changes")
+    @Operation(summary = "Cambios de estado de usuarios posteriores a una versión (long-poll, uso interno)",
+            description = "Si no hay cambios la respuesta espera hasta waitSeconds; nextSince es el valor para la siguiente consulta")
+    public DeferredResult<UserChangeBatchDTO> getChanges(@RequestParam(defaultValue = "0") long since,
+                                                         @RequestParam(required = false) Integer limit,
+                                                         @RequestParam(required = false) Long waitSeconds) {
+        return userChangeLog.poll(since, limit, waitSeconds);
+    }
+
     @PutMapping("/{id}")
     @Operation(summary = "Actualizar un usuario existente")
     public ResponseEntity<UserResponseDTO> updateUser(
@@ -73,6 +108,22 @@ public class UserController {
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/bulk:desactivar")
+    @Operation(summary = "Desactivar usuarios en forma masiva",
+            description = "Por lista de ids o por dominio de email; se procesa en lotes con una transacción cada uno")
+    public ResponseEntity<BulkStatusResultDTO> deactivateUsers(@Valid @RequestBody BulkStatusRequestDTO requestDTO) {
+        BulkStatusResultDTO result = userBulkStatusService.setActive(requestDTO, false);
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/bulk:activar")
+    @Operation(summary = "Activar usuarios en forma masiva",
+            description = "Por lista de ids o por dominio de email; se procesa en lotes con una transacción cada uno")
+    public ResponseEntity<BulkStatusResultDTO> activateUsers(@Valid @RequestBody BulkStatusRequestDTO requestDTO) {
+        BulkStatusResultDTO result = userBulkStatusService.setActive(requestDTO, true);
+        return ResponseEntity.ok(result);
+    }
+
     @DeleteMapping("/{id}")
     @Operation(summary = "Eliminar un usuario")
     public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
@@ -86,4 +137,16 @@ public class UserController {
         userService.validateUserIsActive(id);
         return ResponseEntity.ok().build();
     }
+
+    // Variante sin cuerpo ni excepciones para validar préstamos: las respuestas son constantes
+    @RequestMapping(value = "/{id}/validate-active", method = RequestMethod.HEAD)
+    @Operation(summary = "Validar si un usuario está activo sin cuerpo (uso interno)",
+            description = "204 si está activo, 409 si está inactivo, 404 si no existe")
+    public ResponseEntity<Void> checkUserIsActive(@PathVariable Long id) {
+        return switch (userService.getActiveStatus(id)) {
+            case UserStatusBitmap.ACTIVE -> ACTIVE;
+            case UserStatusBitmap.INACTIVE -> INACTIVE;
+            default -> NOT_FOUND;
+        };
+    }
 }
\ No newline at end of file
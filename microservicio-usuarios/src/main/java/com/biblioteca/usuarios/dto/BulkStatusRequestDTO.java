@@ -0,0 +1,30 @@
+package com.biblioteca.usuarios.dto;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Criterio de una activación/desactivación masiva: una lista de ids o un dominio de email, no ambos
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStatusRequestDTO {
+    public static final int MAX_IDS = 100_000;
+
+    @Size(max = MAX_IDS, message = "La lista admite como máximo " + MAX_IDS + " ids")
+    private List<@NotNull(message = "La lista de ids no admite valores nulos") Long> ids;
+
+    private String emailDomain;
+
+    @AssertTrue(message = "Se debe indicar ids o emailDomain, pero no ambos")
+    public boolean isSingleCriterion() {
+        boolean byIds = ids != null && !ids.isEmpty();
+        boolean byDomain = emailDomain != null && !emailDomain.isBlank();
+        return byIds != byDomain;
+    }
+}
@@ -0,0 +1,14 @@
+package com.biblioteca.usuarios.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStatusResultDTO {
+    // Usuarios que cambiaron de estado; los que ya estaban en el estado pedido o no existen no cuentan
+    private int updated;
+    private int chunks;
+}
@@ -0,0 +1,18 @@
+package com.biblioteca.usuarios.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserChangeBatchDTO {
+    private List<UserStatusChangeDTO> changes;
+    // Valor de since para la próxima consulta
+    private Long nextSince;
+    // true si parte de los cambios posteriores a since ya se purgó: el cliente debe releer el estado completo
+    private boolean reset;
+}
@@ -0,0 +1,19 @@
+package com.biblioteca.usuarios.dto;
+
+import com.biblioteca.usuarios.model.UserStatusChange;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStatusChangeDTO {
+    private Long version;
+    private Long userId;
+    private UserStatusChange.Type type;
+    private Boolean active;
+    private Instant changedAt;
+}
@@ -0,0 +1,157 @@
+package com.biblioteca.usuarios.events;
+
+import com.biblioteca.usuarios.dto.UserChangeBatchDTO;
+import com.biblioteca.usuarios.dto.UserStatusChangeDTO;
+import com.biblioteca.usuarios.model.UserChangeLogHead;
+import com.biblioteca.usuarios.model.UserStatusChange;
+import com.biblioteca.usuarios.repository.UserChangeLogHeadRepository;
+import com.biblioteca.usuarios.repository.UserStatusChangeRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Registro versionado de cambios de estado de usuarios, guardado en la misma transacción que el cambio.
+// Los consumidores piden los cambios posteriores a la última versión vista; si no hay ninguno, la
+// consulta queda en espera (long-poll) hasta que aparezcan o venza el plazo, sin ocupar un hilo.
+@Component
+public class UserChangeLog {
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    private final UserStatusChangeRepository changeRepository;
+    private final UserChangeLogHeadRepository headRepository;
+    private final Duration retention;
+    private final Duration compactAfter;
+    private final Duration maxWait;
+    private final List<Waiter> waiters = new CopyOnWriteArrayList<>();
+
+    private record Waiter(long since, int limit, DeferredResult<UserChangeBatchDTO> result) {
+    }
+
+    public UserChangeLog(UserStatusChangeRepository changeRepository,
+                         UserChangeLogHeadRepository headRepository,
+                         @Value("${usuarios.changes.retention:P7D}") Duration retention,
+                         @Value("${usuarios.changes.compact-after:PT1H}") Duration compactAfter,
+                         @Value("${usuarios.changes.max-wait:PT60S}") Duration maxWait) {
+        this.changeRepository = changeRepository;
+        this.headRepository = headRepository;
+        this.retention = retention;
+        this.compactAfter = compactAfter;
+        this.maxWait = maxWait;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void ensureHead() {
+        if (!headRepository.existsById(UserChangeLogHead.ID)) {
+            try {
+                headRepository.saveAndFlush(new UserChangeLogHead(UserChangeLogHead.ID, 0L, 0L));
+            } catch (DataIntegrityViolationException ex) {
+                // Otra instancia la creó al mismo tiempo
+            }
+        }
+    }
+
+    // Debe llamarse dentro de la transacción del cambio: si ésta se revierte, la entrada también
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Long userId, UserStatusChange.Type type, Boolean active) {
+        recordAll(List.of(userId), type, active);
+    }
+
+    // Reserva un rango consecutivo de versiones con un único bloqueo sobre la cabecera
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAll(Collection<Long> userIds, UserStatusChange.Type type, Boolean active) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        // El bloqueo sobre la cabecera se mantiene hasta el commit, así una versión menor nunca se confirma después de una mayor
+        UserChangeLogHead head = headRepository.lockHead()
+                .orElseGet(() -> headRepository.saveAndFlush(new UserChangeLogHead(UserChangeLogHead.ID, 0L, 0L)));
+        long version = head.getVersion();
+        Instant now = Instant.now();
+        List<UserStatusChange> changes = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            changes.add(new UserStatusChange(++version, userId, type, active, now));
+        }
+        head.setVersion(version);
+        changeRepository.saveAll(changes);
+    }
+
+    public DeferredResult<UserChangeBatchDTO> poll(long since, Integer limit, Long waitSeconds) {
+        int batchSize = limit == null ? DEFAULT_BATCH_SIZE : Math.clamp(limit, 1, MAX_BATCH_SIZE);
+        long waitMillis = waitSeconds == null ? maxWait.toMillis()
+                : Math.clamp(Duration.ofSeconds(Math.max(0, waitSeconds)).toMillis(), 0, maxWait.toMillis());
+
+        DeferredResult<UserChangeBatchDTO> result = new DeferredResult<>(waitMillis);
+        UserChangeBatchDTO batch = readBatch(since, batchSize);
+        if (!batch.getChanges().isEmpty() || batch.isReset() || waitMillis == 0) {
+            result.setResult(batch);
+            return result;
+        }
+
+        Waiter waiter = new Waiter(since, batchSize, result);
+        result.onTimeout(() -> result.setResult(batch));
+        result.onCompletion(() -> waiters.remove(waiter));
+        waiters.add(waiter);
+        return result;
+    }
+
+    // Una sola lectura de la cabecera por intervalo y por instancia, y sólo si hay consultas en espera.
+    // Así también se detectan cambios confirmados por otras instancias.
+    @Scheduled(fixedDelayString = "${usuarios.changes.wake-interval:PT0.5S}")
+    public void wakeWaiters() {
+        if (waiters.isEmpty()) {
+            return;
+        }
+        long current = headRepository.findCurrentVersion().orElse(0L);
+        for (Waiter waiter : waiters) {
+            if (waiter.since() < current && !waiter.result().isSetOrExpired()) {
+                waiter.result().setResult(readBatch(waiter.since(), waiter.limit()));
+            }
+        }
+    }
+
+    @Scheduled(initialDelayString = "${usuarios.changes.maintenance-interval:PT10M}",
+            fixedDelayString = "${usuarios.changes.maintenance-interval:PT10M}")
+    @Transactional
+    public void compact() {
+        Instant now = Instant.now();
+        changeRepository.findMaxVersionChangedBefore(now.minus(retention)).ifPresent(purgeUpTo -> {
+            // Primero se avanza la marca, así quien consulte desde una versión purgada recibe reset
+            headRepository.advancePurgedVersion(purgeUpTo);
+            changeRepository.deleteUpToVersion(purgeUpTo);
+        });
+        changeRepository.deleteSupersededBefore(now.minus(compactAfter));
+    }
+
+    // Lectura barata de la cabecera para saber si hay cambios nuevos sin consultar el registro
+    public long currentVersion() {
+        return headRepository.findCurrentVersion().orElse(0L);
+    }
+
+    // Lectura inmediata, sin espera, para consumidores dentro de este mismo servicio
+    public UserChangeBatchDTO changesAfter(long since, int limit) {
+        return readBatch(since, Math.clamp(limit, 1, MAX_BATCH_SIZE));
+    }
+
+    private UserChangeBatchDTO readBatch(long since, int limit) {
+        long purgedVersion = headRepository.findPurgedVersion().orElse(0L);
+        List<UserStatusChangeDTO> changes = changeRepository.findChangesAfter(since, Limit.of(limit));
+        long nextSince = changes.isEmpty() ? since : changes.get(changes.size() - 1).getVersion();
+        return new UserChangeBatchDTO(changes, nextSince, since < purgedVersion);
+    }
+}
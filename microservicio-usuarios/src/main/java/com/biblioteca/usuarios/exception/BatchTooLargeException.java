@@ -0,0 +1,7 @@
+package com.biblioteca.usuarios.exception;
+
+public class BatchTooLargeException extends RuntimeException {
+    public BatchTooLargeException(int size, int max) {
+        super("Se pidieron " + size + " ids y el máximo por consulta es " + max);
+    }
+}
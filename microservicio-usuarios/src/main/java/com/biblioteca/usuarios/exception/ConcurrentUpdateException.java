@@ -0,0 +1,7 @@
+package com.biblioteca.usuarios.exception;
+
+public class ConcurrentUpdateException extends RuntimeException {
+    public ConcurrentUpdateException(Long id) {
+        super("El usuario con id " + id + " fue modificado por otra operación, intente nuevamente");
+    }
+}
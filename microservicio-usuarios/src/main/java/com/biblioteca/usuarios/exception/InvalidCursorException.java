@@ -0,0 +1,7 @@
+package com.biblioteca.usuarios.exception;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String cursor) {
+        super("El cursor de paginación no es válido: " + cursor);
+    }
+}
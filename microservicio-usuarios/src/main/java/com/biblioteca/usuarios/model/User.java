@@ -6,9 +6,18 @@ import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.util.Locale;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_email_domain_id", columnList = "email_domain, id")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -27,6 +36,29 @@ public class User {
     @Column(unique = true, nullable = false)
     private String email;
 
+    // Dominio del email en minúsculas, derivado al guardar, para filtrar por dominio con un índice
+    @Column(name = "email_domain")
+    private String emailDomain;
+
     @Column(nullable = false)
     private Boolean active = true;
+
+    // Bloqueo optimista: una edición concurrente sobre la misma fila falla en lugar de pisarse
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
+    @PrePersist
+    @PreUpdate
+    void deriveEmailDomain() {
+        emailDomain = domainOf(email);
+    }
+
+    public static String domainOf(String email) {
+        if (email == null) {
+            return null;
+        }
+        return email.substring(email.lastIndexOf('@') + 1).toLowerCase(Locale.ROOT);
+    }
 }
\ No newline at end of file
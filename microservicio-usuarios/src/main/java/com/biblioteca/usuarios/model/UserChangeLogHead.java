@@ -0,0 +1,26 @@
+package com.biblioteca.usuarios.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Fila única con la última versión asignada y hasta qué versión se purgó el registro.
+// Se bloquea al asignar versiones, de modo que el orden de versiones coincide con el de commit.
+@Entity
+@Table(name = "user_change_log_head")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserChangeLogHead {
+    public static final int ID = 1;
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(name = "purged_version", nullable = false)
+    private Long purgedVersion;
+}
@@ -0,0 +1,54 @@
+package com.biblioteca.usuarios.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+// Entrada del registro de cambios de estado: la versión es única, creciente y sigue el orden de commit
+@Entity
+@Table(name = "user_status_changes", indexes = {
+        @Index(name = "idx_user_status_changes_changed_at", columnList = "changed_at"),
+        @Index(name = "idx_user_status_changes_user_version", columnList = "user_id, version")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStatusChange implements Persistable<Long> {
+    @Id
+    private Long version;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+
+    // Estado resultante; null cuando el usuario fue eliminado
+    private Boolean active;
+
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+
+    @Override
+    public Long getId() {
+        return version;
+    }
+
+    // Las entradas sólo se insertan: sin esto save() haría un SELECT por fila para decidir entre persist y merge
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    public enum Type {
+        CREATED,
+        ACTIVATED,
+        DEACTIVATED,
+        DELETED
+    }
+}
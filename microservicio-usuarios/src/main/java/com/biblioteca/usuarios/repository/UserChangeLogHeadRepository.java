@@ -0,0 +1,31 @@
+package com.biblioteca.usuarios.repository;
+
+import com.biblioteca.usuarios.model.UserChangeLogHead;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface UserChangeLogHeadRepository extends JpaRepository<UserChangeLogHead, Integer> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM UserChangeLogHead h WHERE h.id = " + UserChangeLogHead.ID)
+    Optional<UserChangeLogHead> lockHead();
+
+    @Query("SELECT h.version FROM UserChangeLogHead h WHERE h.id = " + UserChangeLogHead.ID)
+    Optional<Long> findCurrentVersion();
+
+    @Query("SELECT h.purgedVersion FROM UserChangeLogHead h WHERE h.id = " + UserChangeLogHead.ID)
+    Optional<Long> findPurgedVersion();
+
+    @Modifying
+    @Query("UPDATE UserChangeLogHead h SET h.purgedVersion = :version " +
+            "WHERE h.id = " + UserChangeLogHead.ID + " AND h.purgedVersion < :version")
+    int advancePurgedVersion(@Param("version") long version);
+}
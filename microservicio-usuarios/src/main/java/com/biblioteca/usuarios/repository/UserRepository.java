@@ -1,10 +1,26 @@
 package com.biblioteca.usuarios.repository;
 
+import com.biblioteca.usuarios.dto.UserResponseDTO;
+import com.biblioteca.usuarios.dto.UserStatusDTO;
 import com.biblioteca.usuarios.model.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -12,4 +28,95 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
 
     boolean existsByEmail(String email);
-}
\ No newline at end of file
+
+    // Proyecciones para lecturas: construyen el DTO desde la consulta sin cargar entidades administradas.
+    // Las lecturas por id van a la caché de consultas, que se invalida sola con cualquier escritura sobre users
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("SELECT new com.biblioteca.usuarios.dto.UserResponseDTO(u.id, u.fullName, u.email, u.active) " +
+            "FROM User u WHERE u.id = :id")
+    Optional<UserResponseDTO> findResponseById(@Param("id") Long id);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("SELECT new com.biblioteca.usuarios.dto.UserStatusDTO(u.id, u.fullName, u.active) " +
+            "FROM User u WHERE u.id = :id")
+    Optional<UserStatusDTO> findStatusById(@Param("id") Long id);
+
+    @Query("SELECT new com.biblioteca.usuarios.dto.UserStatusDTO(u.id, u.fullName, u.active) " +
+            "FROM User u WHERE u.id IN :ids")
+    List<UserStatusDTO> findStatusByIdIn(@Param("ids") Collection<Long> ids);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("SELECT u.active FROM User u WHERE u.id = :id")
+    Optional<Boolean> findActiveById(@Param("id") Long id);
+
+    // Paginación por keyset sobre el id: cada página cuesta lo mismo sin importar su profundidad.
+    // El filtro de actividad va como literal para que PostgreSQL pueda usar los índices parciales sobre active
+    @Query("SELECT new com.biblioteca.usuarios.dto.UserResponseDTO(u.id, u.fullName, u.email, u.active) " +
+            "FROM User u WHERE u.id > :id ORDER BY u.id")
+    List<UserResponseDTO> findByIdGreaterThanOrderByIdAsc(@Param("id") Long id, Limit limit);
+
+    @Query("SELECT new com.biblioteca.usuarios.dto.UserResponseDTO(u.id, u.fullName, u.email, u.active) " +
+            "FROM User u WHERE u.active = true AND u.id > :id ORDER BY u.id")
+    List<UserResponseDTO> findActiveByIdGreaterThanOrderByIdAsc(@Param("id") Long id, Limit limit);
+
+    @Query("SELECT new com.biblioteca.usuarios.dto.UserResponseDTO(u.id, u.fullName, u.email, u.active) " +
+            "FROM User u WHERE u.active = false AND u.id > :id ORDER BY u.id")
+    List<UserResponseDTO> findInactiveByIdGreaterThanOrderByIdAsc(@Param("id") Long id, Limit limit);
+
+    // Ordenar también por dominio (constante en la consulta) permite recorrer idx_users_email_domain_id ya ordenado
+    @Query("SELECT new com.biblioteca.usuarios.dto.UserResponseDTO(u.id, u.fullName, u.email, u.active) " +
+            "FROM User u WHERE u.emailDomain = :domain AND u.id > :id ORDER BY u.emailDomain, u.id")
+    List<UserResponseDTO> findByEmailDomainAndIdGreaterThanOrderByIdAsc(@Param("domain") String domain, @Param("id") Long id, Limit limit);
+
+    @Query("SELECT new com.biblioteca.usuarios.dto.UserResponseDTO(u.id, u.fullName, u.email, u.active) " +
+            "FROM User u WHERE u.emailDomain = :domain AND u.active = :active AND u.id > :id ORDER BY u.emailDomain, u.id")
+    List<UserResponseDTO> findByEmailDomainAndActiveAndIdGreaterThanOrderByIdAsc(@Param("domain") String domain, @Param("active") Boolean active,
+                                                                                 @Param("id") Long id, Limit limit);
+
+    // Activación/desactivación masiva por lotes: se bloquean sólo las filas del lote que cambian de estado,
+    // en orden de id para que dos lotes concurrentes no se interbloqueen, y se actualizan con una sola sentencia
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids AND u.active <> :active ORDER BY u.id")
+    List<Long> lockIdsToSetActive(@Param("ids") Collection<Long> ids, @Param("active") Boolean active);
+
+    @Modifying
+    @Query("UPDATE User u SET u.active = :active, u.version = u.version + 1 WHERE u.id IN :ids")
+    int updateActiveByIdIn(@Param("ids") Collection<Long> ids, @Param("active") Boolean active);
+
+    @Query("SELECT u.id FROM User u WHERE u.emailDomain = :domain AND u.active = :active AND u.id > :id " +
+            "ORDER BY u.emailDomain, u.id")
+    List<Long> findIdsByEmailDomainAndActiveAfter(@Param("domain") String domain, @Param("active") Boolean active,
+                                                  @Param("id") Long id, Limit limit);
+
+    // Filas creadas antes de que existiera la columna de dominio, recorridas por keyset sobre el id
+    @Query("SELECT u.id AS id, u.email AS email FROM User u WHERE u.emailDomain IS NULL AND u.id > :id ORDER BY u.id")
+    List<IdEmail> findWithoutEmailDomainAfter(@Param("id") Long id, Limit limit);
+
+    // Un UPDATE por tramo de ids. Sólo toca emails con una única '@', donde la primera coincide con la última;
+    // los que tienen más de una (parte local entre comillas) se completan con setEmailDomain y User.domainOf
+    @Modifying
+    @Query("UPDATE User u SET u.emailDomain = LOWER(SUBSTRING(u.email, LOCATE('@', u.email) + 1)) " +
+            "WHERE u.emailDomain IS NULL AND u.id > :after AND u.id <= :upTo " +
+            "AND LOCATE('@', u.email, LOCATE('@', u.email) + 1) = 0")
+    int backfillSingleAtEmailDomains(@Param("after") Long after, @Param("upTo") Long upTo);
+
+    @Modifying
+    @Query("UPDATE User u SET u.emailDomain = :domain WHERE u.id = :id")
+    int setEmailDomain(@Param("id") Long id, @Param("domain") String domain);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT u.id AS id, u.active AS active FROM User u")
+    Stream<ActiveFlag> streamActiveFlags();
+
+    interface IdEmail {
+        Long getId();
+
+        String getEmail();
+    }
+
+    interface ActiveFlag {
+        Long getId();
+
+        Boolean getActive();
+    }
+}
@@ -0,0 +1,35 @@
+package com.biblioteca.usuarios.repository;
+
+import com.biblioteca.usuarios.dto.UserStatusChangeDTO;
+import com.biblioteca.usuarios.model.UserStatusChange;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UserStatusChangeRepository extends JpaRepository<UserStatusChange, Long> {
+
+    @Query("SELECT new com.biblioteca.usuarios.dto.UserStatusChangeDTO(c.version, c.userId, c.type, c.active, c.changedAt) " +
+            "FROM UserStatusChange c WHERE c.version > :since ORDER BY c.version")
+    List<UserStatusChangeDTO> findChangesAfter(@Param("since") long since, Limit limit);
+
+    @Query("SELECT MAX(c.version) FROM UserStatusChange c WHERE c.changedAt < :cutoff")
+    Optional<Long> findMaxVersionChangedBefore(@Param("cutoff") Instant cutoff);
+
+    @Modifying
+    @Query("DELETE FROM UserStatusChange c WHERE c.version <= :version")
+    int deleteUpToVersion(@Param("version") long version);
+
+    // Compactación: de los cambios anteriores al corte sólo queda el último de cada usuario
+    @Modifying
+    @Query("DELETE FROM UserStatusChange c WHERE c.changedAt < :cutoff AND EXISTS " +
+            "(SELECT 1 FROM UserStatusChange n WHERE n.userId = c.userId AND n.version > c.version)")
+    int deleteSupersededBefore(@Param("cutoff") Instant cutoff);
+}
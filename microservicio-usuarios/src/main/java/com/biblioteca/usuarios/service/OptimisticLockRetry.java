@@ -0,0 +1,69 @@
+package com.biblioteca.usuarios.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+// Reintenta una operación en una transacción nueva cuando pierde la carrera del bloqueo optimista.
+// La espera crece exponencialmente con jitter para que los escritores en conflicto no vuelvan a chocar.
+@Component
+public class OptimisticLockRetry {
+    private static final Logger log = LoggerFactory.getLogger(OptimisticLockRetry.class);
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public OptimisticLockRetry(PlatformTransactionManager transactionManager,
+                               @Value("${usuarios.optimistic-retry.max-attempts:3}") int maxAttempts,
+                               @Value("${usuarios.optimistic-retry.initial-backoff:20ms}") Duration initialBackoff,
+                               @Value("${usuarios.optimistic-retry.max-backoff:500ms}") Duration maxBackoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("usuarios.optimistic-retry.max-attempts debe ser al menos 1");
+        }
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Cada intento necesita su propia transacción: la que falló queda marcada para rollback
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+    }
+
+    // onExhausted construye la excepción que se lanza cuando se agotan los intentos
+    public <T> T execute(Supplier<T> action, Supplier<? extends RuntimeException> onExhausted) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException ex) {
+                if (attempt >= maxAttempts) {
+                    log.warn("Conflicto de versión tras {} intentos: {}", attempt, ex.getMessage());
+                    throw onExhausted.get();
+                }
+                backoff(attempt, onExhausted);
+            }
+        }
+    }
+
+    private void backoff(int attempt, Supplier<? extends RuntimeException> onExhausted) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw onExhausted.get();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.biblioteca.usuarios.service;
+
+import com.biblioteca.usuarios.cache.ActiveUserIndex;
+import com.biblioteca.usuarios.dto.BulkStatusRequestDTO;
+import com.biblioteca.usuarios.dto.BulkStatusResultDTO;
+import com.biblioteca.usuarios.events.UserChangeLog;
+import com.biblioteca.usuarios.model.User;
+import com.biblioteca.usuarios.model.UserStatusChange;
+import com.biblioteca.usuarios.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+// Activación/desactivación masiva. Cada lote corre en su propia transacción con un único UPDATE,
+// así los bloqueos se limitan a las filas del lote y se liberan al confirmarlo.
+// No debe invocarse dentro de una transacción: los lotes se unirían a ella.
+@Service
+@Slf4j
+public class UserBulkStatusService {
+    private final UserRepository userRepository;
+    private final UserChangeLog userChangeLog;
+    private final ActiveUserIndex activeUserIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public UserBulkStatusService(UserRepository userRepository,
+                                 UserChangeLog userChangeLog,
+                                 ActiveUserIndex activeUserIndex,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${usuarios.bulk.chunk-size:1000}") int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("usuarios.bulk.chunk-size debe ser al menos 1");
+        }
+        this.userRepository = userRepository;
+        this.userChangeLog = userChangeLog;
+        this.activeUserIndex = activeUserIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    public BulkStatusResultDTO setActive(BulkStatusRequestDTO request, boolean active) {
+        BulkStatusResultDTO result = request.getIds() != null && !request.getIds().isEmpty()
+                ? setActiveByIds(request.getIds(), active)
+                : setActiveByEmailDomain(User.domainOf(request.getEmailDomain().strip()), active);
+        log.info("{} masiva: {} usuarios en {} lotes", active ? "Activación" : "Desactivación",
+                result.getUpdated(), result.getChunks());
+        return result;
+    }
+
+    private BulkStatusResultDTO setActiveByIds(List<Long> ids, boolean active) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        int updated = 0;
+        int chunks = 0;
+        for (int from = 0; from < distinctIds.size(); from += chunkSize) {
+            updated += applyChunk(distinctIds.subList(from, Math.min(from + chunkSize, distinctIds.size())), active);
+            chunks++;
+        }
+        return new BulkStatusResultDTO(updated, chunks);
+    }
+
+    // Recorre el dominio por keyset sobre el id: cada lote parte del último id visto, sin OFFSET
+    private BulkStatusResultDTO setActiveByEmailDomain(String domain, boolean active) {
+        int updated = 0;
+        int chunks = 0;
+        long afterId = 0L;
+        while (true) {
+            List<Long> ids = userRepository.findIdsByEmailDomainAndActiveAfter(domain, !active, afterId, Limit.of(chunkSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            updated += applyChunk(ids, active);
+            chunks++;
+            if (ids.size() < chunkSize) {
+                break;
+            }
+            afterId = ids.get(ids.size() - 1);
+        }
+        return new BulkStatusResultDTO(updated, chunks);
+    }
+
+    private int applyChunk(List<Long> ids, boolean active) {
+        Integer updated = transactionTemplate.execute(status -> {
+            // Se vuelve a comprobar el estado bajo bloqueo: sólo cuentan y se registran los que cambian de verdad
+            List<Long> changed = userRepository.lockIdsToSetActive(ids, active);
+            if (changed.isEmpty()) {
+                return 0;
+            }
+            int rows = userRepository.updateActiveByIdIn(changed, active);
+            userChangeLog.recordAll(changed, active ? UserStatusChange.Type.ACTIVATED : UserStatusChange.Type.DEACTIVATED, active);
+            activeUserIndex.putAll(changed, active);
+            return rows;
+        });
+        return updated == null ? 0 : updated;
+    }
+}
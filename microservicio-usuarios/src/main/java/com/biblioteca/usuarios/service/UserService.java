@@ -1,26 +1,51 @@
 package com.biblioteca.usuarios.service;
 
+import com.biblioteca.usuarios.cache.ActiveUserIndex;
+import com.biblioteca.usuarios.cache.UserStatusBitmap;
+import com.biblioteca.usuarios.dto.UserPageDTO;
 import com.biblioteca.usuarios.dto.UserRequestDTO;
 import com.biblioteca.usuarios.dto.UserResponseDTO;
+import com.biblioteca.usuarios.dto.UserStatusBatchDTO;
 import com.biblioteca.usuarios.dto.UserStatusDTO;
+import com.biblioteca.usuarios.events.UserChangeLog;
+import com.biblioteca.usuarios.exception.BatchTooLargeException;
+import com.biblioteca.usuarios.exception.ConcurrentUpdateException;
 import com.biblioteca.usuarios.exception.DuplicateEmailException;
+import com.biblioteca.usuarios.exception.InvalidCursorException;
 import com.biblioteca.usuarios.exception.UserNotActiveException;
 import com.biblioteca.usuarios.exception.UserNotFoundException;
 import com.biblioteca.usuarios.mapper.UserMapper;
 import com.biblioteca.usuarios.model.User;
+import com.biblioteca.usuarios.model.UserStatusChange;
 import com.biblioteca.usuarios.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class UserService {
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    // Tope de ids por consulta en lote: una sola sentencia IN, lejos del límite de parámetros de PostgreSQL
+    public static final int MAX_STATUS_BATCH = 5000;
+
     private final UserRepository userRepository;
     private final UserMapper userMapper;
+    private final OptimisticLockRetry optimisticLockRetry;
+    private final ActiveUserIndex activeUserIndex;
+    private final UserChangeLog userChangeLog;
 
     @Transactional
     public UserResponseDTO createUser(UserRequestDTO requestDTO) {
@@ -30,65 +55,79 @@ public class UserService {
 
         User user = userMapper.toEntity(requestDTO);
         User savedUser = userRepository.save(user);
+        userChangeLog.record(savedUser.getId(), UserStatusChange.Type.CREATED, savedUser.getActive());
+        activeUserIndex.put(savedUser.getId(), Boolean.TRUE.equals(savedUser.getActive()));
         return userMapper.toResponseDTO(savedUser);
     }
 
     @Transactional(readOnly = true)
-    public List<UserResponseDTO> getAllUsers() {
-        return userRepository.findAll()
-                .stream()
-                .map(userMapper::toResponseDTO)
-                .toList();
+    public UserPageDTO getAllUsers(String after, Integer limit, Boolean active, String emailDomain) {
+        long afterId = decodeCursor(after);
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        // Se pide un registro extra para saber si existe una página siguiente
+        Limit fetchLimit = Limit.of(pageSize + 1);
+        String domain = emailDomain == null || emailDomain.isBlank() ? null : User.domainOf(emailDomain.strip());
+
+        List<UserResponseDTO> users;
+        if (domain != null && active != null) {
+            users = userRepository.findByEmailDomainAndActiveAndIdGreaterThanOrderByIdAsc(domain, active, afterId, fetchLimit);
+        } else if (domain != null) {
+            users = userRepository.findByEmailDomainAndIdGreaterThanOrderByIdAsc(domain, afterId, fetchLimit);
+        } else if (active != null) {
+            users = active
+                    ? userRepository.findActiveByIdGreaterThanOrderByIdAsc(afterId, fetchLimit)
+                    : userRepository.findInactiveByIdGreaterThanOrderByIdAsc(afterId, fetchLimit);
+        } else {
+            users = userRepository.findByIdGreaterThanOrderByIdAsc(afterId, fetchLimit);
+        }
+
+        boolean hasNext = users.size() > pageSize;
+        List<UserResponseDTO> items = hasNext ? users.subList(0, pageSize) : users;
+        String nextCursor = hasNext ? encodeCursor(items.get(items.size() - 1).getId()) : null;
+        return new UserPageDTO(items, nextCursor);
     }
 
     @Transactional(readOnly = true)
     public UserResponseDTO getUserById(Long id) {
-        User user = userRepository.findById(id)
+        return userRepository.findResponseById(id)
                 .orElseThrow(() -> new UserNotFoundException(id));
-        return userMapper.toResponseDTO(user);
     }
 
     @Transactional(readOnly = true)
     public UserStatusDTO getUserStatus(Long id) {
-        User user = userRepository.findById(id)
+        return userRepository.findStatusById(id)
                 .orElseThrow(() -> new UserNotFoundException(id));
-        return userMapper.toStatusDTO(user);
     }
 
-    @Transactional
-    public UserResponseDTO updateUser(Long id, UserRequestDTO requestDTO) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new UserNotFoundException(id));
-
-        // Verificar si el email cambió y si ya existe
-        if (!user.getEmail().equals(requestDTO.getEmail()) &&
-                userRepository.existsByEmail(requestDTO.getEmail())) {
-            throw new DuplicateEmailException(requestDTO.getEmail());
+    @Transactional(readOnly = true)
+    public UserStatusBatchDTO getUsersStatus(Collection<Long> ids) {
+        Set<Long> requestedIds = new LinkedHashSet<>(ids);
+        if (requestedIds.size() > MAX_STATUS_BATCH) {
+            throw new BatchTooLargeException(requestedIds.size(), MAX_STATUS_BATCH);
         }
 
-        user.setFullName(requestDTO.getFullName());
-        user.setEmail(requestDTO.getEmail());
+        Map<Long, UserStatusDTO> statuses = new LinkedHashMap<>();
+        userRepository.findStatusByIdIn(requestedIds)
+                .forEach(status -> statuses.put(status.getId(), status));
 
-        User updatedUser = userRepository.save(user);
-        return userMapper.toResponseDTO(updatedUser);
+        List<Long> notFound = requestedIds.stream()
+                .filter(id -> !statuses.containsKey(id))
+                .toList();
+        return new UserStatusBatchDTO(statuses, notFound);
     }
 
-    @Transactional
-    public void deactivateUser(Long id) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new UserNotFoundException(id));
+    public UserResponseDTO updateUser(Long id, UserRequestDTO requestDTO) {
+        // Cada intento relee el usuario, así que ante un conflicto de versión los cambios se reaplican sobre el estado vigente
+        return optimisticLockRetry.execute(() -> applyUpdate(id, requestDTO),
+                () -> new ConcurrentUpdateException(id));
+    }
 
-        user.setActive(false);
-        userRepository.save(user);
+    public void deactivateUser(Long id) {
+        setActive(id, false);
     }
 
-    @Transactional
     public void activateUser(Long id) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new UserNotFoundException(id));
-
-        user.setActive(true);
-        userRepository.save(user);
+        setActive(id, true);
     }
 
     @Transactional
@@ -97,15 +136,79 @@ public class UserService {
             throw new UserNotFoundException(id);
         }
         userRepository.deleteById(id);
+        userChangeLog.record(id, UserStatusChange.Type.DELETED, null);
+        activeUserIndex.remove(id);
     }
 
-    @Transactional(readOnly = true)
     public void validateUserIsActive(Long id) {
+        int status = getActiveStatus(id);
+        if (status == UserStatusBitmap.UNKNOWN) {
+            throw new UserNotFoundException(id);
+        }
+        if (status == UserStatusBitmap.INACTIVE) {
+            throw new UserNotActiveException(id);
+        }
+    }
+
+    // Se responde desde el bitmap en memoria; sólo un id que no figura en él va a la base.
+    // Devuelve UserStatusBitmap.UNKNOWN si el usuario no existe.
+    public int getActiveStatus(Long id) {
+        int status = activeUserIndex.status(id);
+        if (status != UserStatusBitmap.UNKNOWN) {
+            return status;
+        }
+        return userRepository.findActiveById(id)
+                .map(active -> Boolean.FALSE.equals(active) ? UserStatusBitmap.INACTIVE : UserStatusBitmap.ACTIVE)
+                .orElse(UserStatusBitmap.UNKNOWN);
+    }
+
+    private UserResponseDTO applyUpdate(Long id, UserRequestDTO requestDTO) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new UserNotFoundException(id));
 
-        if (Boolean.FALSE.equals(user.getActive())) {
-            throw new UserNotActiveException(id);
+        // Verificar si el email cambió y si ya existe
+        if (!user.getEmail().equals(requestDTO.getEmail()) &&
+                userRepository.existsByEmail(requestDTO.getEmail())) {
+            throw new DuplicateEmailException(requestDTO.getEmail());
+        }
+
+        user.setFullName(requestDTO.getFullName());
+        user.setEmail(requestDTO.getEmail());
+
+        User updatedUser = userRepository.saveAndFlush(user);
+        return userMapper.toResponseDTO(updatedUser);
+    }
+
+    private void setActive(Long id, boolean active) {
+        optimisticLockRetry.execute(() -> {
+            User user = userRepository.findById(id)
+                    .orElseThrow(() -> new UserNotFoundException(id));
+
+            boolean changed = !Boolean.valueOf(active).equals(user.getActive());
+            user.setActive(active);
+            User savedUser = userRepository.saveAndFlush(user);
+            if (changed) {
+                userChangeLog.record(id, active ? UserStatusChange.Type.ACTIVATED : UserStatusChange.Type.DEACTIVATED, active);
+            }
+            return savedUser;
+        }, () -> new ConcurrentUpdateException(id));
+        // El reintento corre en su propia transacción, que ya está confirmada al volver
+        activeUserIndex.put(id, active);
+    }
+
+    private static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidCursorException(cursor);
         }
     }
 }
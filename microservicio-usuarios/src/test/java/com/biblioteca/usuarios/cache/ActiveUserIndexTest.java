@@ -0,0 +1,157 @@
+package com.biblioteca.usuarios.cache;
+
+import com.biblioteca.usuarios.dto.UserChangeBatchDTO;
+import com.biblioteca.usuarios.dto.UserStatusChangeDTO;
+import com.biblioteca.usuarios.events.UserChangeLog;
+import com.biblioteca.usuarios.model.UserStatusChange;
+import com.biblioteca.usuarios.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ActiveUserIndexTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserChangeLog userChangeLog;
+
+    @InjectMocks
+    private ActiveUserIndex index;
+
+    @Test
+    void whenNotLoaded_thenEveryIdIsUnknown() {
+        index.put(1L, true);
+
+        assertThat(index.status(1L)).isEqualTo(UserStatusBitmap.UNKNOWN);
+    }
+
+    @Test
+    void whenRebuilt_thenStatusComesFromDatabaseRows() {
+        when(userRepository.streamActiveFlags()).thenReturn(Stream.of(flag(1L, true), flag(2L, false)));
+
+        index.rebuild();
+
+        assertThat(index.status(1L)).isEqualTo(UserStatusBitmap.ACTIVE);
+        assertThat(index.status(2L)).isEqualTo(UserStatusBitmap.INACTIVE);
+        assertThat(index.status(3L)).isEqualTo(UserStatusBitmap.UNKNOWN);
+    }
+
+    @Test
+    void whenUserChangesDuringRebuild_thenTheChangeIsKept() {
+        when(userRepository.streamActiveFlags()).thenReturn(Stream.of(flag(1L, true), flag(2L, true)));
+        index.rebuild();
+        // La lectura de la recarga ve a 1 activo y a 2 todavía existente, pero ambos cambian mientras tanto
+        when(userRepository.streamActiveFlags()).thenReturn(Stream.of(flag(1L, true), flag(2L, true))
+                .peek(row -> {
+                    if (row.getId() == 2L) {
+                        index.put(1L, false);
+                        index.remove(2L);
+                    }
+                }));
+
+        index.rebuild();
+
+        assertThat(index.status(1L)).isEqualTo(UserStatusBitmap.INACTIVE);
+        assertThat(index.status(2L)).isEqualTo(UserStatusBitmap.UNKNOWN);
+    }
+
+    @Test
+    void whenChangedInsideTransaction_thenAppliedOnlyAfterCommit() {
+        when(userRepository.streamActiveFlags()).thenReturn(Stream.of(flag(1L, true)));
+        index.rebuild();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.put(1L, false);
+            assertThat(index.status(1L)).isEqualTo(UserStatusBitmap.ACTIVE);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(index.status(1L)).isEqualTo(UserStatusBitmap.INACTIVE);
+    }
+
+    @Test
+    void whenOtherInstanceChangesUsers_thenCatchUpAppliesTheLog() {
+        when(userRepository.streamActiveFlags()).thenReturn(Stream.of(flag(1L, true), flag(2L, true)));
+        when(userChangeLog.currentVersion()).thenReturn(10L);
+        index.rebuild();
+        when(userChangeLog.currentVersion()).thenReturn(12L);
+        when(userChangeLog.changesAfter(10L, UserChangeLog.MAX_BATCH_SIZE)).thenReturn(new UserChangeBatchDTO(List.of(
+                change(11L, 1L, UserStatusChange.Type.DEACTIVATED, false),
+                change(12L, 2L, UserStatusChange.Type.DELETED, null)), 12L, false));
+
+        index.catchUp();
+
+        assertThat(index.status(1L)).isEqualTo(UserStatusBitmap.INACTIVE);
+        assertThat(index.status(2L)).isEqualTo(UserStatusBitmap.UNKNOWN);
+        // Con la cabecera sin avanzar no se vuelve a leer el registro
+        index.catchUp();
+        verify(userChangeLog, times(1)).changesAfter(anyLong(), anyInt());
+    }
+
+    @Test
+    void whenHeadHasNotAdvanced_thenCatchUpOnlyReadsTheHead() {
+        when(userRepository.streamActiveFlags()).thenReturn(Stream.of(flag(1L, true)));
+        when(userChangeLog.currentVersion()).thenReturn(5L);
+        index.rebuild();
+
+        index.catchUp();
+
+        verify(userChangeLog, never()).changesAfter(anyLong(), anyInt());
+        assertThat(index.status(1L)).isEqualTo(UserStatusBitmap.ACTIVE);
+    }
+
+    @Test
+    void whenLogWasPurgedPastAppliedVersion_thenCatchUpReloadsEverything() {
+        when(userRepository.streamActiveFlags()).thenReturn(Stream.of(flag(1L, true)));
+        index.rebuild();
+        when(userChangeLog.currentVersion()).thenReturn(50L);
+        when(userChangeLog.changesAfter(0L, UserChangeLog.MAX_BATCH_SIZE))
+                .thenReturn(new UserChangeBatchDTO(List.of(), 0L, true));
+        when(userRepository.streamActiveFlags()).thenReturn(Stream.of(flag(1L, false)));
+
+        index.catchUp();
+
+        assertThat(index.status(1L)).isEqualTo(UserStatusBitmap.INACTIVE);
+    }
+
+    private static UserStatusChangeDTO change(long version, Long userId, UserStatusChange.Type type, Boolean active) {
+        return new UserStatusChangeDTO(version, userId, type, active, Instant.now());
+    }
+
+    private static UserRepository.ActiveFlag flag(Long id, boolean active) {
+        return new UserRepository.ActiveFlag() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Boolean getActive() {
+                return active;
+            }
+        };
+    }
+}
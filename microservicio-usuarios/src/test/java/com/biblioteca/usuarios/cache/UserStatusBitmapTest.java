@@ -0,0 +1,53 @@
+package com.biblioteca.usuarios.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserStatusBitmapTest {
+
+    private final UserStatusBitmap bitmap = new UserStatusBitmap();
+
+    @Test
+    void whenIdWasNeverSet_thenStatusIsUnknown() {
+        assertThat(bitmap.status(1L)).isEqualTo(UserStatusBitmap.UNKNOWN);
+    }
+
+    @Test
+    void whenFlagChanges_thenStatusFollowsIt() {
+        bitmap.set(42L, true);
+        assertThat(bitmap.status(42L)).isEqualTo(UserStatusBitmap.ACTIVE);
+
+        bitmap.set(42L, false);
+        assertThat(bitmap.status(42L)).isEqualTo(UserStatusBitmap.INACTIVE);
+        assertThat(bitmap.status(43L)).isEqualTo(UserStatusBitmap.UNKNOWN);
+    }
+
+    @Test
+    void whenIdIsCleared_thenStatusIsUnknownAgain() {
+        bitmap.set(7L, true);
+        bitmap.clear(7L);
+
+        assertThat(bitmap.status(7L)).isEqualTo(UserStatusBitmap.UNKNOWN);
+    }
+
+    @Test
+    void whenIdsFallInDifferentChunks_thenTheyDoNotInterfere() {
+        bitmap.set(65_535L, true);
+        bitmap.set(65_536L, false);
+        bitmap.set(Integer.MAX_VALUE, true);
+
+        assertThat(bitmap.status(65_535L)).isEqualTo(UserStatusBitmap.ACTIVE);
+        assertThat(bitmap.status(65_536L)).isEqualTo(UserStatusBitmap.INACTIVE);
+        assertThat(bitmap.status(Integer.MAX_VALUE)).isEqualTo(UserStatusBitmap.ACTIVE);
+    }
+
+    @Test
+    void whenIdIsOutOfRange_thenItStaysUnknown() {
+        bitmap.set(-1L, true);
+        bitmap.set(Integer.MAX_VALUE + 1L, true);
+
+        assertThat(bitmap.status(-1L)).isEqualTo(UserStatusBitmap.UNKNOWN);
+        assertThat(bitmap.status(Integer.MAX_VALUE + 1L)).isEqualTo(UserStatusBitmap.UNKNOWN);
+    }
+}
@@ -0,0 +1,91 @@
+package com.biblioteca.usuarios.config;
+
+import com.biblioteca.usuarios.dto.CacheRegionStatsDTO;
+import com.biblioteca.usuarios.model.User;
+import com.biblioteca.usuarios.repository.UserRepository;
+import com.biblioteca.usuarios.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "usuarios.l2-cache.statistics=true")
+class SecondLevelCacheConfigTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private SecondLevelCacheEndpoint secondLevelCacheEndpoint;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        User user = new User();
+        user.setFullName("Juan Pérez");
+        user.setEmail("juan.perez@example.com");
+        user.setActive(true);
+        userId = userRepository.save(user).getId();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void whenFindByIdTwice_thenSecondReadIsServedFromUsersRegion() {
+        userRepository.findById(userId);
+        userRepository.findById(userId);
+
+        assertThat(statistics.getCacheRegionStatistics(SecondLevelCacheConfig.USERS_REGION).getHitCount()).isPositive();
+    }
+
+    @Test
+    void whenValidateUserIsActiveTwice_thenQueryCacheIsHit() {
+        userService.validateUserIsActive(userId);
+        userService.validateUserIsActive(userId);
+
+        assertThat(statistics.getQueryCacheHitCount()).isPositive();
+    }
+
+    @Test
+    void whenUserIsDeactivated_thenCachedReadsAreNotStale() {
+        assertThat(userService.getUserStatus(userId).getActive()).isTrue();
+
+        userService.deactivateUser(userId);
+
+        assertThat(userService.getUserStatus(userId).getActive()).isFalse();
+        assertThat(userRepository.findById(userId).get().getActive()).isFalse();
+    }
+
+    @Test
+    void whenReadEndpoint_thenReportUsersRegion() {
+        userRepository.findById(userId);
+        userRepository.findById(userId);
+
+        assertThat(secondLevelCacheEndpoint.regions())
+                .filteredOn(region -> region.getRegion().equals(SecondLevelCacheConfig.USERS_REGION))
+                .singleElement()
+                .satisfies(region -> assertThat(region.getHitCount()).isPositive());
+        assertThat(secondLevelCacheEndpoint.regions())
+                .extracting(CacheRegionStatsDTO::getRegion)
+                .contains("default-query-results-region");
+    }
+}
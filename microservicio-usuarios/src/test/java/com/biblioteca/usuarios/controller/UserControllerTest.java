@@ -1,13 +1,26 @@
 package com.biblioteca.usuarios.controller;
 
+import com.biblioteca.usuarios.cache.UserStatusBitmap;
 import com.biblioteca.usuarios.cotroller.UserController;
+import com.biblioteca.usuarios.dto.BulkStatusRequestDTO;
+import com.biblioteca.usuarios.dto.BulkStatusResultDTO;
+import com.biblioteca.usuarios.dto.UserChangeBatchDTO;
+import com.biblioteca.usuarios.dto.UserPageDTO;
 import com.biblioteca.usuarios.dto.UserRequestDTO;
 import com.biblioteca.usuarios.dto.UserResponseDTO;
+import com.biblioteca.usuarios.dto.UserStatusBatchDTO;
+import com.biblioteca.usuarios.dto.UserStatusChangeDTO;
 import com.biblioteca.usuarios.dto.UserStatusDTO;
+import com.biblioteca.usuarios.events.UserChangeLog;
+import com.biblioteca.usuarios.exception.BatchTooLargeException;
 import com.biblioteca.usuarios.exception.DuplicateEmailException;
+import com.biblioteca.usuarios.exception.InvalidCursorException;
 import com.biblioteca.usuarios.exception.UserNotFoundException;
+import com.biblioteca.usuarios.model.UserStatusChange;
+import com.biblioteca.usuarios.service.UserBulkStatusService;
 import com.biblioteca.usuarios.service.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,10 +29,15 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -36,6 +54,12 @@ class UserControllerTest {
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private UserChangeLog userChangeLog;
+
+    @MockBean
+    private UserBulkStatusService userBulkStatusService;
+
     private ObjectMapper objectMapper;
     private UserRequestDTO requestDTO;
     private UserResponseDTO responseDTO;
@@ -98,19 +122,41 @@ class UserControllerTest {
     }
 
     @Test
-    void whenGetAllUsers_thenReturnUserList() throws Exception {
+    void whenGetAllUsers_thenReturnUserPage() throws Exception {
         UserResponseDTO user2 = new UserResponseDTO(
                 2L, "María García", "maria.garcia@example.com", true
         );
-        List<UserResponseDTO> users = Arrays.asList(responseDTO, user2);
+        UserPageDTO page = new UserPageDTO(Arrays.asList(responseDTO, user2), "Mg");
 
-        when(userService.getAllUsers()).thenReturn(users);
+        when(userService.getAllUsers(null, null, null, null)).thenReturn(page);
 
         mockMvc.perform(get("/api/usuarios"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(2)))
-                .andExpect(jsonPath("$[0].fullName").value("Juan Pérez"))
-                .andExpect(jsonPath("$[1].fullName").value("María García"));
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].fullName").value("Juan Pérez"))
+                .andExpect(jsonPath("$.items[1].fullName").value("María García"))
+                .andExpect(jsonPath("$.nextCursor").value("Mg"));
+    }
+
+    @Test
+    void whenGetAllUsers_withFilters_thenPassThemToService() throws Exception {
+        when(userService.getAllUsers("MQ", 50, true, "example.com")).thenReturn(new UserPageDTO(List.of(), null));
+
+        mockMvc.perform(get("/api/usuarios")
+                        .param("after", "MQ")
+                        .param("limit", "50")
+                        .param("active", "true")
+                        .param("emailDomain", "example.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(0)));
+    }
+
+    @Test
+    void whenGetAllUsers_withInvalidCursor_thenReturnBadRequest() throws Exception {
+        when(userService.getAllUsers(eq("x"), any(), any(), any())).thenThrow(new InvalidCursorException("x"));
+
+        mockMvc.perform(get("/api/usuarios").param("after", "x"))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
@@ -143,6 +189,72 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.active").value(true));
     }
 
+    @Test
+    void whenGetChanges_thenReturnBatchAsynchronously() throws Exception {
+        DeferredResult<UserChangeBatchDTO> deferred = new DeferredResult<>();
+        deferred.setResult(new UserChangeBatchDTO(List.of(new UserStatusChangeDTO(
+                8L, 1L, UserStatusChange.Type.DEACTIVATED, false, Instant.parse("2026-01-01T00:00:00Z"))), 8L, false));
+        when(userChangeLog.poll(7L, null, 20L)).thenReturn(deferred);
+
+        MvcResult result = mockMvc.perform(get("/api/usuarios/changes")
+                        .param("since", "7")
+                        .param("waitSeconds", "20"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes[0].type").value("DEACTIVATED"))
+                .andExpect(jsonPath("$.nextSince").value(8))
+                .andExpect(jsonPath("$.reset").value(false));
+    }
+
+    @Test
+    void whenGetUsersStatusInBatch_thenReturnStatusesAndNotFound() throws Exception {
+        UserStatusBatchDTO batch = new UserStatusBatchDTO(
+                Map.of(1L, new UserStatusDTO(1L, "Juan Pérez", true)), List.of(99L));
+        when(userService.getUsersStatus(List.of(1L, 99L))).thenReturn(batch);
+
+        mockMvc.perform(post("/api/usuarios/status:batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1, 99]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.statuses.1.active").value(true))
+                .andExpect(jsonPath("$.notFound[0]").value(99));
+    }
+
+    @Test
+    void whenGetUsersStatusWithTooManyIds_thenReturnBadRequest() throws Exception {
+        when(userService.getUsersStatus(any())).thenThrow(new BatchTooLargeException(5001, 5000));
+
+        mockMvc.perform(post("/api/usuarios/status:batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenGetUserStatusAcceptingCbor_thenReturnCborStatus() throws Exception {
+        UserStatusDTO statusDTO = new UserStatusDTO(1L, "Juan Pérez", true);
+        when(userService.getUserStatus(1L)).thenReturn(statusDTO);
+
+        byte[] body = mockMvc.perform(get("/api/usuarios/1/status").accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertThat(new CBORMapper().readValue(body, UserStatusDTO.class)).isEqualTo(statusDTO);
+    }
+
+    @Test
+    void whenGetUserStatusWithoutAccept_thenFallBackToJson() throws Exception {
+        when(userService.getUserStatus(1L)).thenReturn(new UserStatusDTO(1L, "Juan Pérez", true));
+
+        mockMvc.perform(get("/api/usuarios/1/status"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
     @Test
     void whenUpdateUser_thenReturnUpdatedUser() throws Exception {
         when(userService.updateUser(eq(1L), any(UserRequestDTO.class))).thenReturn(responseDTO);
@@ -194,4 +306,48 @@ class UserControllerTest {
         verify(userService, times(1)).validateUserIsActive(1L);
     }
 
+    @Test
+    void whenBulkDeactivate_thenReturnAffectedCounts() throws Exception {
+        BulkStatusRequestDTO request = new BulkStatusRequestDTO(List.of(1L, 2L, 3L), null);
+        when(userBulkStatusService.setActive(request, false)).thenReturn(new BulkStatusResultDTO(2, 1));
+
+        mockMvc.perform(post("/api/usuarios/bulk:desactivar")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(2))
+                .andExpect(jsonPath("$.chunks").value(1));
+    }
+
+    @Test
+    void whenBulkActivate_withBothCriteria_thenReturnBadRequest() throws Exception {
+        BulkStatusRequestDTO request = new BulkStatusRequestDTO(List.of(1L), "uni.edu");
+
+        mockMvc.perform(post("/api/usuarios/bulk:activar")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(userBulkStatusService);
+    }
+
+    @Test
+    void whenHeadValidateActive_thenAnswerWithStatusOnly() throws Exception {
+        when(userService.getActiveStatus(1L)).thenReturn(UserStatusBitmap.ACTIVE);
+        when(userService.getActiveStatus(2L)).thenReturn(UserStatusBitmap.INACTIVE);
+        when(userService.getActiveStatus(99L)).thenReturn(UserStatusBitmap.UNKNOWN);
+
+        mockMvc.perform(head("/api/usuarios/1/validate-active"))
+                .andExpect(status().isNoContent())
+                .andExpect(content().string(""));
+        mockMvc.perform(head("/api/usuarios/2/validate-active"))
+                .andExpect(status().isConflict())
+                .andExpect(content().string(""));
+        mockMvc.perform(head("/api/usuarios/99/validate-active"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string(""));
+
+        verify(userService, never()).validateUserIsActive(any());
+    }
+
 }
\ No newline at end of file
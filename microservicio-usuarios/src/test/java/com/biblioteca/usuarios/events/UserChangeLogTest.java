@@ -0,0 +1,128 @@
+package com.biblioteca.usuarios.events;
+
+import com.biblioteca.usuarios.dto.UserChangeBatchDTO;
+import com.biblioteca.usuarios.dto.UserStatusChangeDTO;
+import com.biblioteca.usuarios.model.UserChangeLogHead;
+import com.biblioteca.usuarios.model.UserStatusChange;
+import com.biblioteca.usuarios.repository.UserChangeLogHeadRepository;
+import com.biblioteca.usuarios.repository.UserStatusChangeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+class UserChangeLogTest {
+
+    @Autowired
+    private UserStatusChangeRepository changeRepository;
+
+    @Autowired
+    private UserChangeLogHeadRepository headRepository;
+
+    private UserChangeLog changeLog;
+
+    @BeforeEach
+    void setUp() {
+        changeLog = new UserChangeLog(changeRepository, headRepository,
+                Duration.ofDays(7), Duration.ofHours(1), Duration.ofSeconds(30));
+    }
+
+    @Test
+    void whenChangesAreRecorded_thenPollReturnsThemInVersionOrder() {
+        changeLog.record(1L, UserStatusChange.Type.CREATED, true);
+        changeLog.record(1L, UserStatusChange.Type.DEACTIVATED, false);
+        changeLog.record(2L, UserStatusChange.Type.DELETED, null);
+
+        UserChangeBatchDTO batch = resultOf(changeLog.poll(0, null, 0L));
+
+        assertThat(batch.getChanges()).extracting(UserStatusChangeDTO::getVersion).containsExactly(1L, 2L, 3L);
+        assertThat(batch.getChanges()).extracting(UserStatusChangeDTO::getType).containsExactly(
+                UserStatusChange.Type.CREATED, UserStatusChange.Type.DEACTIVATED, UserStatusChange.Type.DELETED);
+        assertThat(batch.getNextSince()).isEqualTo(3L);
+        assertThat(batch.isReset()).isFalse();
+    }
+
+    @Test
+    void whenPollingPastLatestVersion_thenWaitUntilAChangeArrives() {
+        changeLog.record(1L, UserStatusChange.Type.CREATED, true);
+
+        DeferredResult<UserChangeBatchDTO> pending = changeLog.poll(1, 10, 30L);
+        changeLog.wakeWaiters();
+        assertThat(pending.hasResult()).isFalse();
+
+        changeLog.record(1L, UserStatusChange.Type.DEACTIVATED, false);
+        changeLog.wakeWaiters();
+
+        UserChangeBatchDTO batch = resultOf(pending);
+        assertThat(batch.getChanges()).extracting(UserStatusChangeDTO::getUserId).containsExactly(1L);
+        assertThat(batch.getNextSince()).isEqualTo(2L);
+    }
+
+    @Test
+    void whenRecordingSeveralUsersAtOnce_thenAllocateConsecutiveVersions() {
+        changeLog.record(7L, UserStatusChange.Type.CREATED, true);
+
+        changeLog.recordAll(List.of(1L, 2L, 3L), UserStatusChange.Type.DEACTIVATED, false);
+
+        UserChangeBatchDTO batch = resultOf(changeLog.poll(1, null, 0L));
+        assertThat(batch.getChanges()).extracting(UserStatusChangeDTO::getVersion).containsExactly(2L, 3L, 4L);
+        assertThat(batch.getChanges()).extracting(UserStatusChangeDTO::getUserId).containsExactly(1L, 2L, 3L);
+        assertThat(headRepository.findCurrentVersion()).contains(4L);
+    }
+
+    @Test
+    void whenNoChangesAndNoWait_thenReturnEmptyBatchWithSameCursor() {
+        UserChangeBatchDTO batch = resultOf(changeLog.poll(5, null, 0L));
+
+        assertThat(batch.getChanges()).isEmpty();
+        assertThat(batch.getNextSince()).isEqualTo(5L);
+    }
+
+    @Test
+    void whenLimitIsGiven_thenBatchIsBounded() {
+        for (long userId = 1; userId <= 5; userId++) {
+            changeLog.record(userId, UserStatusChange.Type.CREATED, true);
+        }
+
+        UserChangeBatchDTO batch = resultOf(changeLog.poll(0, 2, 0L));
+
+        assertThat(batch.getChanges()).hasSize(2);
+        assertThat(batch.getNextSince()).isEqualTo(2L);
+    }
+
+    @Test
+    void whenCompacted_thenOldEntriesArePurgedAndSupersededOnesDropped() {
+        Instant now = Instant.now();
+        headRepository.save(new UserChangeLogHead(UserChangeLogHead.ID, 4L, 0L));
+        changeRepository.save(new UserStatusChange(1L, 1L, UserStatusChange.Type.CREATED, true, now.minus(10, ChronoUnit.DAYS)));
+        changeRepository.save(new UserStatusChange(2L, 2L, UserStatusChange.Type.CREATED, true, now.minus(2, ChronoUnit.HOURS)));
+        changeRepository.save(new UserStatusChange(3L, 2L, UserStatusChange.Type.DEACTIVATED, false, now.minus(90, ChronoUnit.MINUTES)));
+        changeRepository.save(new UserStatusChange(4L, 2L, UserStatusChange.Type.ACTIVATED, true, now.minus(80, ChronoUnit.MINUTES)));
+        changeRepository.flush();
+
+        changeLog.compact();
+
+        assertThat(changeRepository.findAll()).extracting(UserStatusChange::getVersion).containsExactly(4L);
+        UserChangeBatchDTO fromPurged = resultOf(changeLog.poll(0, null, 0L));
+        assertThat(fromPurged.isReset()).isTrue();
+        UserChangeBatchDTO fromCurrent = resultOf(changeLog.poll(1, null, 0L));
+        assertThat(fromCurrent.isReset()).isFalse();
+        assertThat(fromCurrent.getChanges()).extracting(UserStatusChangeDTO::getVersion).containsExactly(4L);
+    }
+
+    private static UserChangeBatchDTO resultOf(DeferredResult<UserChangeBatchDTO> result) {
+        assertThat(result.hasResult()).isTrue();
+        return (UserChangeBatchDTO) result.getResult();
+    }
+}
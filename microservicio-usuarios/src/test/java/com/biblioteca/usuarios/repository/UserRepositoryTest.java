@@ -1,23 +1,42 @@
 package com.biblioteca.usuarios.repository;
 
+import com.biblioteca.usuarios.config.UserIndexInitializer;
+import com.biblioteca.usuarios.dto.UserResponseDTO;
+import com.biblioteca.usuarios.dto.UserStatusDTO;
 import com.biblioteca.usuarios.model.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Import(UserIndexInitializer.class)
 class UserRepositoryTest {
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserIndexInitializer userIndexInitializer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     private User testUser;
 
     @BeforeEach
@@ -94,4 +113,150 @@ class UserRepositoryTest {
 
         assertThat(userRepository.findAll()).hasSize(2);
     }
+
+    @Test
+    void whenFindByIdGreaterThan_thenReturnNextPageOrderedById() {
+        User user2 = new User();
+        user2.setFullName("María García");
+        user2.setEmail("maria.garcia@example.com");
+        user2.setActive(false);
+
+        User saved1 = userRepository.save(testUser);
+        userRepository.save(user2);
+
+        List<UserResponseDTO> all = userRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(10));
+        List<UserResponseDTO> afterFirst = userRepository.findByIdGreaterThanOrderByIdAsc(saved1.getId(), Limit.of(10));
+
+        assertThat(all).extracting(UserResponseDTO::getEmail)
+                .containsExactly("juan.perez@example.com", "maria.garcia@example.com");
+        assertThat(all.get(1).getActive()).isFalse();
+        assertThat(afterFirst).extracting(UserResponseDTO::getEmail).containsExactly("maria.garcia@example.com");
+    }
+
+    @Test
+    void whenFilteringPageByActiveAndDomain_thenReturnOnlyMatchingUsers() {
+        User inactive = new User();
+        inactive.setFullName("María García");
+        inactive.setEmail("maria.garcia@Otro.org");
+        inactive.setActive(false);
+        userRepository.save(testUser);
+        userRepository.save(inactive);
+
+        assertThat(userRepository.findActiveByIdGreaterThanOrderByIdAsc(0L, Limit.of(10)))
+                .extracting(UserResponseDTO::getEmail).containsExactly("juan.perez@example.com");
+        assertThat(userRepository.findInactiveByIdGreaterThanOrderByIdAsc(0L, Limit.of(10)))
+                .extracting(UserResponseDTO::getEmail).containsExactly("maria.garcia@Otro.org");
+        assertThat(userRepository.findByEmailDomainAndIdGreaterThanOrderByIdAsc("otro.org", 0L, Limit.of(10)))
+                .extracting(UserResponseDTO::getEmail).containsExactly("maria.garcia@Otro.org");
+        assertThat(userRepository.findByEmailDomainAndActiveAndIdGreaterThanOrderByIdAsc("otro.org", true, 0L, Limit.of(10)))
+                .isEmpty();
+    }
+
+    @Test
+    void whenEmailDomainIsMissing_thenBackfillDerivesIt() {
+        User savedUser = userRepository.saveAndFlush(testUser);
+        assertThat(savedUser.getEmailDomain()).isEqualTo("example.com");
+        jdbcTemplate.update("UPDATE users SET email_domain = NULL");
+
+        int backfilled = userIndexInitializer.backfillEmailDomains();
+
+        assertThat(backfilled).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT email_domain FROM users", String.class)).isEqualTo("example.com");
+    }
+
+    @Test
+    void whenBackfillQuotedLocalPartWithAt_thenUseSameDomainAsOnSave() {
+        testUser.setEmail("\"juan@casa\"@Example.com");
+        userRepository.saveAndFlush(testUser);
+        jdbcTemplate.update("UPDATE users SET email_domain = NULL");
+
+        userIndexInitializer.backfillEmailDomains();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT email_domain FROM users", String.class))
+                .isEqualTo(User.domainOf(testUser.getEmail()))
+                .isEqualTo("example.com");
+    }
+
+    @Test
+    void whenBackfillSingleAtEmailDomains_thenOnlyRowsInRangeWithOneAtAreUpdated() {
+        User first = userRepository.saveAndFlush(testUser);
+        User quoted = new User();
+        quoted.setFullName("Ana Gómez");
+        quoted.setEmail("\"ana@casa\"@Correo.com");
+        quoted.setActive(true);
+        quoted = userRepository.saveAndFlush(quoted);
+        jdbcTemplate.update("UPDATE users SET email_domain = NULL");
+
+        int updated = userRepository.backfillSingleAtEmailDomains(0L, quoted.getId());
+
+        assertThat(updated).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT email_domain FROM users WHERE id = ?", String.class, first.getId()))
+                .isEqualTo("example.com");
+        assertThat(jdbcTemplate.queryForObject("SELECT email_domain FROM users WHERE id = ?", String.class, quoted.getId()))
+                .isNull();
+    }
+
+    @Test
+    void whenFindStatusById_thenReturnStatusDto() {
+        User savedUser = userRepository.save(testUser);
+
+        Optional<UserStatusDTO> status = userRepository.findStatusById(savedUser.getId());
+
+        assertThat(status).isPresent();
+        assertThat(status.get().getFullName()).isEqualTo("Juan Pérez");
+        assertThat(status.get().getActive()).isTrue();
+        assertThat(userRepository.findStatusById(999L)).isEmpty();
+    }
+
+    @Test
+    void whenFindStatusByIdIn_thenReturnOnlyExistingUsers() {
+        User savedUser = userRepository.save(testUser);
+
+        List<UserStatusDTO> statuses = userRepository.findStatusByIdIn(List.of(savedUser.getId(), 999L));
+
+        assertThat(statuses).hasSize(1);
+        assertThat(statuses.get(0).getId()).isEqualTo(savedUser.getId());
+        assertThat(statuses.get(0).getActive()).isTrue();
+    }
+
+    @Test
+    void whenFindActiveById_thenReturnOnlyActiveFlag() {
+        testUser.setActive(false);
+        User savedUser = userRepository.save(testUser);
+
+        assertThat(userRepository.findActiveById(savedUser.getId())).contains(false);
+        assertThat(userRepository.findActiveById(999L)).isEmpty();
+    }
+
+    @Test
+    void whenStreamActiveFlags_thenReturnIdAndFlagOfEveryUser() {
+        User active = userRepository.save(testUser);
+        User inactive = new User();
+        inactive.setFullName("María García");
+        inactive.setEmail("maria.garcia@example.com");
+        inactive.setActive(false);
+        inactive = userRepository.save(inactive);
+
+        Map<Long, Boolean> flags;
+        try (Stream<UserRepository.ActiveFlag> rows = userRepository.streamActiveFlags()) {
+            flags = rows.collect(Collectors.toMap(UserRepository.ActiveFlag::getId, UserRepository.ActiveFlag::getActive));
+        }
+
+        assertThat(flags).containsExactlyInAnyOrderEntriesOf(Map.of(active.getId(), true, inactive.getId(), false));
+    }
+
+    @Test
+    void whenSaveStaleUser_thenOptimisticLockFails() {
+        User savedUser = userRepository.saveAndFlush(testUser);
+        User stale = new User(savedUser.getId(), savedUser.getFullName(), savedUser.getEmail(),
+                savedUser.getEmailDomain(), savedUser.getActive(), savedUser.getVersion());
+
+        savedUser.setActive(false);
+        userRepository.saveAndFlush(savedUser);
+        stale.setFullName("Juan Pérez Actualizado");
+
+        assertThat(savedUser.getVersion()).isEqualTo(stale.getVersion() + 1);
+        assertThatThrownBy(() -> userRepository.saveAndFlush(stale))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+    }
 }
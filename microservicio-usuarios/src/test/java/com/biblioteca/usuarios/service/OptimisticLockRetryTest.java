@@ -0,0 +1,88 @@
+package com.biblioteca.usuarios.service;
+
+import com.biblioteca.usuarios.exception.ConcurrentUpdateException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class OptimisticLockRetryTest {
+
+    private PlatformTransactionManager transactionManager;
+    private OptimisticLockRetry retry;
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = mock(PlatformTransactionManager.class);
+        TransactionStatus status = new SimpleTransactionStatus();
+        when(transactionManager.getTransaction(any())).thenReturn(status);
+        retry = new OptimisticLockRetry(transactionManager, 3, Duration.ofMillis(1), Duration.ofMillis(2));
+    }
+
+    @Test
+    void whenActionSucceeds_thenRunOnce() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = retry.execute(() -> {
+            calls.incrementAndGet();
+            return "ok";
+        }, () -> new ConcurrentUpdateException(1L));
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(calls).hasValue(1);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void whenVersionConflict_thenRetryInNewTransaction() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = retry.execute(() -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("User", 1L);
+            }
+            return "ok";
+        }, () -> new ConcurrentUpdateException(1L));
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(calls).hasValue(3);
+        verify(transactionManager, times(3)).getTransaction(any());
+        verify(transactionManager, times(2)).rollback(any());
+    }
+
+    @Test
+    void whenConflictsExhaustRetries_thenThrowConcurrentUpdate() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> retry.execute(() -> {
+            calls.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("User", 1L);
+        }, () -> new ConcurrentUpdateException(1L)))
+                .isInstanceOf(ConcurrentUpdateException.class);
+
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    void whenOtherExceptionIsThrown_thenDoNotRetry() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> retry.execute(() -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("fallo");
+        }, () -> new ConcurrentUpdateException(1L)))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(calls).hasValue(1);
+    }
+}
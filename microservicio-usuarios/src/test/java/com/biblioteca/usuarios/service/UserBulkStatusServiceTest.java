@@ -0,0 +1,124 @@
+package com.biblioteca.usuarios.service;
+
+import com.biblioteca.usuarios.cache.ActiveUserIndex;
+import com.biblioteca.usuarios.dto.BulkStatusRequestDTO;
+import com.biblioteca.usuarios.dto.BulkStatusResultDTO;
+import com.biblioteca.usuarios.dto.UserStatusDTO;
+import com.biblioteca.usuarios.events.UserChangeLog;
+import com.biblioteca.usuarios.model.User;
+import com.biblioteca.usuarios.model.UserStatusChange;
+import com.biblioteca.usuarios.repository.UserChangeLogHeadRepository;
+import com.biblioteca.usuarios.repository.UserRepository;
+import com.biblioteca.usuarios.repository.UserStatusChangeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Los lotes se unen a la transacción de cada prueba; la lógica de lotes y el registro se verifican igual
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+class UserBulkStatusServiceTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserStatusChangeRepository changeRepository;
+
+    @Autowired
+    private UserChangeLogHeadRepository headRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ActiveUserIndex activeUserIndex;
+    private UserBulkStatusService bulkStatusService;
+
+    @BeforeEach
+    void setUp() {
+        activeUserIndex = mock(ActiveUserIndex.class);
+        UserChangeLog changeLog = new UserChangeLog(changeRepository, headRepository,
+                Duration.ofDays(7), Duration.ofHours(1), Duration.ofSeconds(30));
+        bulkStatusService = new UserBulkStatusService(userRepository, changeLog, activeUserIndex, transactionManager, 2);
+    }
+
+    @Test
+    void whenDeactivatingByIds_thenOnlyUsersThatChangeAreCountedAndLogged() {
+        Long first = saveUser("ana@uni.edu", true);
+        Long second = saveUser("beto@uni.edu", true);
+        Long alreadyInactive = saveUser("carla@uni.edu", false);
+        Long third = saveUser("dario@uni.edu", true);
+
+        BulkStatusResultDTO result = bulkStatusService.setActive(
+                new BulkStatusRequestDTO(List.of(first, second, second, alreadyInactive, third, 999L), null), false);
+
+        assertThat(result.getUpdated()).isEqualTo(3);
+        assertThat(result.getChunks()).isEqualTo(3);
+        assertThat(activeFlags(first, second, alreadyInactive, third)).containsOnlyKeys(first, second, alreadyInactive, third)
+                .allSatisfy((id, active) -> assertThat(active).isFalse());
+        assertThat(changeRepository.findAll())
+                .extracting(UserStatusChange::getVersion, UserStatusChange::getUserId, UserStatusChange::getType)
+                .containsExactly(
+                        tuple(1L, first, UserStatusChange.Type.DEACTIVATED),
+                        tuple(2L, second, UserStatusChange.Type.DEACTIVATED),
+                        tuple(3L, third, UserStatusChange.Type.DEACTIVATED));
+        verify(activeUserIndex, times(2)).putAll(anyCollection(), eq(false));
+    }
+
+    @Test
+    void whenActivatingByEmailDomain_thenWalkDomainInChunksAndLeaveOtherDomainsAlone() {
+        Long a = saveUser("a@Uni.edu", false);
+        Long b = saveUser("b@uni.edu", false);
+        Long c = saveUser("c@uni.edu", true);
+        Long d = saveUser("d@uni.edu", false);
+        Long e = saveUser("e@uni.edu", false);
+        Long other = saveUser("f@otra.org", false);
+
+        BulkStatusResultDTO result = bulkStatusService.setActive(new BulkStatusRequestDTO(null, " UNI.edu"), true);
+
+        assertThat(result.getUpdated()).isEqualTo(4);
+        assertThat(result.getChunks()).isEqualTo(2);
+        Map<Long, Boolean> flags = activeFlags(a, b, c, d, e, other);
+        assertThat(flags).containsEntry(a, true).containsEntry(b, true).containsEntry(c, true)
+                .containsEntry(d, true).containsEntry(e, true).containsEntry(other, false);
+        assertThat(changeRepository.count()).isEqualTo(4);
+    }
+
+    @Test
+    void whenNothingChanges_thenNoUpdateIsLogged() {
+        Long active = saveUser("ana@uni.edu", true);
+
+        BulkStatusResultDTO result = bulkStatusService.setActive(new BulkStatusRequestDTO(List.of(active), null), true);
+
+        assertThat(result.getUpdated()).isZero();
+        assertThat(changeRepository.count()).isZero();
+        verifyNoInteractions(activeUserIndex);
+    }
+
+    private Long saveUser(String email, boolean active) {
+        User user = new User();
+        user.setFullName("Usuario " + email);
+        user.setEmail(email);
+        user.setActive(active);
+        return userRepository.saveAndFlush(user).getId();
+    }
+
+    private Map<Long, Boolean> activeFlags(Long... ids) {
+        return userRepository.findStatusByIdIn(List.of(ids)).stream()
+                .collect(Collectors.toMap(UserStatusDTO::getId, UserStatusDTO::getActive));
+    }
+}
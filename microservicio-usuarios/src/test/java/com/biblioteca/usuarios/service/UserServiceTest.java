@@ -1,13 +1,22 @@
 package com.biblioteca.usuarios.service;
 
+import com.biblioteca.usuarios.cache.ActiveUserIndex;
+import com.biblioteca.usuarios.cache.UserStatusBitmap;
+import com.biblioteca.usuarios.dto.UserPageDTO;
 import com.biblioteca.usuarios.dto.UserRequestDTO;
 import com.biblioteca.usuarios.dto.UserResponseDTO;
+import com.biblioteca.usuarios.dto.UserStatusBatchDTO;
 import com.biblioteca.usuarios.dto.UserStatusDTO;
+import com.biblioteca.usuarios.events.UserChangeLog;
+import com.biblioteca.usuarios.exception.BatchTooLargeException;
+import com.biblioteca.usuarios.exception.ConcurrentUpdateException;
 import com.biblioteca.usuarios.exception.DuplicateEmailException;
+import com.biblioteca.usuarios.exception.InvalidCursorException;
 import com.biblioteca.usuarios.exception.UserNotActiveException;
 import com.biblioteca.usuarios.exception.UserNotFoundException;
 import com.biblioteca.usuarios.mapper.UserMapper;
 import com.biblioteca.usuarios.model.User;
+import com.biblioteca.usuarios.model.UserStatusChange;
 import com.biblioteca.usuarios.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,10 +24,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -34,6 +47,15 @@ class UserServiceTest {
     @Mock
     private UserMapper userMapper;
 
+    @Mock
+    private OptimisticLockRetry optimisticLockRetry;
+
+    @Mock
+    private ActiveUserIndex activeUserIndex;
+
+    @Mock
+    private UserChangeLog userChangeLog;
+
     @InjectMocks
     private UserService userService;
 
@@ -43,6 +65,9 @@ class UserServiceTest {
 
     @BeforeEach
     void setUp() {
+        lenient().when(optimisticLockRetry.execute(any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+
         testUser = new User();
         testUser.setId(1L);
         testUser.setFullName("Juan Pérez");
@@ -74,6 +99,8 @@ class UserServiceTest {
         assertThat(result).isNotNull();
         assertThat(result.getFullName()).isEqualTo("Juan Pérez");
         verify(userRepository, times(1)).save(any(User.class));
+        verify(activeUserIndex).put(1L, true);
+        verify(userChangeLog).record(1L, UserStatusChange.Type.CREATED, true);
     }
 
     @Test
@@ -88,32 +115,64 @@ class UserServiceTest {
     }
 
     @Test
-    void whenGetAllUsers_thenReturnUserList() {
-        User user2 = new User();
-        user2.setId(2L);
-        user2.setFullName("María García");
-        user2.setEmail("maria.garcia@example.com");
-        user2.setActive(true);
-
+    void whenGetAllUsers_thenReturnFirstPage() {
         UserResponseDTO responseDTO2 = new UserResponseDTO(
                 2L, "María García", "maria.garcia@example.com", true
         );
 
-        when(userRepository.findAll()).thenReturn(Arrays.asList(testUser, user2));
-        when(userMapper.toResponseDTO(testUser)).thenReturn(responseDTO);
-        when(userMapper.toResponseDTO(user2)).thenReturn(responseDTO2);
+        when(userRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(UserService.DEFAULT_PAGE_SIZE + 1)))
+                .thenReturn(Arrays.asList(responseDTO, responseDTO2));
 
-        List<UserResponseDTO> result = userService.getAllUsers();
+        UserPageDTO result = userService.getAllUsers(null, null, null, null);
 
-        assertThat(result).hasSize(2);
-        assertThat(result.get(0).getFullName()).isEqualTo("Juan Pérez");
-        assertThat(result.get(1).getFullName()).isEqualTo("María García");
+        assertThat(result.getItems()).hasSize(2);
+        assertThat(result.getItems().get(0).getFullName()).isEqualTo("Juan Pérez");
+        assertThat(result.getItems().get(1).getFullName()).isEqualTo("María García");
+        assertThat(result.getNextCursor()).isNull();
+        verify(userRepository, never()).findAll();
+        verifyNoInteractions(userMapper);
+    }
+
+    @Test
+    void whenGetAllUsers_withMoreRowsThanLimit_thenReturnCursorThatResumesAfterLastId() {
+        UserResponseDTO responseDTO2 = new UserResponseDTO(2L, "María García", "maria.garcia@example.com", true);
+        when(userRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(2)))
+                .thenReturn(Arrays.asList(responseDTO, responseDTO2));
+        when(userRepository.findByIdGreaterThanOrderByIdAsc(1L, Limit.of(2)))
+                .thenReturn(List.of(responseDTO2));
+
+        UserPageDTO first = userService.getAllUsers(null, 1, null, null);
+        UserPageDTO second = userService.getAllUsers(first.getNextCursor(), 1, null, null);
+
+        assertThat(first.getItems()).extracting(UserResponseDTO::getId).containsExactly(1L);
+        assertThat(second.getItems()).extracting(UserResponseDTO::getId).containsExactly(2L);
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    void whenGetAllUsers_withFilters_thenUseMatchingKeysetQuery() {
+        Limit limit = Limit.of(UserService.DEFAULT_PAGE_SIZE + 1);
+
+        userService.getAllUsers(null, null, true, null);
+        userService.getAllUsers(null, null, false, null);
+        userService.getAllUsers(null, null, null, "@Example.COM");
+        userService.getAllUsers(null, null, false, "example.com");
+
+        verify(userRepository).findActiveByIdGreaterThanOrderByIdAsc(0L, limit);
+        verify(userRepository).findInactiveByIdGreaterThanOrderByIdAsc(0L, limit);
+        verify(userRepository).findByEmailDomainAndIdGreaterThanOrderByIdAsc("example.com", 0L, limit);
+        verify(userRepository).findByEmailDomainAndActiveAndIdGreaterThanOrderByIdAsc("example.com", false, 0L, limit);
+    }
+
+    @Test
+    void whenGetAllUsers_withInvalidCursor_thenThrowException() {
+        assertThatThrownBy(() -> userService.getAllUsers("no-es-un-cursor", null, null, null))
+                .isInstanceOf(InvalidCursorException.class);
     }
 
     @Test
     void whenGetUserById_thenReturnUser() {
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userMapper.toResponseDTO(testUser)).thenReturn(responseDTO);
+        when(userRepository.findResponseById(1L)).thenReturn(Optional.of(responseDTO));
 
         UserResponseDTO result = userService.getUserById(1L);
 
@@ -124,19 +183,40 @@ class UserServiceTest {
 
     @Test
     void whenGetUserById_withInvalidId_thenThrowException() {
-        when(userRepository.findById(99L)).thenReturn(Optional.empty());
+        when(userRepository.findResponseById(99L)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> userService.getUserById(99L))
                 .isInstanceOf(UserNotFoundException.class)
                 .hasMessageContaining("No se encontró el usuario con id: 99");
     }
 
+    @Test
+    void whenGetUsersStatus_thenResolveWithOneQueryAndReportNotFound() {
+        UserStatusDTO statusDTO = new UserStatusDTO(1L, "Juan Pérez", true);
+        when(userRepository.findStatusByIdIn(Set.of(1L, 99L))).thenReturn(List.of(statusDTO));
+
+        UserStatusBatchDTO result = userService.getUsersStatus(List.of(1L, 99L, 1L));
+
+        assertThat(result.getStatuses()).containsOnlyKeys(1L);
+        assertThat(result.getNotFound()).containsExactly(99L);
+        verify(userRepository, times(1)).findStatusByIdIn(any());
+    }
+
+    @Test
+    void whenGetUsersStatus_withTooManyIds_thenThrowWithoutQuerying() {
+        List<Long> ids = LongStream.rangeClosed(1, UserService.MAX_STATUS_BATCH + 1).boxed().toList();
+
+        assertThatThrownBy(() -> userService.getUsersStatus(ids))
+                .isInstanceOf(BatchTooLargeException.class);
+
+        verify(userRepository, never()).findStatusByIdIn(any());
+    }
+
     @Test
     void whenGetUserStatus_thenReturnStatus() {
         UserStatusDTO statusDTO = new UserStatusDTO(1L, "Juan Pérez", true);
 
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userMapper.toStatusDTO(testUser)).thenReturn(statusDTO);
+        when(userRepository.findStatusById(1L)).thenReturn(Optional.of(statusDTO));
 
         UserStatusDTO result = userService.getUserStatus(1L);
 
@@ -153,34 +233,50 @@ class UserServiceTest {
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
         lenient().when(userRepository.existsByEmail(updateDTO.getEmail())).thenReturn(false);
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(testUser);
         when(userMapper.toResponseDTO(testUser)).thenReturn(responseDTO);
 
         UserResponseDTO result = userService.updateUser(1L, updateDTO);
 
         assertThat(result).isNotNull();
-        verify(userRepository, times(1)).save(any(User.class));
+        verify(userRepository, times(1)).saveAndFlush(any(User.class));
     }
 
     @Test
     void whenDeactivateUser_thenUserIsDeactivated() {
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(testUser);
 
         userService.deactivateUser(1L);
 
-        verify(userRepository, times(1)).save(any(User.class));
+        verify(userRepository, times(1)).saveAndFlush(any(User.class));
+        verify(activeUserIndex).put(1L, false);
+        verify(userChangeLog).record(1L, UserStatusChange.Type.DEACTIVATED, false);
     }
 
     @Test
     void whenActivateUser_thenUserIsActivated() {
         testUser.setActive(false);
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(testUser);
 
         userService.activateUser(1L);
 
-        verify(userRepository, times(1)).save(any(User.class));
+        verify(userRepository, times(1)).saveAndFlush(any(User.class));
+        verify(activeUserIndex).put(1L, true);
+        verify(userChangeLog).record(1L, UserStatusChange.Type.ACTIVATED, true);
+    }
+
+    @Test
+    void whenDeactivateUser_withRetriesExhausted_thenThrowConcurrentUpdate() {
+        doAnswer(invocation -> {
+            throw invocation.<Supplier<RuntimeException>>getArgument(1).get();
+        }).when(optimisticLockRetry).execute(any(), any());
+
+        assertThatThrownBy(() -> userService.deactivateUser(1L))
+                .isInstanceOf(ConcurrentUpdateException.class)
+                .hasMessageContaining("id 1");
+        verify(activeUserIndex, never()).put(any(), anyBoolean());
     }
 
     @Test
@@ -191,6 +287,18 @@ class UserServiceTest {
         userService.deleteUser(1L);
 
         verify(userRepository, times(1)).deleteById(1L);
+        verify(activeUserIndex).remove(1L);
+        verify(userChangeLog).record(1L, UserStatusChange.Type.DELETED, null);
+    }
+
+    @Test
+    void whenActivateUser_alreadyActive_thenNoChangeIsRecorded() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(testUser);
+
+        userService.activateUser(1L);
+
+        verify(userChangeLog, never()).record(any(), any(), any());
     }
 
     @Test
@@ -205,20 +313,57 @@ class UserServiceTest {
 
     @Test
     void whenValidateUserIsActive_withActiveUser_thenNoException() {
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(userRepository.findActiveById(1L)).thenReturn(Optional.of(true));
 
         userService.validateUserIsActive(1L);
 
-        verify(userRepository, times(1)).findById(1L);
+        verify(userRepository, times(1)).findActiveById(1L);
+        verify(userRepository, never()).findById(any());
+    }
+
+    @Test
+    void whenValidateUserIsActive_withInvalidId_thenThrowException() {
+        when(userRepository.findActiveById(99L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> userService.validateUserIsActive(99L))
+                .isInstanceOf(UserNotFoundException.class);
     }
 
     @Test
     void whenValidateUserIsActive_withInactiveUser_thenThrowException() {
-        testUser.setActive(false);
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(userRepository.findActiveById(1L)).thenReturn(Optional.of(false));
 
         assertThatThrownBy(() -> userService.validateUserIsActive(1L))
                 .isInstanceOf(UserNotActiveException.class)
                 .hasMessageContaining("no está activo");
     }
+
+    @Test
+    void whenValidateUserIsActive_withActiveUserInIndex_thenDatabaseIsNotQueried() {
+        when(activeUserIndex.status(1L)).thenReturn(UserStatusBitmap.ACTIVE);
+
+        userService.validateUserIsActive(1L);
+
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void whenValidateUserIsActive_withInactiveUserInIndex_thenThrowWithoutQuerying() {
+        when(activeUserIndex.status(1L)).thenReturn(UserStatusBitmap.INACTIVE);
+
+        assertThatThrownBy(() -> userService.validateUserIsActive(1L))
+                .isInstanceOf(UserNotActiveException.class);
+
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void whenGetActiveStatus_withUserMissingFromIndex_thenFallBackToDatabase() {
+        when(activeUserIndex.status(anyLong())).thenReturn(UserStatusBitmap.UNKNOWN);
+        when(userRepository.findActiveById(1L)).thenReturn(Optional.of(false));
+        when(userRepository.findActiveById(99L)).thenReturn(Optional.empty());
+
+        assertThat(userService.getActiveStatus(1L)).isEqualTo(UserStatusBitmap.INACTIVE);
+        assertThat(userService.getActiveStatus(99L)).isEqualTo(UserStatusBitmap.UNKNOWN);
+    }
 }